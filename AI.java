@@ -1,13 +1,13 @@
 package tablut;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
 
 import static java.lang.Math.max;
 import static java.lang.Math.min;
-import static tablut.Move.ROOK_MOVES;
 import static tablut.Piece.*;
+import static tablut.Square.SQUARE_LIST;
 
 /**
  * A Player that automatically generates moves.
@@ -20,16 +20,80 @@ class AI extends Player {
      * A position-score magnitude indicating a win (for white if positive,
      * black if negative).
      */
-    private static final int WINNING_VALUE = Integer.MAX_VALUE - 20;
+    static final int WINNING_VALUE = Integer.MAX_VALUE - 20;
     /**
      * A position-score magnitude indicating a forced win in a subsequent
      * move.  This differs from WINNING_VALUE to avoid putting off wins.
      */
-    private static final int WILL_WIN_VALUE = Integer.MAX_VALUE - 40;
+    static final int WILL_WIN_VALUE = Integer.MAX_VALUE - 40;
     /**
      * A magnitude greater than a normal value.
      */
-    private static final int INFTY = Integer.MAX_VALUE;
+    static final int INFTY = Integer.MAX_VALUE;
+    /**
+     * A position-score magnitude indicating a win proven by the tablebase,
+     * less the number of plies it takes.
+     */
+    private static final int TABLEBASE_VALUE = WILL_WIN_VALUE - 200;
+    /**
+     * A position-score magnitude indicating that the king will escape next
+     * move whatever Black does (see KingMobility.enclosure).
+     */
+    static final int UNSTOPPABLE_VALUE = WILL_WIN_VALUE - 1;
+    /**
+     * A position-score magnitude indicating that the king is sealed in
+     * with no defenders left (see KingMobility.enclosure): all but won for
+     * Black, though below any proven win.
+     */
+    static final int SEALED_VALUE = TABLEBASE_VALUE - 1000;
+    /**
+     * Number of plies for which move buffers are provided initially
+     * (see moveBuffer).
+     */
+    private static final int INITIAL_PLIES = 32;
+    /**
+     * The squares orthogonally adjacent to the throne.
+     */
+    private static final Square[] THRONE_NEIGHBORS = {
+        Board.NTHRONE, Board.WTHRONE, Board.ETHRONE, Board.STHRONE
+    };
+    /**
+     * Maximum number of book moves considered in one position.
+     */
+    private static final int MAX_BOOK_MOVES = 64;
+    /**
+     * Log2 of the number of entries in my transposition table.
+     */
+    private static final int TABLE_LOG_SIZE = 18;
+    /**
+     * Log2 of the number of entries in my evaluation cache.
+     */
+    private static final int EVAL_LOG_SIZE = 18;
+    /**
+     * Log2 of the number of entries in my cache of attacker formations.
+     */
+    private static final int FORMATION_LOG_SIZE = 14;
+    /**
+     * Bits per term in a packed formation (see formation).
+     */
+    private static final int FORMATION_BITS = 5;
+    /**
+     * Mask extracting one term of a packed formation.
+     */
+    private static final int FORMATION_MASK = (1 << FORMATION_BITS) - 1;
+    /**
+     * Most pieces that can be next to one square.
+     */
+    private static final int MAX_NEIGHBORS = 4;
+    /**
+     * Number of nodes searched between checks for a request to stop.
+     * Must be a power of 2.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+    /**
+     * Milliseconds between checks for commands while searching.
+     */
+    private static final long POLL_MILLIS = 50;
 
     /**
      * A new AI with no piece or controller (intended to produce
@@ -44,26 +108,229 @@ class AI extends Player {
      */
     AI(Piece piece, Controller controller) {
         super(piece, controller);
+        if (piece != null) {
+            _table = new TranspositionTable(TABLE_LOG_SIZE);
+            _evalCache = new EvalCache(EVAL_LOG_SIZE);
+            _formations = new EvalCache(FORMATION_LOG_SIZE);
+        }
+    }
+
+    /**
+     * A new AI template that ponders on its opponent's time iff PONDER.
+     */
+    AI(boolean ponder) {
+        this(null, null);
+        _ponder = ponder;
     }
 
     @Override
     Player create(Piece piece, Controller controller) {
-        return new AI(piece, controller);
+        AI ai = new AI(piece, controller);
+        ai._ponder = _ponder;
+        ai._tablebase = _tablebase;
+        ai._book = _book;
+        ai._depth = _depth;
+        ai._weights = _weights;
+        ai._network = _network;
+        ai._solverNodes = _solverNodes;
+        ai._distributed = _distributed;
+        ai._warmUp = _warmUp;
+        ai._policy = _policy;
+        if (_cache != null && piece != null) {
+            ai._cache = _cache;
+            ai._table = _cache.table(piece);
+            ai._evalCache = _cache.evals(piece);
+        }
+        return ai;
+    }
+
+    /**
+     * Evaluate positions with NETWORK, if not null, rather than with
+     * weighted features.
+     */
+    void setNetwork(Network network) {
+        _network = network;
+    }
+
+    /**
+     * Use WEIGHTS for my evaluation function.
+     */
+    void setWeights(Weights weights) {
+        _weights = weights;
     }
 
+    /**
+     * Keep the transposition tables and evaluation caches of the AIs I
+     * create in CACHE, which must have been opened with my fingerprint().
+     */
+    void setCache(SearchCache cache) {
+        _cache = cache;
+    }
+
+    /**
+     * Return a value identifying my evaluation function, which changes
+     * when my weights or network do.
+     */
+    long fingerprint() {
+        return _network != null ? _network.fingerprint()
+            : _weights.fingerprint();
+    }
+
+    /**
+     * Use TABLEBASE (if not null) for exact results in the endgame.
+     */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /**
+     * Take opening moves from BOOK (if not null).
+     */
+    void setBook(OpeningBook book) {
+        _book = book;
+    }
+
+    /**
+     * Before searching, try to prove a win with a ProofSolver of NODES
+     * nodes, or not at all if NODES is 0.
+     */
+    void setSolverNodes(int nodes) {
+        _solverNodes = nodes;
+    }
+
+    /**
+     * Split my searches among the workers of DISTRIBUTED, if not null,
+     * rather than searching on this thread.
+     */
+    void setDistributed(DistributedSearch distributed) {
+        _distributed = distributed;
+    }
+
+    /**
+     * Order moves in my searches by POLICY, if not null, rather than by
+     * the fixed rules of ordered.
+     */
+    void setPolicy(Policy policy) {
+        _policy = policy;
+    }
+
+    /**
+     * Before my first search, wait for WARMUP (if not null) to end.
+     */
+    void setWarmUp(WarmUp warmUp) {
+        _warmUp = warmUp;
+    }
+
+    /**
+     * Return a new AI for PIECE that evaluates and orders moves as I do
+     * and searches to DEPTH, with tables of its own and none of my book,
+     * tablebase, solver, cache, or workers.
+     */
+    AI scratchCopy(Piece piece, int depth) {
+        AI ai = new AI(piece, null);
+        ai._weights = _weights;
+        ai._network = _network;
+        ai._policy = _policy;
+        ai._depth = depth;
+        return ai;
+    }
+
+    /**
+     * Empty my transposition table and evaluation caches, so that my next
+     * search starts as a new AI's would.
+     */
+    void clearCaches() {
+        _table.clear();
+        _evalCache.clear();
+        _formations.clear();
+    }
+
+    /**
+     * Ask any search in progress to stop iff STOP, or let searches run
+     * if not.
+     */
+    void setStopSearch(boolean stop) {
+        _stopSearch = stop;
+    }
+
+    /**
+     * Search to DEPTH plies, or to a depth depending on the position if
+     * DEPTH is 0.
+     */
+    void setDepth(int depth) {
+        _depth = depth;
+    }
+
+    /**
+     * Search for my move on a separate thread, so that commands from my
+     * controller's command source are handled while it runs.  "stop"
+     * ends the search with the best move found so far; any other command
+     * abandons the search and is returned for the controller to execute.
+     */
     @Override
     String myMove() {
-        Move move = findMove();
+        long start = System.nanoTime();
+        Move[] found = new Move[1];
+        Thread worker = new Thread(() -> found[0] = findMove(), "search");
+        worker.start();
+        String command = null;
+        try {
+            while (worker.isAlive()) {
+                worker.join(POLL_MILLIS);
+                String cmnd = _controller.pollCommand(0);
+                if (cmnd != null) {
+                    while (worker.isAlive()) {
+                        _stopSearch = true;
+                        worker.join(POLL_MILLIS);
+                    }
+                    if (!cmnd.trim().equalsIgnoreCase("stop")) {
+                        command = cmnd;
+                    }
+                }
+            }
+        } catch (InterruptedException excp) {
+            throw new Error("unexpected interrupt");
+        }
+        _stopSearch = false;
+        if (command != null) {
+            return command;
+        }
+        if (_firstMove) {
+            _firstMove = false;
+            long end = System.nanoTime();
+            reportFirstMove((end - _searchStart) / 1000000,
+                            (end - start) / 1000000);
+        }
+        Move move = found[0];
         if (board().winner() != null || board().turn() != super._myPiece) {
             _controller.reportMove(move);
             return "dump";
         } else if (move != null) {
             _controller.reportMove(move);
+            if (_ponder && opponentIsManual()) {
+                startPondering(move);
+            }
             return move.toString();
         }
         return "dump";
     }
 
+    /**
+     * Log the time my first move took (see Controller.logComment): SEARCH
+     * milliseconds of search in TOTAL milliseconds, which include waiting
+     * for the warm-up, if any.
+     */
+    private void reportFirstMove(long search, long total) {
+        if (_warmUp == null) {
+            _controller.logComment("first move: %d ms, no warm-up", search);
+        } else {
+            _controller.logComment("first move: %d ms (%d ms in all) after"
+                                   + " warming up on %d positions in %d ms",
+                                   search, total, _warmUp.positions(),
+                                   _warmUp.elapsed());
+        }
+    }
+
     @Override
     boolean isManual() {
         return false;
@@ -74,18 +341,377 @@ class AI extends Player {
      * is a move.
      */
     private Move findMove() {
-        Board b = new Board(board());
-        _lastFoundMove = null;
-        int s;
-        if (super.myPiece() == BLACK) {
-            s = -1;
-        } else {
-            s = 1;
+        if (_warmUp != null) {
+            _warmUp.finish();
+        }
+        _searchStart = System.nanoTime();
+        Board b = new SearchBoard(board());
+        AI pondered = finishPondering(b);
+        Move move = bookMove(b);
+        if (move != null) {
+            return move;
+        }
+        move = solvedMove(b);
+        if (move != null) {
+            return move;
+        }
+        return searchMove(b, pondered);
+    }
+
+    /**
+     * Return a move for the side to move in BOARD that a ProofSolver
+     * proves wins, or null if it finds none within _solverNodes nodes.
+     */
+    private Move solvedMove(Board board) {
+        if (_solverNodes == 0) {
+            return null;
+        }
+        ProofSolver solver = new ProofSolver(_solverNodes);
+        if (solver.solve(board, board.turn(), () -> _stopSearch)
+            != ProofSolver.PROVEN) {
+            return null;
+        }
+        return solver.winningMove();
+    }
+
+    /**
+     * Return the best move for the side to move in BOARD, which may be
+     * modified, according to the tablebase or a search.  Returns null if
+     * there are no moves.
+     */
+    Move searchMove(Board board) {
+        return searchMove(board, null);
+    }
+
+    /**
+     * Return the best move for the side to move in BOARD, as for
+     * searchMove(BOARD), continuing the iterations that PONDERED (if not
+     * null) completed while pondering BOARD rather than repeating them.
+     */
+    private Move searchMove(Board board, AI pondered) {
+        Events.Search event = new Events.Search();
+        event.begin();
+        _nodes = 0;
+        _lastValue = 0;
+        _depthReached = 0;
+        _lastFoundMove = tablebaseMove(board);
+        if (_lastFoundMove == null) {
+            int depth = _depth > 0 ? _depth : maxDepth(board);
+            if (_distributed != null) {
+                List<Move> moves = ordered(board, expectedMove(board));
+                _lastFoundMove = _distributed.search(board, moves, depth,
+                                                     this,
+                                                     () -> _stopSearch);
+            } else if (pondered != null) {
+                _lastFoundMove = pondered._lastFoundMove;
+                _lastValue = deepen(board, pondered._depthReached,
+                                    pondered._lastValue, depth, true);
+            } else {
+                _lastValue = deepen(board, depth, true);
+            }
+        }
+        if (_lastFoundMove == null) {
+            List<Move> moves = board.legalMoves(board.turn());
+            if (!moves.isEmpty()) {
+                _lastFoundMove = moves.get(0);
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.side = board.turn().toName();
+            event.depth = _depthReached;
+            event.nodes = _nodes;
+            event.move = String.valueOf(_lastFoundMove);
+            event.value = _lastValue;
+            event.commit();
         }
-        findMove(b, maxDepth(b), true, s, -INFTY, INFTY);
         return _lastFoundMove;
     }
 
+    /**
+     * Return the number of nodes visited by my latest search.
+     */
+    long nodes() {
+        return _nodes;
+    }
+
+    /**
+     * Return the value, positive for White, found by my latest searchMove,
+     * or 0 if the move came from the tablebase or from my workers.
+     */
+    int lastValue() {
+        return _lastValue;
+    }
+
+    /**
+     * Return the best N moves for the side to move in BOARD, with their
+     * scores and principal variations, by a search of each in turn that
+     * excludes the root moves already found.  The passes share _table,
+     * so that later ones are ordered by the results of earlier ones.
+     * Returns fewer than N lines if there are fewer legal moves.
+     */
+    Analysis analyze(Board board, int n) {
+        Board b = new SearchBoard(board);
+        Analysis result = new Analysis(b.turn());
+        int depth = _depth > 0 ? _depth : maxDepth(b);
+        try {
+            for (int k = 0; k < n && b.winner() == null; k += 1) {
+                _lastFoundMove = null;
+                int score = deepen(b, depth, true);
+                if (_lastFoundMove == null) {
+                    break;
+                }
+                result.add(new Analysis.Line(principalVariation(b, depth),
+                                             score, depth));
+                _excluded.add(_lastFoundMove);
+            }
+        } finally {
+            _excluded.clear();
+        }
+        return result;
+    }
+
+    /**
+     * Return the principal variation of up to DEPTH plies in BOARD
+     * starting with _lastFoundMove, following the best moves recorded in
+     * _table.
+     */
+    private List<Move> principalVariation(Board board, int depth) {
+        List<Move> pv = new ArrayList<>();
+        Move move = _lastFoundMove;
+        while (move != null && pv.size() < depth) {
+            pv.add(move);
+            board.makeMove(move);
+            move = board.winner() == null ? expectedMove(board) : null;
+        }
+        for (int i = 0; i < pv.size(); i += 1) {
+            board.undo();
+        }
+        return pv;
+    }
+
+    /**
+     * Return a move for BOARD chosen at random from _book, with
+     * probability proportional to its weight, or null if there is none.
+     */
+    private Move bookMove(Board board) {
+        if (_book == null) {
+            return null;
+        }
+        Move[] moves = new Move[MAX_BOOK_MOVES];
+        int[] weights = new int[MAX_BOOK_MOVES];
+        int n = _book.probe(board, moves, weights);
+        int total = 0;
+        for (int i = 0; i < n; i += 1) {
+            total += weights[i];
+        }
+        if (total == 0) {
+            return null;
+        }
+        int r = _controller.randInt(total);
+        for (int i = 0; true; i += 1) {
+            r -= weights[i];
+            if (r < 0) {
+                return moves[i];
+            }
+        }
+    }
+
+    /**
+     * Return the best move in BOARD according to _tablebase, or null if
+     * BOARD is not in it or is drawn.
+     */
+    private Move tablebaseMove(Board board) {
+        if (_tablebase == null || _tablebase.probe(board) == 0) {
+            return null;
+        }
+        Move best = null;
+        int bestScore = 0;
+        Piece mover = board.turn();
+        for (Move move : board.legalMoves(mover)) {
+            board.makeMove(move);
+            int score;
+            if (board.winner() != null) {
+                score = board.winner() == mover ? INFTY : -INFTY;
+            } else {
+                score = -tablebaseScore(_tablebase.probe(board));
+            }
+            board.undo();
+            if (best == null || score > bestScore) {
+                best = move;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Return a score for the side to move of a position whose tablebase
+     * value is VALUE: positive for wins, preferring short ones, negative
+     * for losses, preferring long ones, and 0 for draws.
+     */
+    private static int tablebaseScore(int value) {
+        if (value > 0) {
+            return TABLEBASE_VALUE - value;
+        } else if (value < 0) {
+            return value + 1 - TABLEBASE_VALUE;
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Search BOARD with iterative deepening to depths 1 through DEPTH,
+     * recording the move found in _lastFoundMove iff SAVEMOVE.  Each
+     * iteration leaves its results in _table to order the next one.
+     * Stops early if _stopSearch is set, leaving in _lastFoundMove the
+     * result of the last complete iteration or, failing that, the best
+     * move found so far.  Returns the value found by the last complete
+     * iteration.
+     */
+    private int deepen(Board board, int depth, boolean saveMove) {
+        return deepen(board, 0, 0, depth, saveMove);
+    }
+
+    /**
+     * Search BOARD as deepen(BOARD, DEPTH, SAVEMOVE) does, continuing
+     * after iterations to depth DONE, whose results are already in _table
+     * and (iff SAVEMOVE) _lastFoundMove, and which found VALUE.
+     */
+    private int deepen(Board board, int done, int value, int depth,
+                       boolean saveMove) {
+        int sense = board.turn() == WHITE ? 1 : -1;
+        _nodes = 0;
+        _depthReached = done;
+        _aborted = _stopSearch;
+        for (int d = done + 1; d <= depth && !_aborted; d += 1) {
+            int v = findMove(board, d, saveMove, sense, -INFTY, INFTY);
+            if (!_aborted) {
+                value = v;
+                _depthReached = d;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Return the value of MOVE in BOARD, which is left as it was, from a
+     * search of DEPTH plies counting MOVE, deepened iteratively like
+     * deepen.  The last iteration searches with bounds ALPHA and BETA
+     * (see findMove).  Stops early if _stopSearch is set, returning the
+     * value from the last complete iteration.
+     */
+    int rootScore(Board board, Move move, int depth, int alpha, int beta) {
+        board.makeMove(move);
+        try {
+            int sense = board.turn() == WHITE ? 1 : -1;
+            int value = staticScore(board);
+            _nodes = 0;
+            _aborted = _stopSearch;
+            for (int d = 1; d < depth && !_aborted; d += 1) {
+                boolean last = d == depth - 1;
+                int v = findMove(board, d, false, sense,
+                                 last ? alpha : -INFTY,
+                                 last ? beta : INFTY);
+                if (!_aborted) {
+                    value = v;
+                }
+            }
+            return value;
+        } finally {
+            board.undo();
+        }
+    }
+
+    /**
+     * Return true iff my opponent is a manual player, so that its moves
+     * leave time to ponder.
+     */
+    private boolean opponentIsManual() {
+        if (myPiece() == WHITE) {
+            return _controller.manualBlack();
+        } else {
+            return _controller.manualWhite();
+        }
+    }
+
+    /**
+     * Assuming MOVE is about to be made on the current board, predict my
+     * opponent's reply from _table and start searching the position after
+     * it on a background thread.  The search is made by a scratch copy of
+     * me (see scratchCopy) sharing my tablebase, so that it touches none
+     * of my tables or counters.
+     */
+    private void startPondering(Move move) {
+        Board b = new SearchBoard(board());
+        b.makeMove(move);
+        if (b.winner() != null) {
+            return;
+        }
+        Move reply = expectedMove(b);
+        if (reply == null) {
+            return;
+        }
+        b.makeMove(reply);
+        if (b.winner() != null || b.turn() != myPiece()) {
+            return;
+        }
+        _ponderPosition = b.encodedBoard();
+        int depth = _depth > 0 ? _depth : maxDepth(b);
+        AI ponderer = scratchCopy(myPiece(), depth);
+        ponderer._tablebase = _tablebase;
+        _ponderer = ponderer;
+        _ponderThread = new Thread(() -> {
+            ponderer._lastValue = ponderer.deepen(b, depth, true);
+        }, "ponder");
+        _ponderThread.setDaemon(true);
+        _ponderThread.start();
+    }
+
+    /**
+     * Return the best move recorded in _table for BOARD, if it is legal,
+     * and otherwise null.
+     */
+    private Move expectedMove(Board board) {
+        int slot = _table.find(board.hash());
+        if (slot < 0) {
+            return null;
+        }
+        Move move = _table.move(slot);
+        if (move == null || !board.isLegal(move)) {
+            return null;
+        }
+        return move;
+    }
+
+    /**
+     * Stop any pondering and copy the pondering search's results into
+     * _table: its entries are keyed by position, so they hold for any
+     * position it reached, whether or not BOARD is the one pondered.  If
+     * BOARD is that position, return the AI that made the search, whose
+     * _depthReached, _lastValue, and _lastFoundMove give the iterations
+     * it completed.  Otherwise, return null.
+     */
+    private AI finishPondering(Board board) {
+        if (_ponderThread == null) {
+            return null;
+        }
+        AI ponderer = _ponderer;
+        _ponderer.setStopSearch(true);
+        boolean hit = board.encodedBoard().equals(_ponderPosition);
+        try {
+            _ponderThread.join();
+        } catch (InterruptedException excp) {
+            _ponderThread = null;
+            _ponderer = null;
+            return null;
+        }
+        _ponderThread = null;
+        _ponderer = null;
+        _table.storeAll(ponderer._table);
+        return hit ? ponderer : null;
+    }
+
     /**
      * The move found by the last call to one of the ...FindMove methods
      * below.
@@ -98,14 +724,37 @@ class AI extends Player {
      * should have maximal value or have value > BETA if SENSE==1,
      * and minimal value or value < ALPHA if SENSE==-1. Searches up to
      * DEPTH levels.  Searching at level 0 simply returns a static estimate
-     * of the board value and does not set _lastMoveFound.
+     * of the board value and does not set _lastMoveFound.  When SAVEMOVE,
+     * moves in _excluded are not considered.  Critical positions at the
+     * horizon are searched a ply deeper (see extend).  A position in
+     * which the move limit ends the game is lost for the side to move,
+     * and positions whose lines may reach the limit bypass _table, whose
+     * entries do not record how near the limit was.
      */
     private int findMove(Board board, int depth, boolean saveMove,
                          int sense, int alpha, int beta) {
+        if (board.winner() == null && board.atMoveLimit()) {
+            return board.turn() == WHITE ? -WINNING_VALUE : WINNING_VALUE;
+        }
+        boolean limited = board.atMoveLimit(depth + 1);
+        int defenses = -1;
+        if (depth == 0 && board.winner() == null && extend(board)) {
+            defenses = defenses(board, moveBuffer());
+            if (defenses >= 0) {
+                depth = 1;
+            }
+        }
+        boolean extended = defenses >= 0;
         int best = 0;
         Move bestMove = null;
+        int alpha0 = alpha, beta0 = beta;
+        Move hint = null;
+        _nodes += 1;
+        if ((_nodes & (CHECK_INTERVAL - 1)) == 0 && _stopSearch) {
+            _aborted = true;
+        }
         if (depth == 0 || board.winner() != null) {
-            return staticScore(board);
+            return staticScore(board, alpha, beta);
         } else if (board.winner() == myPiece() && myPiece() == BLACK) {
             return -WINNING_VALUE;
         } else if (board.winner() == myPiece() && myPiece() == WHITE) {
@@ -114,14 +763,71 @@ class AI extends Player {
             return -INFTY;
         }
 
+        if (!saveMove) {
+            switch (KingMobility.enclosure(board)) {
+            case KingMobility.UNSTOPPABLE:
+                return UNSTOPPABLE_VALUE;
+            case KingMobility.SEALED:
+                return -SEALED_VALUE;
+            default:
+                break;
+            }
+        }
+
+        if (_tablebase != null && !saveMove) {
+            int value = _tablebase.probe(board);
+            if (value != 0) {
+                int score = tablebaseScore(value);
+                return board.turn() == WHITE ? score : -score;
+            }
+        }
+
+        int slot = _table.find(board.hash());
+        if (slot >= 0) {
+            hint = _table.move(slot);
+            if (!saveMove && !limited && _table.depth(slot) >= depth) {
+                int score = _table.score(slot);
+                switch (_table.kind(slot)) {
+                case TranspositionTable.EXACT:
+                    return score;
+                case TranspositionTable.LOWER:
+                    if (score >= beta) {
+                        return score;
+                    }
+                    break;
+                default:
+                    if (score <= alpha) {
+                        return score;
+                    }
+                    break;
+                }
+            }
+        }
+
+        Move[] moves = moveBuffer();
+        int n = extended ? defenses
+            : ordered(board, moves, board.legalMoves(board.turn(), moves),
+                      hint);
         if (sense == 1) {
             best = -INFTY;
-            for (Move move : board.legalMoves(WHITE)) {
+            for (int i = 0; i < n; i += 1) {
+                Move move = moves[i];
+                if (saveMove && _excluded.contains(move)) {
+                    continue;
+                }
                 board.makeMove(move);
+                _ply += 1;
                 int response = findMove(board, depth - 1,
                         false, -1, alpha, beta);
+                _ply -= 1;
                 board.undo();
-                if (response >= best) {
+                if (_aborted) {
+                    if (saveMove && _lastFoundMove == null) {
+                        _lastFoundMove = bestMove;
+                    }
+                    return best;
+                }
+                if (response > best || bestMove == null) {
                     bestMove = move;
                     best = response;
                     alpha = max(alpha, response);
@@ -134,12 +840,27 @@ class AI extends Player {
 
         } else {
             best = INFTY;
-            for (Move move : board.legalMoves(BLACK)) {
+            if (extended && n == 0) {
+                return WILL_WIN_VALUE;
+            }
+            for (int i = 0; i < n; i += 1) {
+                Move move = moves[i];
+                if (saveMove && _excluded.contains(move)) {
+                    continue;
+                }
                 board.makeMove(move);
+                _ply += 1;
                 int response = findMove(board, depth - 1,
                         false, 1, alpha, beta);
+                _ply -= 1;
                 board.undo();
-                if (response <= best) {
+                if (_aborted) {
+                    if (saveMove && _lastFoundMove == null) {
+                        _lastFoundMove = bestMove;
+                    }
+                    return best;
+                }
+                if (response < best || bestMove == null) {
                     bestMove = move;
                     best = response;
                     beta = min(beta, response);
@@ -152,9 +873,141 @@ class AI extends Player {
         if (saveMove) {
             _lastFoundMove = bestMove;
         }
+        int kind = best <= alpha0 ? TranspositionTable.UPPER
+                : best >= beta0 ? TranspositionTable.LOWER
+                : TranspositionTable.EXACT;
+        if (!limited && !extended && (!saveMove || _excluded.isEmpty())) {
+            _table.store(board.hash(), depth, kind, best, bestMove);
+        }
         return best;
     }
 
+    /**
+     * Return true iff BOARD, at the horizon of a search, is critical
+     * enough to search a ply deeper: Black is to move, and either the
+     * king is threatened with capture or it has a clear line to the edge
+     * that Black must close.  Only Black's replies to the threat are
+     * searched (see defenses).  Their replies have White to move, so no
+     * line is extended more than once.  Since the value of such a node
+     * comes from some of its moves, it is not stored in _table, where
+     * it could cut off a full-width search of the same position.
+     */
+    private static boolean extend(Board board) {
+        Square king = board.kingPosition();
+        return king != null && board.turn() == BLACK
+            && (board.threatened(king) || KingMobility.openLines(board) != 0);
+    }
+
+    /**
+     * Store in MOVES, of length at least Board.MAX_MOVES, the only moves
+     * by Black on BOARD, a critical position (see extend), whose values
+     * can decide the value of BOARD, and return their number, or return
+     * -1 if that takes all of them.  A move that wins outright, as by
+     * capturing the king, is as good as any, so if there is one, it is
+     * stored alone.  Otherwise, if the king has a clear line to the
+     * edge, every move that leaves it one lets the king escape, so the
+     * result is the moves that close all such lines (possibly none).
+     * Each candidate is made on BOARD, so that these are judged by the
+     * rules themselves, and undone.
+     */
+    static int defenses(Board board, Move[] moves) {
+        Square king = board.kingPosition();
+        boolean open = KingMobility.openLines(board) != 0;
+        int n = board.legalMoves(BLACK, moves), result = 0;
+        for (int i = 0; i < n; i += 1) {
+            Move move = moves[i];
+            if (!move.to().adjacent(king)
+                && !(open && KingMobility.openLinesAfter(board, move) == 0)) {
+                continue;
+            }
+            board.makeMove(move);
+            Piece winner = board.winner();
+            boolean closed = KingMobility.openLines(board) == 0;
+            board.undo();
+            if (winner == BLACK) {
+                moves[0] = move;
+                return 1;
+            } else if (open && winner == null && closed) {
+                moves[result] = move;
+                result += 1;
+            }
+        }
+        return open ? result : -1;
+    }
+
+    /**
+     * Reorder the first N of MOVES so that HINT, if present, comes first,
+     * then the moves that may capture on BOARD, then those of pieces that
+     * are threatened there (see Board.threatened), and then the rest,
+     * each group keeping its order.  If I have a policy, the moves after
+     * HINT follow in decreasing order of its score instead, equal scores
+     * keeping their order.  Returns N.  Sorts in _orderKeys and
+     * _orderMoves, so nothing is allocated.
+     */
+    private int ordered(Board board, Move[] moves, int n, Move hint) {
+        long[] keys = _orderKeys;
+        for (int i = 0; i < n; i += 1) {
+            Move move = moves[i];
+            long rank = move == hint ? Integer.MIN_VALUE
+                : _policy != null ? -(long) _policy.score(board, move)
+                : mayCapture(board, move) ? 1
+                : board.threatened(move.from()) ? 2 : 3;
+            keys[i] = (rank << 32) | i;
+        }
+        Arrays.sort(keys, 0, n);
+        System.arraycopy(moves, 0, _orderMoves, 0, n);
+        for (int i = 0; i < n; i += 1) {
+            moves[i] = _orderMoves[(int) keys[i]];
+        }
+        return n;
+    }
+
+    /**
+     * Return the legal moves for the side to move on BOARD, ordered for
+     * search as by ordered(BOARD, MOVES, N, HINT), in a new list.
+     */
+    private List<Move> ordered(Board board, Move hint) {
+        Move[] moves = new Move[Board.MAX_MOVES];
+        int n = ordered(board, moves,
+                        board.legalMoves(board.turn(), moves), hint);
+        return new ArrayList<>(Arrays.asList(moves).subList(0, n));
+    }
+
+    /**
+     * Return the buffer for the moves searched at ply _ply of the current
+     * search, allocating it the first time that ply is reached.
+     */
+    private Move[] moveBuffer() {
+        if (_ply == _moveBuffers.length) {
+            _moveBuffers = Arrays.copyOf(_moveBuffers, 2 * _ply);
+        }
+        if (_moveBuffers[_ply] == null) {
+            _moveBuffers[_ply] = new Move[Board.MAX_MOVES];
+        }
+        return _moveBuffers[_ply];
+    }
+
+    /**
+     * Return true iff MOVE, by the side to move on BOARD, lands next to
+     * an enemy piece with a friendly piece or the empty throne beyond it,
+     * as a capture requires.
+     */
+    static boolean mayCapture(Board board, Move move) {
+        Piece side = board.turn();
+        for (int dir = 0; dir < 4; dir += 1) {
+            Square beyond = move.to().rookMove(dir, 2);
+            if (beyond != null && beyond != move.from()
+                && board.get(move.to().rookMove(dir, 1)).side()
+                    == side.opponent()
+                && (board.get(beyond).side() == side
+                    || beyond == Board.THRONE
+                       && board.get(beyond) == EMPTY)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Return a heuristically determined maximum search depth
      * based on characteristics of BOARD.
@@ -192,9 +1045,18 @@ class AI extends Player {
     /**
      * Return a heuristic value for BOARD.
      */
-    private int staticScore(Board board) {
-        int score = 0;
-        int b = 0, w = 0;
+    int staticScore(Board board) {
+        return staticScore(board, -INFTY, INFTY);
+    }
+
+    /**
+     * Return staticScore(BOARD) if it lies between ALPHA and BETA.
+     * Otherwise, the result may instead be a bound on it computed from
+     * the cheap features alone: an upper bound no greater than ALPHA or
+     * a lower bound no less than BETA, either of which settles a search
+     * with that window as well as the exact score would.
+     */
+    int staticScore(Board board, int alpha, int beta) {
         if (this.myPiece().side() == WHITE) {
             if (kingOnEdge(board)) {
                 return WINNING_VALUE;
@@ -212,43 +1074,174 @@ class AI extends Player {
                 return WINNING_VALUE;
             }
         }
+        switch (KingMobility.enclosure(board)) {
+        case KingMobility.UNSTOPPABLE:
+            return UNSTOPPABLE_VALUE;
+        case KingMobility.SEALED:
+            return -SEALED_VALUE;
+        default:
+            break;
+        }
+
+        long key = board.hash();
+        int slot = _evalCache.find(key);
+        if (slot >= 0) {
+            return _evalCache.score(slot);
+        }
+        int score;
+        if (_network != null) {
+            if (board.accumulator() == null) {
+                board.setAccumulator(new Accumulator(_network));
+            }
+            score = _network.evaluate(board, board.accumulator());
+        } else {
+            Piece side = myPiece();
+            cheapFeatures(board, side, _features, _formations);
+            int cheap = _weights.score(side, _features);
+            if (alpha > -INFTY || beta < INFTY) {
+                int pieces = side.side() == BLACK
+                    ? _features[Weights.BLACK_PIECES]
+                    : _features[Weights.WHITE_PIECES]
+                    - (board.kingPosition() == null ? 0 : 1);
+                int surround =
+                    _weights.get(side, Weights.SURROUNDED) * pieces;
+                int capture = side.side() != board.turn() ? 0
+                    : _weights.get(side, Weights.CAPTURE)
+                    * MAX_NEIGHBORS * board.mobility(side);
+                int high = cheap + max(0, surround) + max(0, capture);
+                if (high <= alpha) {
+                    return high;
+                }
+                int low = cheap + min(0, surround) + min(0, capture);
+                if (low >= beta) {
+                    return low;
+                }
+            }
+            expensiveFeatures(board, side, _features);
+            score = _weights.score(side, _features);
+        }
+        _evalCache.store(key, score);
+        return score;
+    }
+
+    /**
+     * Return true iff staticScore for BOARD is decided by the position of
+     * the king rather than by the weighted features.
+     */
+    static boolean isDecided(Board board) {
+        return kingOnEdge(board) || kingWin(board) || kingCaptured(board)
+            || KingMobility.enclosure(board) != KingMobility.OPEN;
+    }
+
+    /**
+     * Return true iff SCORE, positive for White, decides the game: a win
+     * found by search or proven by the tablebase, or an escape or a
+     * sealed king recognized by KingMobility.enclosure.
+     */
+    static boolean isDecisive(int score) {
+        return score >= SEALED_VALUE || score <= -SEALED_VALUE;
+    }
+
+    /**
+     * Set FEATURES (indexed as in Weights) to the feature counts of BOARD
+     * as seen by SIDE.
+     */
+    static void features(Board board, Piece side, int[] features) {
+        features(board, side, features, null);
+    }
+
+    /**
+     * Set FEATURES as for features(BOARD, SIDE, FEATURES), taking the
+     * terms that depend only on the attackers (see formation) from
+     * FORMATIONS, if not null, and recording them there if absent.
+     */
+    static void features(Board board, Piece side, int[] features,
+                         EvalCache formations) {
+        cheapFeatures(board, side, features, formations);
+        expensiveFeatures(board, side, features);
+    }
+
+    /**
+     * Set the features of BOARD as seen by SIDE that take constant time,
+     * as for features(BOARD, SIDE, FEATURES, FORMATIONS), and set
+     * SURROUNDED and CAPTURE, which require a pass over the board, to 0.
+     */
+    private static void cheapFeatures(Board board, Piece side,
+                                      int[] features, EvalCache formations) {
+        long key = board.blackHash();
+        int slot = formations == null ? -1 : formations.find(key);
+        int formation;
+        if (slot >= 0) {
+            formation = formations.score(slot);
+        } else {
+            formation = formation(board);
+            if (formations != null) {
+                formations.store(key, formation);
+            }
+        }
+        int b = formation & FORMATION_MASK;
+        features[Weights.BLACK_PIECES] = b;
+        features[Weights.WHITE_PIECES] = Long.bitCount(board.occupiedLow())
+            + Long.bitCount(board.occupiedHigh()) - b;
+        features[Weights.SURROUNDED] = 0;
+        features[Weights.THRONES] =
+            (formation >> FORMATION_BITS) & FORMATION_MASK;
+        features[Weights.KING_APPROACH] = kingApproaches(board, side);
+        features[Weights.EDGE] = side == BLACK
+            ? (formation >> (2 * FORMATION_BITS)) & FORMATION_MASK
+            : edges(board, side);
+        features[Weights.CAPTURE] = 0;
+        features[Weights.ESCAPE] = Weights.escape(
+            KingMobility.escapeDistance(board, Weights.ESCAPE_LIMIT));
+    }
 
+    /**
+     * Set the SURROUNDED and CAPTURE features of BOARD as seen by SIDE in
+     * FEATURES.
+     */
+    private static void expensiveFeatures(Board board, Piece side,
+                                          int[] features) {
+        features[Weights.SURROUNDED] = surround(board, side);
+        int capture = 0;
+        if (side.side() == board.turn()) {
+            for (Square square : SQUARE_LIST) {
+                int reach = board.reach(side, square);
+                if (reach > 0) {
+                    capture += reach * enemiesNextTo(board, square, side);
+                }
+            }
+        }
+        features[Weights.CAPTURE] = capture;
+    }
 
+    /**
+     * Returns the terms of the evaluation of BOARD that depend only on
+     * where the black pieces stand, packed FORMATION_BITS apiece: the
+     * number of black pieces, thrones(BOARD), and edges(BOARD, BLACK),
+     * from the low bits up.
+     */
+    private static int formation(Board board) {
+        int b = 0;
         for (Piece[] row : board.getContents()) {
             for (Piece piece : row) {
                 if (piece == BLACK) {
                     b++;
-                } else if (piece == WHITE || piece == KING) {
-                    w++;
                 }
             }
         }
-        b = b * 9;
-        w = w * 16;
-        int pieces = b + w;
-
-        score += surround(board, b, w);
-        score += myStrat(board, b, w);
-
-        int capture = 0;
-        HashSet<Square> myPieces = board.pieceLocations(this.myPiece().side());
-        for (Square square : myPieces) {
-            capture += capturePoints(board, square);
-        }
-        capture *= 1000;
-        score += capture + pieces;
-        return score;
+        return b | thrones(board) << FORMATION_BITS
+            | edges(board, BLACK) << (2 * FORMATION_BITS);
     }
 
     /**
-     * Takes a BOARD,B,W and Returns the number
-     * of squares surrounded on the board for my pieces.
+     * Takes a BOARD and a SIDE and returns the number
+     * of SIDE's pieces that are next to an opposing piece.
      */
-    private int surround(Board board, int b, int w) {
+    private static int surround(Board board, Piece side) {
         int surrounded = 0;
         for (Square[] row : board.getBoard()) {
             for (Square square : row) {
-                if (board.get(square) == this.myPiece()
+                if (board.get(square) == side
                         && isSurrounded(board, square)) {
                     if (square == board.kingPosition()) {
                         surrounded += 10;
@@ -258,21 +1251,13 @@ class AI extends Player {
                 }
             }
         }
-        if (this.myPiece() == BLACK) {
-            surrounded = surrounded * 100 * 2;
-        } else if (this.myPiece() == WHITE) {
-            surrounded = surrounded * 100 * 2 * -1;
-        }
-
-        int throne = thrones(board) * 100 * 2 * -1;
-
-        return throne + surrounded;
+        return surrounded;
     }
 
     /**
      * Checks if SQUARE is surrounded on this BOARD and returns true.
      */
-    private boolean isSurrounded(Board board, Square square) {
+    private static boolean isSurrounded(Board board, Square square) {
         for (int i = 0; i < 4; i++) {
             Square other = square.rookMove(i, 1);
             if (other != null) {
@@ -291,14 +1276,9 @@ class AI extends Player {
      * that are orthogonally adjacent to the BOARD
      * and occupied by Black Pieces.
      */
-    private int thrones(Board board) {
+    private static int thrones(Board board) {
         int count = 0;
-        List<Square> arr = new ArrayList<>();
-        arr.add(Board.NTHRONE);
-        arr.add(Board.WTHRONE);
-        arr.add(Board.ETHRONE);
-        arr.add(Board.STHRONE);
-        for (Square square : arr) {
+        for (Square square : THRONE_NEIGHBORS) {
             if (board.get(square) == BLACK) {
                 count++;
             }
@@ -306,101 +1286,233 @@ class AI extends Player {
         return count;
     }
 
-
     /**
-     * Returns a Static score for my Piece's Strategy based on the BOARD,B,W.
+     * Returns the number of legal moves for SIDE on BOARD that end next
+     * to the king.
      */
-    private int myStrat(Board board, int b, int w) {
-        if (super.myPiece() == BLACK) {
-            int score = 0;
-            for (Move move : board.legalMoves(BLACK)) {
-                if (move.to().adjacent(board.kingPosition())) {
-                    score += 1;
-                }
-            }
-
-            int surrounded = 0;
-            int edge = 0;
-            for (Square[] row : board.getBoard()) {
-                for (Square square : row) {
-                    if (board.getContents()[square.row()][square.col()]
-                            == this.myPiece() && isSurrounded(board, square)) {
-                        surrounded++;
-                    }
-                    if (board.getContents()[square.row()][square.col()]
-                            == this.myPiece() && square.isEdge()) {
-                        edge++;
-                    }
-                }
-            }
-            surrounded = surrounded * 100 * 2 * -1;
-            edge = edge * 100 * 2 * -1;
-            score = score * 1000 * 1000;
-            return score + edge + surrounded;
-        } else {
-            int score = 0;
-            for (Move move : board.legalMoves(WHITE)) {
-                if (move.to().adjacent(board.kingPosition())) {
-                    score += 1;
-                }
+    private static int kingApproaches(Board board, Piece side) {
+        Square king = board.kingPosition();
+        if (side.side() != board.turn() || king == null) {
+            return 0;
+        }
+        int score = 0;
+        for (int dir = 0; dir < 4; dir += 1) {
+            Square square = king.rookMove(dir, 1);
+            if (square != null) {
+                score += board.reach(side, square);
             }
-            score *= 1000 * 10;
-            return score;
         }
+        return score;
     }
 
     /**
-     * Takes a BOARD, and a SQUARE and returns capturing points.
+     * Returns the number of SIDE's pieces on the edge of BOARD.
      */
-    private int capturePoints(Board board, Square square) {
-        int cap = 0;
-        for (Move.MoveList moves : ROOK_MOVES[square.index()]) {
-            for (Move move : moves) {
-                if (board.isLegal(move)) {
-                    Square me = move.to();
-                    Piece my = board.get(square);
-                    for (Square sq : board.pieceLocations(my.opponent())) {
-                        if (me.adjacent(sq)) {
-                            cap++;
-                        }
-                    }
+    private static int edges(Board board, Piece side) {
+        int edge = 0;
+        for (Square[] row : board.getBoard()) {
+            for (Square square : row) {
+                if (board.getContents()[square.row()][square.col()]
+                        == side && square.isEdge()) {
+                    edge++;
                 }
             }
         }
-        return cap;
+        return edge;
     }
 
     /**
-     * Takes a BOARD and returns whether the king has a clear win.
+     * Returns the number of pieces opposing SIDE orthogonally adjacent to
+     * SQUARE on BOARD.
      */
-    private boolean kingWin(Board board) {
-        Square king = board.kingPosition();
-        if (king == null) {
-            return false;
-        }
-        for (Move.MoveList moves : ROOK_MOVES[king.index()]) {
-            for (Move move : moves) {
-                if (move.to().isEdge() && board.isLegal(move)) {
-                    return true;
-                }
+    private static int enemiesNextTo(Board board, Square square,
+                                     Piece side) {
+        int count = 0;
+        for (int dir = 0; dir < 4; dir += 1) {
+            Square other = square.rookMove(dir, 1);
+            if (other != null
+                && board.get(other).side() == side.opponent()) {
+                count += 1;
             }
         }
-        return false;
+        return count;
+    }
+
+    /**
+     * Takes a BOARD and returns whether the king has a clear win: that
+     * White is to move and the king has an open line to the edge.
+     */
+    private static boolean kingWin(Board board) {
+        return board.turn() == WHITE && KingMobility.openLines(board) != 0;
     }
 
     /**
      * Takes a BOARD and returns whether the king has reached the edge or not.
      */
-    private boolean kingOnEdge(Board board) {
+    private static boolean kingOnEdge(Board board) {
         return board.kingPosition() != null && board.kingPosition().isEdge();
     }
 
     /**
      * Takes a BOARD Returns if the king has been captured.
      */
-    private boolean kingCaptured(Board board) {
+    private static boolean kingCaptured(Board board) {
         return board.kingPosition() == null;
     }
 
+    /**
+     * Search results shared by successive searches, including those made
+     * while pondering the position that arose (see finishPondering).
+     */
+    private TranspositionTable _table;
+
+    /**
+     * Root moves excluded from the current search (see analyze).
+     */
+    private final List<Move> _excluded = new ArrayList<>();
+
+    /**
+     * Static scores already computed.
+     */
+    private EvalCache _evalCache;
+
+    /**
+     * Evaluation terms already computed for attacker formations, keyed
+     * by Board.blackHash (see formation).
+     */
+    private EvalCache _formations;
+
+    /**
+     * The persistent cache holding the tables of the AIs I create, or
+     * null if they are kept in memory.
+     */
+    private SearchCache _cache;
+
+    /**
+     * Endgame results, or null if I have none.
+     */
+    private Tablebase _tablebase;
+
+    /**
+     * Opening moves, or null if I have none.
+     */
+    private OpeningBook _book;
+
+    /**
+     * Weights of the features in my evaluation function.
+     */
+    private Weights _weights = Weights.DEFAULT;
+
+    /**
+     * Network evaluating positions, or null to use _weights.
+     */
+    private Network _network;
+
+    /**
+     * Scratch space for the features of the position being evaluated.
+     */
+    private final int[] _features = new int[Weights.NUM_FEATURES];
+
+    /**
+     * Scratch space for the sort keys of the moves being ordered (see
+     * ordered).
+     */
+    private final long[] _orderKeys = new long[Board.MAX_MOVES];
+
+    /**
+     * Scratch space for the moves being ordered.
+     */
+    private final Move[] _orderMoves = new Move[Board.MAX_MOVES];
+
+    /**
+     * _moveBuffers[k] holds the moves searched at ply K of the current
+     * search, or is null if no search has reached ply K (see
+     * moveBuffer).
+     */
+    private Move[][] _moveBuffers = new Move[INITIAL_PLIES][];
+
+    /**
+     * The ply of the node being searched, counted from the root.
+     */
+    private int _ply;
+
+    /**
+     * Size of the ProofSolver tried before each search, or 0 for none.
+     */
+    private int _solverNodes;
+
+    /**
+     * The workers my searches are split among, or null to search here.
+     */
+    private DistributedSearch _distributed;
+
+    /**
+     * The policy ordering moves in my searches, or null.
+     */
+    private Policy _policy;
+
+    /**
+     * The warm-up to wait for before my first search, or null.
+     */
+    private WarmUp _warmUp;
+
+    /**
+     * True until I have reported the time taken by my first move.
+     */
+    private boolean _firstMove = true;
+
+    /**
+     * Time (as from System.nanoTime) at which my latest search started.
+     */
+    private volatile long _searchStart;
+
+    /**
+     * Fixed search depth, or 0 to use maxDepth.
+     */
+    private int _depth;
+
+    /**
+     * True iff I search on my opponent's time.
+     */
+    private boolean _ponder;
+
+    /**
+     * The thread searching the position I expect after my opponent's
+     * reply, or null if I am not pondering.
+     */
+    private Thread _ponderThread;
+
+    /**
+     * The scratch copy of me searching for _ponderThread, or null.
+     */
+    private AI _ponderer;
+
+    /**
+     * The encoded board (see Board.encodedBoard) being pondered.
+     */
+    private String _ponderPosition;
+
+    /**
+     * Set to abandon the current search.
+     */
+    private volatile boolean _stopSearch;
+
+    /**
+     * Set once the current search has seen _stopSearch.
+     */
+    private boolean _aborted;
+
+    /**
+     * Number of nodes visited by the current search.
+     */
+    private long _nodes;
+    /**
+     * Value found by my latest searchMove (see lastValue).
+     */
+    private int _lastValue;
+    /**
+     * Depth of the last complete iteration of my latest search.
+     */
+    private int _depthReached;
 
 }
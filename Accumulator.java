@@ -0,0 +1,159 @@
+package tablut;
+
+import java.util.Arrays;
+
+import static tablut.Piece.*;
+
+/**
+ * The first layer of a Network for a Board, kept up to date as the board
+ * changes.  A Board with an accumulator attached reports each change of a
+ * square through update, and each move and undo through push and pop, so
+ * that the accumulator holds one set of values for each ply of the
+ * current line and undoing a move costs nothing.  When the king moves (or
+ * is captured) in a network with king-relative features, every such
+ * feature changes, so the values are marked stale and recomputed from the
+ * board when next needed.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Accumulator {
+
+    /**
+     * Initial number of plies of values.
+     */
+    private static final int INITIAL_PLIES = 32;
+
+    /**
+     * An accumulator for NETWORK.  Its values are stale until it is
+     * attached to a board.
+     */
+    Accumulator(Network network) {
+        _network = network;
+        _values = new short[INITIAL_PLIES][Network.ACCUMULATOR_SIZE];
+        _stale = new boolean[INITIAL_PLIES];
+        _stale[0] = true;
+        _kings = new Square[INITIAL_PLIES];
+    }
+
+    /**
+     * Return the values for BOARD, the board I am attached to,
+     * recomputing them if they are stale.
+     */
+    short[] values(Board board) {
+        if (_stale[_ply]) {
+            refresh(board);
+        }
+        return _values[_ply];
+    }
+
+    /**
+     * Return scratch space for the hidden layer of my network.
+     */
+    int[] hidden() {
+        return _hidden;
+    }
+
+    /**
+     * Recompute the current values from BOARD.
+     */
+    void refresh(Board board) {
+        short[] values = _values[_ply];
+        _network.clear(values);
+        int n = Network.features(board, _network.kingRelative(), _features);
+        for (int k = 0; k < n; k += 1) {
+            _network.accumulate(values, _features[k], 1);
+        }
+        _kings[_ply] = board.kingPosition();
+        _stale[_ply] = false;
+    }
+
+    /**
+     * Record that square S, which contained OLD (possibly null), now
+     * contains P.
+     */
+    void update(Piece old, Piece p, Square s) {
+        if (_stale[_ply] || old == p) {
+            return;
+        }
+        if (_network.kingRelative() && (old == KING || p == KING)) {
+            _stale[_ply] = true;
+            return;
+        }
+        short[] values = _values[_ply];
+        Square king = _kings[_ply];
+        boolean relative = _network.kingRelative() && king != null;
+        if (old != null && old != EMPTY) {
+            _network.accumulate(values, Network.pieceFeature(old, s), -1);
+            if (relative) {
+                _network.accumulate(values,
+                                    Network.kingFeature(old, s, king), -1);
+            }
+        }
+        if (p != EMPTY) {
+            _network.accumulate(values, Network.pieceFeature(p, s), 1);
+            if (relative) {
+                _network.accumulate(values,
+                                    Network.kingFeature(p, s, king), 1);
+            }
+        }
+    }
+
+    /**
+     * Start a new ply, beginning with the current values.
+     */
+    void push() {
+        if (_ply + 1 == _values.length) {
+            int plies = 2 * _values.length;
+            _values = Arrays.copyOf(_values, plies);
+            for (int k = _ply + 1; k < plies; k += 1) {
+                _values[k] = new short[Network.ACCUMULATOR_SIZE];
+            }
+            _stale = Arrays.copyOf(_stale, plies);
+            _kings = Arrays.copyOf(_kings, plies);
+        }
+        System.arraycopy(_values[_ply], 0, _values[_ply + 1], 0,
+                         Network.ACCUMULATOR_SIZE);
+        _stale[_ply + 1] = _stale[_ply];
+        _kings[_ply + 1] = _kings[_ply];
+        _ply += 1;
+    }
+
+    /**
+     * Return to the values of the previous ply, if any.
+     */
+    void pop() {
+        if (_ply > 0) {
+            _ply -= 1;
+        }
+    }
+
+    /**
+     * The network whose first layer I hold.
+     */
+    private final Network _network;
+    /**
+     * _values[k] holds the values for ply k of the current line.
+     */
+    private short[][] _values;
+    /**
+     * _stale[k] is true iff _values[k] must be recomputed.
+     */
+    private boolean[] _stale;
+    /**
+     * The current ply.
+     */
+    private int _ply;
+    /**
+     * _kings[k] is the location of the king for the king-relative
+     * features in _values[k].
+     */
+    private Square[] _kings;
+    /**
+     * Scratch space for the features of a position.
+     */
+    private final int[] _features = new int[Network.MAX_ACTIVE];
+    /**
+     * Scratch space for the hidden layer.
+     */
+    private final int[] _hidden = new int[Network.HIDDEN_SIZE];
+}
@@ -0,0 +1,88 @@
+package tablut;
+
+/**
+ * Gradient descent by Adam (adaptive moment estimation), which scales the
+ * step of each parameter by running estimates of the mean and the mean
+ * square of its gradient, corrected for their bias toward 0 in the first
+ * steps.  The trainers (Tuner, PolicyTrainer, and NetworkTrainer) each
+ * keep one for the parameters they fit.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Adam {
+
+    /**
+     * Decay rates of the running means of the gradient and its square.
+     */
+    static final double BETA1 = 0.9, BETA2 = 0.999;
+    /**
+     * Added to the root mean square of the gradient to avoid dividing by
+     * 0.
+     */
+    static final double EPSILON = 1e-8;
+
+    /**
+     * A descent of N parameters with step size RATE.
+     */
+    Adam(int n, double rate) {
+        _m = new double[n];
+        _v = new double[n];
+        _rate = rate;
+    }
+
+    /**
+     * Take one step of THETA along GRADIENT.
+     */
+    void step(double[] theta, double[] gradient) {
+        begin();
+        for (int k = 0; k < theta.length; k += 1) {
+            theta[k] -= delta(k, gradient[k]);
+        }
+    }
+
+    /**
+     * Take one step of PARAMS along GRADIENT times SCALE.
+     */
+    void step(float[] params, float[] gradient, double scale) {
+        begin();
+        for (int k = 0; k < params.length; k += 1) {
+            params[k] -= (float) delta(k, gradient[k] * scale);
+        }
+    }
+
+    /**
+     * Count a new step and compute its bias corrections.
+     */
+    private void begin() {
+        _steps += 1;
+        _c1 = 1 - Math.pow(BETA1, _steps);
+        _c2 = 1 - Math.pow(BETA2, _steps);
+    }
+
+    /**
+     * Update the running means of parameter K with its gradient G, and
+     * return the amount by which to decrease the parameter.
+     */
+    private double delta(int k, double g) {
+        _m[k] = BETA1 * _m[k] + (1 - BETA1) * g;
+        _v[k] = BETA2 * _v[k] + (1 - BETA2) * g * g;
+        return _rate * (_m[k] / _c1) / (Math.sqrt(_v[k] / _c2) + EPSILON);
+    }
+
+    /**
+     * Running means of the gradient and its square for each parameter.
+     */
+    private final double[] _m, _v;
+    /**
+     * Step size.
+     */
+    private final double _rate;
+    /**
+     * Number of steps taken.
+     */
+    private int _steps;
+    /**
+     * Bias corrections of _m and _v for the current step.
+     */
+    private double _c1, _c2;
+}
@@ -0,0 +1,143 @@
+package tablut;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of analyzing a position: its best few moves, best first,
+ * each with the score the search gave it and its principal variation.
+ * Scores are as in AI's search: larger is better for White.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Analysis {
+
+    /**
+     * One analyzed move.
+     */
+    static class Line {
+
+        /**
+         * A line whose first move is PV[0], scored SCORE, searched to
+         * DEPTH plies.
+         */
+        Line(List<Move> pv, int score, int depth) {
+            _pv = Collections.unmodifiableList(new ArrayList<>(pv));
+            _score = score;
+            _depth = depth;
+        }
+
+        /**
+         * Return the move analyzed.
+         */
+        Move move() {
+            return _pv.get(0);
+        }
+
+        /**
+         * Return the score of move().
+         */
+        int score() {
+            return _score;
+        }
+
+        /**
+         * Return the depth of the search that scored move().
+         */
+        int depth() {
+            return _depth;
+        }
+
+        /**
+         * Return the expected continuation, starting with move().  It may
+         * be shorter than depth() plies.
+         */
+        List<Move> pv() {
+            return _pv;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder();
+            result.append(String.format("%s (%s)", move(), scoreString()));
+            for (int i = 1; i < _pv.size(); i += 1) {
+                result.append(" ").append(_pv.get(i));
+            }
+            return result.toString();
+        }
+
+        /**
+         * Return score() in readable form.
+         */
+        private String scoreString() {
+            if (!AI.isDecisive(_score)) {
+                return Integer.toString(_score);
+            } else if (_score > 0) {
+                return "white wins";
+            } else {
+                return "black wins";
+            }
+        }
+
+        /**
+         * The principal variation.
+         */
+        private final List<Move> _pv;
+        /**
+         * The score of its first move.
+         */
+        private final int _score;
+        /**
+         * The depth searched.
+         */
+        private final int _depth;
+    }
+
+    /**
+     * An analysis of a position with TURN to move, initially with no
+     * lines.
+     */
+    Analysis(Piece turn) {
+        _turn = turn;
+    }
+
+    /**
+     * Add LINE after the lines already present.
+     */
+    void add(Line line) {
+        _lines.add(line);
+    }
+
+    /**
+     * Return the side to move in the position analyzed.
+     */
+    Piece turn() {
+        return _turn;
+    }
+
+    /**
+     * Return the lines found, best first.
+     */
+    List<Line> lines() {
+        return Collections.unmodifiableList(_lines);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < _lines.size(); i += 1) {
+            result.append(String.format("%d. %s%n", i + 1, _lines.get(i)));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Side to move.
+     */
+    private final Piece _turn;
+    /**
+     * The lines, best first.
+     */
+    private final List<Line> _lines = new ArrayList<>();
+}
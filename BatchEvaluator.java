@@ -0,0 +1,397 @@
+package tablut;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+
+import static tablut.Piece.*;
+import static tablut.PositionBatch.LOW_SQUARES;
+import static tablut.PositionBatch.POSITION_BYTES;
+import static tablut.Square.BOARD_SIZE;
+import static tablut.Square.NUM_SQUARES;
+
+/**
+ * Evaluates batches of positions, unrelated to any search, exactly as
+ * AI.staticScore would with given Weights (but never with a Network).
+ * The evaluation features are computed from the bit masks of a
+ * PositionBatch: sliding moves by occluded fills along each direction,
+ * counts by population counts.  This class does so one position at a
+ * time; VectorBatchEvaluator, which requires the jdk.incubator.vector
+ * module at compile time and run time, does the same operations on
+ * vectors of positions at once.  create chooses the vector version when
+ * that module is present.
+ *
+ * @author Shreyansh Loharuka
+ */
+class BatchEvaluator {
+
+    /**
+     * Status bit: the king is on the edge.
+     */
+    static final int KING_ON_EDGE = 1;
+    /**
+     * Status bit: the king has a legal move to the edge.
+     */
+    static final int KING_WIN = 2;
+    /**
+     * Status bit: there is no king.
+     */
+    static final int KING_CAPTURED = 4;
+
+    /**
+     * Directions, as for Square.rookMove: north, east, south, west.
+     */
+    static final int NORTH = 0, EAST = 1, SOUTH = 2, WEST = 3;
+
+    /**
+     * Masks of all squares in the low and high words.
+     */
+    static final long LOW_MASK = (1L << LOW_SQUARES) - 1,
+        HIGH_MASK = (1L << (NUM_SQUARES - LOW_SQUARES)) - 1;
+
+    /**
+     * Masks, low and high words, of the squares that a step in each
+     * direction may reach without wrapping around the board.
+     */
+    static final long[] STEP_LOW = new long[4], STEP_HIGH = new long[4];
+    /**
+     * Masks of the edge squares.
+     */
+    static final long EDGE_LOW, EDGE_HIGH;
+    /**
+     * Masks of the throne.
+     */
+    static final long THRONE_LOW, THRONE_HIGH;
+    /**
+     * Masks of the squares next to the throne.
+     */
+    static final long THRONES_LOW, THRONES_HIGH;
+
+    static {
+        long[] edge = new long[2], throne = new long[2], thrones = new long[2];
+        long[][] step = new long[4][2];
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            Square s = Square.sq(i);
+            int word = i < LOW_SQUARES ? 0 : 1;
+            long bit = 1L << (i < LOW_SQUARES ? i : i - LOW_SQUARES);
+            if (s.isEdge()) {
+                edge[word] |= bit;
+            }
+            if (s == Board.THRONE) {
+                throne[word] |= bit;
+            }
+            if (s == Board.NTHRONE || s == Board.STHRONE
+                || s == Board.ETHRONE || s == Board.WTHRONE) {
+                thrones[word] |= bit;
+            }
+            step[NORTH][word] |= bit;
+            step[SOUTH][word] |= bit;
+            if (s.col() != 0) {
+                step[EAST][word] |= bit;
+            }
+            if (s.col() != BOARD_SIZE - 1) {
+                step[WEST][word] |= bit;
+            }
+        }
+        EDGE_LOW = edge[0];
+        EDGE_HIGH = edge[1];
+        THRONE_LOW = throne[0];
+        THRONE_HIGH = throne[1];
+        THRONES_LOW = thrones[0];
+        THRONES_HIGH = thrones[1];
+        for (int dir = 0; dir < 4; dir += 1) {
+            STEP_LOW[dir] = step[dir][0];
+            STEP_HIGH[dir] = step[dir][1];
+        }
+    }
+
+    /**
+     * Use batch evaluation.  ARGS are SIDE IN OUT [WEIGHTS]: write to OUT,
+     * one per line, the scores for SIDE (white or black) of the positions
+     * in compact form in IN, using the weights in WEIGHTS or the defaults.
+     */
+    public static void main(String... args) {
+        try {
+            if (args.length == 3 || args.length == 4) {
+                Piece side = Piece.valueOf(args[0].toUpperCase());
+                Weights weights = args.length == 4
+                    ? new Weights(new File(args[3])) : Weights.DEFAULT;
+                byte[] data = Files.readAllBytes(new File(args[1]).toPath());
+                int n = data.length / POSITION_BYTES;
+                int[] scores = create(weights).evaluate(side, data, n);
+                try (PrintWriter out = new PrintWriter(args[2])) {
+                    for (int score : scores) {
+                        out.println(score);
+                    }
+                }
+            } else {
+                Utils.fatal("Usage: java tablut.BatchEvaluator"
+                            + " SIDE IN OUT [WEIGHTS]%n");
+            }
+        } catch (NumberFormatException excp) {
+            Utils.fatal("bad number: %s%n", excp.getMessage());
+        } catch (IllegalArgumentException excp) {
+            Utils.fatal("%s%n", excp.getMessage());
+        } catch (IOException excp) {
+            Utils.fatal("%s%n", excp.getMessage());
+        }
+    }
+
+    /**
+     * Return the fastest evaluator available using WEIGHTS.
+     */
+    static BatchEvaluator create(Weights weights) {
+        try {
+            return (BatchEvaluator) Class.forName("tablut.VectorBatchEvaluator")
+                .getDeclaredConstructor(Weights.class).newInstance(weights);
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            return new BatchEvaluator(weights);
+        }
+    }
+
+    /**
+     * An evaluator using WEIGHTS.
+     */
+    BatchEvaluator(Weights weights) {
+        _weights = weights;
+    }
+
+    /**
+     * Return the scores for SIDE of the N positions in compact form in
+     * POSITIONS.
+     */
+    int[] evaluate(Piece side, byte[] positions, int n) {
+        return evaluate(side, new PositionBatch(positions, n));
+    }
+
+    /**
+     * Return the scores for SIDE of the positions in BATCH.
+     */
+    int[] evaluate(Piece side, PositionBatch batch) {
+        int n = batch.size();
+        int[][] features = new int[Weights.NUM_FEATURES][n];
+        int[] status = new int[n];
+        features(side, batch, 0, n, features, status);
+        int[] scores = new int[n];
+        int[] f = new int[Weights.NUM_FEATURES];
+        for (int k = 0; k < n; k += 1) {
+            int s = status[k];
+            int enclosure = enclosure(batch, k);
+            if (side == WHITE && (s & KING_ON_EDGE) != 0) {
+                scores[k] = AI.WINNING_VALUE;
+            } else if (side == WHITE && (s & KING_WIN) != 0) {
+                scores[k] = AI.WILL_WIN_VALUE;
+            } else if (side == WHITE && (s & KING_CAPTURED) != 0) {
+                scores[k] = -AI.INFTY;
+            } else if (side == BLACK && (s & KING_CAPTURED) != 0) {
+                scores[k] = -AI.WINNING_VALUE;
+            } else if (side == BLACK && (s & KING_WIN) != 0) {
+                scores[k] = AI.WILL_WIN_VALUE;
+            } else if (side == BLACK && (s & KING_ON_EDGE) != 0) {
+                scores[k] = AI.WINNING_VALUE;
+            } else if (enclosure == KingMobility.UNSTOPPABLE) {
+                scores[k] = AI.UNSTOPPABLE_VALUE;
+            } else if (enclosure == KingMobility.SEALED) {
+                scores[k] = -AI.SEALED_VALUE;
+            } else {
+                for (int i = 0; i < Weights.NUM_FEATURES; i += 1) {
+                    f[i] = features[i][k];
+                }
+                scores[k] = _weights.score(side, f);
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Return KingMobility.enclosure for position K of BATCH.
+     */
+    private static int enclosure(PositionBatch batch, int k) {
+        long kl = batch.kingLow()[k], kh = batch.kingHigh()[k];
+        if ((kl | kh) == 0) {
+            return KingMobility.OPEN;
+        }
+        Square king = Square.sq(kl != 0 ? Long.numberOfTrailingZeros(kl)
+                                : LOW_SQUARES + Long.numberOfTrailingZeros(kh));
+        return KingMobility.enclosure(batch.whiteLow()[k], batch.whiteHigh()[k],
+                                      batch.blackLow()[k], batch.blackHigh()[k],
+                                      king, batch.whiteToMove()[k] != 0);
+    }
+
+    /**
+     * Set FEATURES[F][K] to feature F (as in Weights and AI.features) for
+     * SIDE of position K of BATCH, and STATUS[K] to its status bits, for
+     * FROM <= K < TO.
+     */
+    void features(Piece side, PositionBatch batch, int from, int to,
+                  int[][] features, int[] status) {
+        long[] fill = new long[2];
+        for (int k = from; k < to; k += 1) {
+            long wl = batch.whiteLow()[k], wh = batch.whiteHigh()[k],
+                bl = batch.blackLow()[k], bh = batch.blackHigh()[k],
+                kl = batch.kingLow()[k], kh = batch.kingHigh()[k],
+                turn = batch.whiteToMove()[k];
+            long el = ~(wl | bl | kl) & LOW_MASK,
+                eh = ~(wh | bh | kh) & HIGH_MASK;
+            boolean white = side == WHITE;
+            long mine = white ? turn : ~turn;
+            long pl = white ? wl : bl, ph = white ? wh : bh;
+            long ol = white ? bl : wl | kl, oh = white ? bh : wh | kh;
+            long xl = white ? bl : wl, xh = white ? bh : wh;
+            long ml = pl & mine, mh = ph & mine;
+            long kml = white ? kl & mine : 0, kmh = white ? kh & mine : 0;
+            long nkl = neighborsLow(kl, kh), nkh = neighborsHigh(kl, kh);
+
+            int approach = 0, capture = 0;
+            long winl = 0, winh = 0;
+            for (int dir = 0; dir < 4; dir += 1) {
+                fill(dir, ml, mh, el, eh, fill);
+                long dl = fill[0] & ~THRONE_LOW, dh = fill[1] & ~THRONE_HIGH;
+                fill(dir, kml, kmh, el, eh, fill);
+                dl |= fill[0];
+                dh |= fill[1];
+                approach += Long.bitCount(dl & nkl) + Long.bitCount(dh & nkh);
+                for (int e = 0; e < 4; e += 1) {
+                    capture += Long.bitCount(dl & stepLow(e, 1, ol, oh))
+                        + Long.bitCount(dh & stepHigh(e, 1, ol, oh));
+                }
+                fill(dir, kl & turn, kh & turn, el, eh, fill);
+                winl |= fill[0];
+                winh |= fill[1];
+            }
+
+            features[Weights.SURROUNDED][k] =
+                Long.bitCount(pl & neighborsLow(xl, xh))
+                + Long.bitCount(ph & neighborsHigh(xl, xh));
+            features[Weights.THRONES][k] =
+                Long.bitCount(bl & THRONES_LOW)
+                + Long.bitCount(bh & THRONES_HIGH);
+            features[Weights.KING_APPROACH][k] = approach;
+            features[Weights.EDGE][k] =
+                Long.bitCount(pl & EDGE_LOW) + Long.bitCount(ph & EDGE_HIGH);
+            features[Weights.CAPTURE][k] = capture;
+            features[Weights.BLACK_PIECES][k] =
+                Long.bitCount(bl) + Long.bitCount(bh);
+            features[Weights.WHITE_PIECES][k] =
+                Long.bitCount(wl) + Long.bitCount(wh)
+                + Long.bitCount(kl) + Long.bitCount(kh);
+            features[Weights.ESCAPE][k] = Weights.escape(
+                KingMobility.escapeDistance(kl, kh, el, eh,
+                                            Weights.ESCAPE_LIMIT));
+            status[k] =
+                ((kl & EDGE_LOW) != 0 || (kh & EDGE_HIGH) != 0
+                 ? KING_ON_EDGE : 0)
+                | ((winl & EDGE_LOW) != 0 || (winh & EDGE_HIGH) != 0
+                   ? KING_WIN : 0)
+                | ((kl | kh) == 0 ? KING_CAPTURED : 0);
+        }
+    }
+
+    /**
+     * Set RESULT to the low and high words of the empty squares that the
+     * pieces in GL, GH can reach by sliding in direction DIR through the
+     * empty squares EL, EH.
+     */
+    static void fill(int dir, long gl, long gh, long el, long eh,
+                     long[] result) {
+        long pl = el & STEP_LOW[dir], ph = eh & STEP_HIGH[dir];
+        long ql = pl, qh = ph;
+        for (int n = 1; n <= 4; n *= 2) {
+            long sl = shiftLow(dir, n, gl, gh), sh = shiftHigh(dir, n, gl, gh);
+            gl |= pl & sl;
+            gh |= ph & sh;
+            sl = shiftLow(dir, n, pl, ph);
+            sh = shiftHigh(dir, n, pl, ph);
+            pl &= sl;
+            ph &= sh;
+        }
+        long sl = shiftLow(dir, 1, gl, gh), sh = shiftHigh(dir, 1, gl, gh);
+        gl |= ql & sl;
+        gh |= qh & sh;
+        result[0] = gl & el;
+        result[1] = gh & eh;
+    }
+
+    /**
+     * Return the low word of the squares next to those in XL, XH.
+     */
+    static long neighborsLow(long xl, long xh) {
+        return stepLow(NORTH, 1, xl, xh) | stepLow(EAST, 1, xl, xh)
+            | stepLow(SOUTH, 1, xl, xh) | stepLow(WEST, 1, xl, xh);
+    }
+
+    /**
+     * Return the high word of the squares next to those in XL, XH.
+     */
+    static long neighborsHigh(long xl, long xh) {
+        return stepHigh(NORTH, 1, xl, xh) | stepHigh(EAST, 1, xl, xh)
+            | stepHigh(SOUTH, 1, xl, xh) | stepHigh(WEST, 1, xl, xh);
+    }
+
+    /**
+     * Return the low word of the squares N steps in direction DIR from
+     * those in XL, XH, without wrapping.
+     */
+    static long stepLow(int dir, int n, long xl, long xh) {
+        return shiftLow(dir, n, xl, xh) & STEP_LOW[dir];
+    }
+
+    /**
+     * Return the high word of the squares N steps in direction DIR from
+     * those in XL, XH, without wrapping.
+     */
+    static long stepHigh(int dir, int n, long xl, long xh) {
+        return shiftHigh(dir, n, xl, xh) & STEP_HIGH[dir];
+    }
+
+    /**
+     * Return the low word of XL, XH shifted N squares (1 <= N <= 4) in
+     * direction DIR.  Squares shifted east or west may wrap to adjacent
+     * rows.
+     */
+    static long shiftLow(int dir, int n, long xl, long xh) {
+        switch (dir) {
+        case NORTH:
+            return (xl << (BOARD_SIZE * n)) & LOW_MASK;
+        case SOUTH:
+            return ((xl >>> (BOARD_SIZE * n))
+                    | (xh << (LOW_SQUARES - BOARD_SIZE * n))) & LOW_MASK;
+        case EAST:
+            return (xl << n) & LOW_MASK;
+        default:
+            return xl >>> n;
+        }
+    }
+
+    /**
+     * Return the high word of XL, XH shifted N squares (1 <= N <= 4) in
+     * direction DIR.  Squares shifted east or west may wrap to adjacent
+     * rows.
+     */
+    static long shiftHigh(int dir, int n, long xl, long xh) {
+        switch (dir) {
+        case NORTH:
+            return ((xh << (BOARD_SIZE * n))
+                    | (xl >>> (LOW_SQUARES - BOARD_SIZE * n))) & HIGH_MASK;
+        case SOUTH:
+            return xh >>> (BOARD_SIZE * n);
+        case EAST:
+            return (xh << n) & HIGH_MASK;
+        default:
+            return xh >>> n;
+        }
+    }
+
+    /**
+     * Return my weights.
+     */
+    Weights weights() {
+        return _weights;
+    }
+
+    /**
+     * The weights of the evaluation features.
+     */
+    private final Weights _weights;
+}
@@ -5,8 +5,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Formatter;
 import java.util.Arrays;
+import java.util.Random;
 import static tablut.Move.ROOK_MOVES;
 import static tablut.Piece.*;
+import static tablut.PositionBatch.LOW_SQUARES;
 import static tablut.Square.SQUARE_LIST;
 import static tablut.Square.sq;
 
@@ -23,6 +25,12 @@ class Board {
      */
     static final int SIZE = 9;
 
+    /**
+     * An upper bound on the number of legal moves in any position: each
+     * empty square can be entered from at most four directions.
+     */
+    static final int MAX_MOVES = 4 * Square.NUM_SQUARES;
+
     /**
      * The throne (or castle) square and its four surrounding squares..
      */
@@ -86,11 +94,28 @@ class Board {
         copy(model);
     }
 
+    /**
+     * Initializes a copy of MODEL's position and side to move, with its
+     * history iff WITHHISTORY.  A copy without history is for subclasses
+     * that record positions themselves (see recordPosition).
+     */
+    Board(Board model, boolean withHistory) {
+        copy(model, withHistory);
+    }
+
 
     /** Copies MODEL into me.
      * */
-    @SuppressWarnings("unchecked")
     void copy(Board model) {
+        copy(model, true);
+    }
+
+    /** Copies MODEL into me, including its history iff WITHHISTORY.  The
+     *  move count and move limit are copied either way, so that a copy
+     *  ends the game when MODEL would.
+     * */
+    @SuppressWarnings("unchecked")
+    private void copy(Board model, boolean withHistory) {
         if (model == this) {
             return;
         }
@@ -99,7 +124,18 @@ class Board {
         _board = new Square[SIZE][SIZE];
         _contents = new Piece[SIZE][SIZE];
         _turn = model._turn;
-        _moveCount = 0;
+        _hash = model._hash;
+        _blackHash = model._blackHash;
+        _king = model._king;
+        _occupiedLow = model._occupiedLow;
+        _occupiedHigh = model._occupiedHigh;
+        _blackLow = model._blackLow;
+        _blackHigh = model._blackHigh;
+        _reach = new int[][] {model._reach[0].clone(),
+                              model._reach[1].clone()};
+        _mobility = model._mobility.clone();
+        _moveCount = model._moveCount;
+        _moveLimit = model._moveLimit;
         _repeated = false;
         _winner = null;
         _stateOfBoard = new Stack<Board>();
@@ -113,7 +149,10 @@ class Board {
         for (int i = 0; i < SIZE; i++) {
             System.arraycopy(model._contents[i], 0, this._contents[i], 0, SIZE);
         }
-        _stateOfBoard = (Stack<Board>) model._stateOfBoard.clone();
+        if (withHistory) {
+            _stateOfBoard = (Stack<Board>) model._stateOfBoard.clone();
+        }
+        _accumulator = null;
     }
 
     /**
@@ -124,6 +163,13 @@ class Board {
         _attackers = new Square[16];
         _defenders = new Square[8];
         _turn = BLACK;
+        _hash = 0;
+        _blackHash = 0;
+        _king = null;
+        _occupiedLow = _occupiedHigh = 0;
+        _blackLow = _blackHigh = 0;
+        _reach = new int[2][Square.NUM_SQUARES];
+        _mobility = new int[2];
         _moveCount = 0;
         _moveLimit = 0;
         _repeated = false;
@@ -137,6 +183,9 @@ class Board {
             }
         }
         _contents = new Piece[SIZE][SIZE];
+        for (Piece[] row : _contents) {
+            Arrays.fill(row, EMPTY);
+        }
         for (Square[] row : _board) {
             for (Square square : row) {
                 if (square.equals(THRONE)) {
@@ -154,6 +203,26 @@ class Board {
         _stateOfBoard.push(copy);
     }
 
+    /**
+     * Set the board to the position ENCODED, in the format returned by
+     * encodedBoard, with no winner.  Clears undo information.
+     */
+    void setPosition(String encoded) {
+        _turn = encoded.charAt(0) == WHITE.toString().charAt(0)
+            ? WHITE : BLACK;
+        for (Square sq : SQUARE_LIST) {
+            String symbol = encoded.substring(sq.index() + 1, sq.index() + 2);
+            for (Piece p : Piece.values()) {
+                if (p.toString().equals(symbol)) {
+                    put(p, sq);
+                }
+            }
+        }
+        _winner = null;
+        _repeated = false;
+        clearUndo();
+    }
+
     /**
      * Takes in CONTENTS Make a copy of the contents of the board and return it.
      */
@@ -187,6 +256,29 @@ class Board {
         _moveLimit = n;
     }
 
+    /**
+     * Return true iff the next move will end the game by reaching the
+     * move limit.
+     */
+    boolean atMoveLimit() {
+        return atMoveLimit(1);
+    }
+
+    /**
+     * Return true iff a move limit has been set.
+     */
+    boolean hasMoveLimit() {
+        return _moveLimit != 0;
+    }
+
+    /**
+     * Return true iff one of the next N moves will end the game by
+     * reaching the move limit.
+     */
+    boolean atMoveLimit(int n) {
+        return _moveLimit != 0 && _moveCount + n - 1 >= 2 * _moveLimit;
+    }
+
     /**
      * Return a Piece representing whose move it is (WHITE or BLACK).
      */
@@ -210,19 +302,39 @@ class Board {
     }
 
     /**
-     * Record current position and set winner() next mover if the current
-     * position is a repeat.
+     * Return true iff the current position, with the same side to move,
+     * has been recorded before.
      */
-    private void checkRepeated() {
+    boolean isRepeated() {
         for (Board b : _stateOfBoard) {
             if (Arrays.deepEquals(b._contents, _contents)) {
                 if (b._turn.equals(_turn)) {
-                    _repeated = true;
-                    _winner = _turn;
-                    return;
+                    return true;
                 }
             }
         }
+        return false;
+    }
+
+    /**
+     * Record the current position, after a move, for the repetition rule
+     * and for undo.
+     */
+    void recordPosition() {
+        Board copy = new Board(this);
+        _stateOfBoard.push(copy);
+    }
+
+    /**
+     * Return the hashes (as for hash()) of the positions recorded for the
+     * repetition rule, oldest first.
+     */
+    long[] history() {
+        long[] result = new long[_stateOfBoard.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = _stateOfBoard.get(i).hash();
+        }
+        return result;
     }
 
     /**
@@ -233,10 +345,216 @@ class Board {
         return _moveCount;
     }
 
+    /**
+     * Return a Zobrist hash of the current position, including the side to
+     * move.  Equal positions always have equal hashes.
+     */
+    long hash() {
+        return _turn == WHITE ? _hash ^ WHITE_TO_MOVE : _hash;
+    }
+
+    /**
+     * Return a Zobrist hash of the squares occupied by black pieces alone.
+     * It is the same for all positions with the same attacker formation,
+     * whatever the defenders and the side to move.
+     */
+    long blackHash() {
+        return _blackHash;
+    }
+
+    /**
+     * Return the hash (as for hash()) of the image of the current position
+     * under board symmetry SYM (see Square.symmetric).
+     */
+    long hash(int sym) {
+        long h = _turn == WHITE ? WHITE_TO_MOVE : 0;
+        for (Square sq : SQUARE_LIST) {
+            h ^= ZOBRIST[get(sq).ordinal()][sq.symmetric(sym).index()];
+        }
+        return h;
+    }
+
+    /**
+     * Attach ACCUMULATOR to me, so that it follows my changes, after
+     * setting it from my current contents.  A null ACCUMULATOR detaches
+     * any accumulator.
+     */
+    void setAccumulator(Accumulator accumulator) {
+        _accumulator = accumulator;
+        if (accumulator != null) {
+            accumulator.refresh(this);
+        }
+    }
+
+    /**
+     * Return my attached accumulator, or null if none.
+     */
+    Accumulator accumulator() {
+        return _accumulator;
+    }
+
     /**
      * Return location of the king.
      */
     Square kingPosition() {
+        return _king;
+    }
+
+    /**
+     * Return the low word of the mask of occupied squares, laid out as in
+     * PositionBatch: bit I is square I, for I < PositionBatch.LOW_SQUARES.
+     */
+    long occupiedLow() {
+        return _occupiedLow;
+    }
+
+    /**
+     * Return the high word of the mask of occupied squares: bit I is
+     * square PositionBatch.LOW_SQUARES + I.
+     */
+    long occupiedHigh() {
+        return _occupiedHigh;
+    }
+
+    /**
+     * Return the low word of the mask of squares holding attackers, laid
+     * out as for occupiedLow.
+     */
+    long blackLow() {
+        return _blackLow;
+    }
+
+    /**
+     * Return the high word of the mask of squares holding attackers.
+     */
+    long blackHigh() {
+        return _blackHigh;
+    }
+
+    /**
+     * Return the number of SIDE's pieces that could move to S in one
+     * move, whoever's turn it is.  This is 0 for occupied squares, and
+     * for the throne unless the king can reach it.
+     */
+    int reach(Piece side, Square s) {
+        return _reach[side.side() == WHITE ? 0 : 1][s.index()];
+    }
+
+    /**
+     * Return the number of legal moves SIDE would have if it were SIDE's
+     * turn: the sum of reach(SIDE, S) over all squares S.
+     */
+    int mobility(Piece side) {
+        return _mobility[side.side() == WHITE ? 0 : 1];
+    }
+
+    /**
+     * Return true iff a single move by the opponent of the piece on S
+     * could capture it.  This takes constant time, using reach.  It
+     * ignores the rule that lets attackers use the occupied throne
+     * against a defender, and so may miss those captures.
+     */
+    boolean threatened(Square s) {
+        Piece piece = get(s);
+        if (piece == EMPTY) {
+            return false;
+        }
+        Piece enemy = piece.opponent();
+        if (piece == KING && (s == THRONE || s.adjacent(THRONE))) {
+            for (int dir = 0; dir < 4; dir += 1) {
+                Square to = s.rookMove(dir, 1);
+                Square far = s.rookMove((dir + 2) & 3, 1),
+                    side1 = s.rookMove((dir + 1) & 3, 1),
+                    side2 = s.rookMove((dir + 3) & 3, 1);
+                if (reach(BLACK, to) > 0
+                    && (far == THRONE || get(far) == BLACK)
+                    && (side1 == THRONE ? get(side2) != WHITE
+                        : side2 == THRONE ? get(side1) != WHITE
+                        : get(side1) == BLACK && get(side2) == BLACK)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int dir = 0; dir < 2; dir += 1) {
+            Square a = s.rookMove(dir, 1), b = s.rookMove(dir + 2, 1);
+            if (a != null && b != null
+                && (hostile(a, enemy) && reach(enemy, b) > 0
+                    || hostile(b, enemy) && reach(enemy, a) > 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return true iff the square S, as it is, could help ENEMY capture a
+     * piece next to it.
+     */
+    private boolean hostile(Square s, Piece enemy) {
+        Piece piece = get(s);
+        return piece.side() == enemy || s == THRONE && piece == EMPTY;
+    }
+
+    /**
+     * Change the contents of S from OLD to P (which differ), keeping
+     * _reach up to date.  Besides the rays of OLD and P, only the rays
+     * of the nearest pieces in each direction from S, which pass through
+     * or stop at S, change, and then only from S on.
+     */
+    private void updateReach(Piece old, Piece p, Square s) {
+        if (old != EMPTY) {
+            for (int dir = 0; dir < 4; dir += 1) {
+                addRay(old, s, dir, -1);
+            }
+        }
+        if ((old == EMPTY) != (p == EMPTY)) {
+            int delta = p == EMPTY ? 1 : -1;
+            for (int dir = 0; dir < 4; dir += 1) {
+                Square q = s.rookMove(dir, 1);
+                while (q != null && get(q) == EMPTY) {
+                    q = q.rookMove(dir, 1);
+                }
+                if (q != null) {
+                    Piece piece = get(q);
+                    if (s != THRONE || piece == KING) {
+                        int k = piece.side() == WHITE ? 0 : 1;
+                        _reach[k][s.index()] += delta;
+                        _mobility[k] += delta;
+                    }
+                    addRay(piece, s, (dir + 2) & 3, delta);
+                }
+            }
+        }
+        _contents[s.row()][s.col()] = p;
+        if (p != EMPTY) {
+            for (int dir = 0; dir < 4; dir += 1) {
+                addRay(p, s, dir, 1);
+            }
+        }
+    }
+
+    /**
+     * Add DELTA to the reach of PIECE's side for each empty square it
+     * could move to in direction DIR if it stood on S (see reach).
+     */
+    private void addRay(Piece piece, Square s, int dir, int delta) {
+        int k = piece.side() == WHITE ? 0 : 1;
+        int[] reach = _reach[k];
+        for (Square q = s.rookMove(dir, 1); q != null && get(q) == EMPTY;
+             q = q.rookMove(dir, 1)) {
+            if (q != THRONE || piece == KING) {
+                reach[q.index()] += delta;
+                _mobility[k] += delta;
+            }
+        }
+    }
+
+    /**
+     * Return the location of a king found by scanning the board, or null
+     * if there is none.
+     */
+    private Square findKing() {
         for (Square[] row : _board) {
             for (Square square : row) {
                 if (get(square) == KING) {
@@ -273,14 +591,46 @@ class Board {
      * Set square S to P.
      */
     final void put(Piece p, Square s) {
-        _contents[s.row()][s.col()] = p;
-
+        Piece old = _contents[s.row()][s.col()];
+        if (old != null) {
+            _hash ^= ZOBRIST[old.ordinal()][s.index()];
+        }
+        _hash ^= ZOBRIST[p.ordinal()][s.index()];
+        if ((old == BLACK) != (p == BLACK)) {
+            _blackHash ^= ZOBRIST[BLACK.ordinal()][s.index()];
+        }
+        if (old != p) {
+            updateReach(old, p, s);
+        } else {
+            _contents[s.row()][s.col()] = p;
+        }
+        int i = s.index();
+        if (i < LOW_SQUARES) {
+            _occupiedLow = p == EMPTY ? _occupiedLow & ~(1L << i)
+                : _occupiedLow | (1L << i);
+            _blackLow = p == BLACK ? _blackLow | (1L << i)
+                : _blackLow & ~(1L << i);
+        } else {
+            i -= LOW_SQUARES;
+            _occupiedHigh = p == EMPTY ? _occupiedHigh & ~(1L << i)
+                : _occupiedHigh | (1L << i);
+            _blackHigh = p == BLACK ? _blackHigh | (1L << i)
+                : _blackHigh & ~(1L << i);
+        }
+        if (p == KING) {
+            _king = s;
+        } else if (s == _king) {
+            _king = findKing();
+        }
+        if (_accumulator != null) {
+            _accumulator.update(old, p, s);
+        }
     }
 
     /**
      * Set square S to P and record for undoing.
      */
-    final void revPut(Piece p, Square s) {
+    void revPut(Piece p, Square s) {
         put(p, s);
     }
 
@@ -301,21 +651,26 @@ class Board {
                 _winner = _turn.opponent();
                 return;
             }
+            if (_accumulator != null) {
+                _accumulator.push();
+            }
             revPut(get(from), to);
             revPut(EMPTY, from);
 
-            HashSet<Square> loc = pieceLocations(turn());
-            if (!loc.contains(THRONE)) {
-                loc.add(THRONE);
-            }
             _moveCount += 1;
-            for (Square square : loc) {
-                capture(to, square);
+            for (int dir = 0; dir < 4; dir += 1) {
+                Square square = to.rookMove(dir, 2);
+                if (square != null
+                        && (square == THRONE || get(square).side() == _turn)) {
+                    capture(to, square);
+                }
             }
             _turn = _turn.opponent();
-            checkRepeated();
-            Board copy = new Board(this);
-            _stateOfBoard.push(copy);
+            if (isRepeated()) {
+                _repeated = true;
+                _winner = _turn;
+            }
+            recordPosition();
             if (kingPosition() != null && kingPosition().isEdge()) {
                 _winner = WHITE;
             }
@@ -363,9 +718,6 @@ class Board {
      * Returns true if SQ0 and SQ2 has something in between them.
      */
     boolean canCapture(Square sq0, Square sq2) {
-        int[][] dir = {
-                {0, 1}, {1, 0}, {0, -1}, {-1, 0}
-        };
         for (int i = 0; i < 4; i++) {
             Square square = sq0.rookMove(i, 2);
 
@@ -440,27 +792,52 @@ class Board {
     }
 
     /**
-     * Undo one move.  Has no effect on the initial board.
+     * Undo one move.  Has no effect on the initial board.  Any attached
+     * accumulator is detached while the contents are restored, since it
+     * returns to the values of the previous ply when popped.
      */
     void undo() {
-        if (moveCount() > 0) {
-            undoPosition();
+        Accumulator accumulator = _accumulator;
+        _accumulator = null;
+        boolean undone = undoPosition();
+        _accumulator = accumulator;
+        if (undone) {
+            if (_accumulator != null) {
+                _accumulator.pop();
+            }
             _turn = _turn.opponent();
+            _moveCount -= 1;
+            _winner = null;
+            _repeated = false;
         }
     }
 
     /**
-     * Remove record of current position in the set of positions encountered,
-     * unless it is a repeated position or we are at the first move.
+     * Remove record of current position in the set of positions encountered
+     * and restore the contents of the previous one.  Returns false, doing
+     * nothing, if there is no previous position.
      */
-    private void undoPosition() {
-        if (!_repeated) {
-            if (!_stateOfBoard.empty()) {
-                _stateOfBoard.pop();
-                _contents = copyContents(_stateOfBoard.peek()._contents);
-            }
+    boolean undoPosition() {
+        if (_stateOfBoard.size() <= 1) {
+            return false;
         }
-        _repeated = false;
+        _stateOfBoard.pop();
+        Board previous = _stateOfBoard.peek();
+        _contents = copyContents(previous._contents);
+        _hash = previous._hash;
+        _blackHash = previous._blackHash;
+        _king = previous._king;
+        _occupiedLow = previous._occupiedLow;
+        _occupiedHigh = previous._occupiedHigh;
+        _blackLow = previous._blackLow;
+        _blackHigh = previous._blackHigh;
+        System.arraycopy(previous._reach[0], 0, _reach[0], 0,
+                         Square.NUM_SQUARES);
+        System.arraycopy(previous._reach[1], 0, _reach[1], 0,
+                         Square.NUM_SQUARES);
+        _mobility[0] = previous._mobility[0];
+        _mobility[1] = previous._mobility[1];
+        return true;
     }
 
     /**
@@ -486,19 +863,50 @@ class Board {
      * SIDE (ignoring whose turn it is at the moment).
      */
     List<Move> legalMoves(Piece side) {
-        List<Move> legal = new ArrayList<Move>();
-        HashSet<Square> loc = pieceLocations(side);
-        for (Square square : loc) {
-            int ind = square.index();
+        Move[] moves = new Move[MAX_MOVES];
+        int n = legalMoves(side, moves);
+        List<Move> legal = new ArrayList<Move>(n);
+        for (int i = 0; i < n; i += 1) {
+            legal.add(moves[i]);
+        }
+        return legal;
+    }
+
+    /**
+     * Store the legal moves on the current board for SIDE (ignoring whose
+     * turn it is at the moment) in MOVES, whose length must be at least
+     * MAX_MOVES, starting at index 0, and return their number.  The moves
+     * of each piece come together, the pieces in order of their squares'
+     * indices.  As isLegal(MOVE) does, this finds no moves for the side
+     * not to move.  Nothing is allocated.
+     */
+    int legalMoves(Piece side, Move[] moves) {
+        assert side != EMPTY;
+        Piece type = side.side();
+        if (type != _turn) {
+            return 0;
+        }
+        int n = 0;
+        for (int ind = 0; ind < Square.NUM_SQUARES; ind += 1) {
+            Piece piece = get(sq(ind));
+            if (piece.side() != type) {
+                continue;
+            }
             for (List<Move> sqList : ROOK_MOVES[ind]) {
-                for (Move move : sqList) {
-                    if (isLegal(move)) {
-                        legal.add(move);
+                for (int k = 0; k < sqList.size(); k += 1) {
+                    Move move = sqList.get(k);
+                    Square to = move.to();
+                    if (get(to) != EMPTY) {
+                        break;
+                    }
+                    if (to != THRONE || piece == KING) {
+                        moves[n] = move;
+                        n += 1;
                     }
                 }
             }
         }
-        return legal;
+        return n;
     }
 
     /**
@@ -633,10 +1041,67 @@ class Board {
         return out.toString();
     }
 
+    /**
+     * ZOBRIST[p][i] is the hash key for piece p (by ordinal) on the square
+     * with index i.  Keys for EMPTY are 0.  The seed is fixed so that hashes
+     * are stable from run to run.
+     */
+    private static final long[][] ZOBRIST =
+            new long[Piece.values().length][Square.NUM_SQUARES];
+
+    /**
+     * Hash key added when White is to move.
+     */
+    private static final long WHITE_TO_MOVE;
+
+    static {
+        Random keys = new Random(0x7AB1075L);
+        for (Piece p : Piece.values()) {
+            for (int i = 0; i < Square.NUM_SQUARES; i += 1) {
+                ZOBRIST[p.ordinal()][i] = p == EMPTY ? 0 : keys.nextLong();
+            }
+        }
+        WHITE_TO_MOVE = keys.nextLong();
+    }
+
     /**
      * Piece whose turn it is (WHITE or BLACK).
      */
     private Piece _turn;
+    /**
+     * Zobrist hash of the contents of the board (without the side to move).
+     */
+    private long _hash;
+    /**
+     * Zobrist hash of the black pieces alone (see blackHash).
+     */
+    private long _blackHash;
+    /**
+     * Location of the king, or null if it has been captured.
+     */
+    private Square _king;
+    /**
+     * Mask of the occupied squares, low and high words (see occupiedLow).
+     */
+    private long _occupiedLow, _occupiedHigh;
+    /**
+     * Masks of the squares holding attackers (see blackLow).
+     */
+    private long _blackLow, _blackHigh;
+    /**
+     * _reach[0][I] and _reach[1][I] are reach(WHITE, sq(I)) and
+     * reach(BLACK, sq(I)).
+     */
+    private int[][] _reach;
+    /**
+     * _mobility[0] and _mobility[1] are mobility(WHITE) and
+     * mobility(BLACK).
+     */
+    private int[] _mobility;
+    /**
+     * The accumulator following my changes, or null.
+     */
+    private Accumulator _accumulator;
     /**
      * Cached value of winner on this board, or EMPTY if it has not been
      * computed.
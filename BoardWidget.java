@@ -95,8 +95,11 @@ class BoardWidget extends Pad {
 
     @Override
     public synchronized void paintComponent(Graphics2D g) {
+        Events.Repaint event = new Events.Repaint();
+        event.begin();
         drawGrid(g);
         Square.SQUARE_LIST.iterator().forEachRemaining(s -> drawPiece(g, s));
+        event.commit();
     }
 
     /**
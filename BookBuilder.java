@@ -0,0 +1,104 @@
+package tablut;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds an OpeningBook from games of the AI against itself.  Every move
+ * the AI chose within the first few plies of a game goes into the book,
+ * weighted by the number of times it was played plus the number of those
+ * games won by the side that played it.
+ *
+ * @author Shreyansh Loharuka
+ */
+class BookBuilder {
+
+    /**
+     * Plies at the start of each game that may be random.
+     */
+    private static final int RANDOM_PLIES = 8;
+    /**
+     * Probability that each of those plies is random.
+     */
+    private static final double RANDOM_RATE = 0.25;
+
+    /**
+     * Build a book from self-play.  ARGS are [--symmetric] GAMES PLIES FILE:
+     * play GAMES games and record the first PLIES plies of each in FILE.
+     * With --symmetric, the book is keyed up to board symmetry.
+     */
+    public static void main(String... args) {
+        boolean symmetric = args.length > 0 && args[0].equals("--symmetric");
+        int first = symmetric ? 1 : 0;
+        if (args.length != first + 3) {
+            Utils.fatal("Usage: java tablut.BookBuilder [--symmetric] GAMES"
+                        + " PLIES FILE%n");
+        }
+        try {
+            int games = Integer.parseInt(args[first]);
+            int plies = Integer.parseInt(args[first + 1]);
+            BookBuilder builder = new BookBuilder(symmetric, plies);
+            for (SelfPlay.Game game
+                     : new SelfPlay(0, RANDOM_PLIES, RANDOM_RATE,
+                                   SelfPlay.MAX_PLIES)
+                     .play(games, 0)) {
+                builder.add(game);
+            }
+            builder.write(new File(args[first + 2]));
+        } catch (NumberFormatException excp) {
+            Utils.fatal("bad number: %s%n", excp.getMessage());
+        } catch (IOException excp) {
+            Utils.fatal("%s%n", excp.getMessage());
+        }
+    }
+
+    /**
+     * A builder for a book covering the first PLIES plies of games, keyed
+     * up to symmetry iff SYMMETRIC.
+     */
+    BookBuilder(boolean symmetric, int plies) {
+        _symmetric = symmetric;
+        _plies = plies;
+    }
+
+    /**
+     * Add the searched moves in the opening of GAME to the book.
+     */
+    void add(SelfPlay.Game game) {
+        Board board = new Board();
+        for (int k = 0; k < Math.min(_plies, game.length()); k += 1) {
+            if (!game.searched(k)) {
+                continue;
+            }
+            board.setPosition(game.position(k));
+            int sym = OpeningBook.symmetry(board, _symmetric);
+            Map<Move, Integer> moves =
+                _weights.computeIfAbsent(board.hash(sym),
+                                         key -> new HashMap<>());
+            int weight = game.winner() == board.turn() ? 2 : 1;
+            moves.merge(game.move(k).symmetric(sym), weight, Integer::sum);
+        }
+    }
+
+    /**
+     * Write the book to FILE.
+     */
+    void write(File file) throws IOException {
+        OpeningBook.write(file, _symmetric, _weights);
+    }
+
+    /**
+     * True iff the book is keyed up to symmetry.
+     */
+    private final boolean _symmetric;
+    /**
+     * Number of plies recorded from each game.
+     */
+    private final int _plies;
+    /**
+     * Weights of the moves recorded so far, by position key.
+     */
+    private final Map<Long, Map<Move, Integer>> _weights = new HashMap<>();
+}
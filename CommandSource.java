@@ -0,0 +1,17 @@
+package tablut;
+
+/**
+ * A source of commands, such as menu selections, that may arrive while
+ * the controller is busy, for example while an AI is searching.
+ *
+ * @author Shreyansh Loharuka
+ */
+interface CommandSource {
+
+    /**
+     * Return the next pending command, waiting up to MILLIS milliseconds
+     * for one to arrive, or null if there is none.
+     */
+    String pollCommand(long millis);
+
+}
@@ -1,6 +1,7 @@
 package tablut;
 
 import java.io.PrintStream;
+import java.util.Map;
 import java.util.Random;
 import java.util.Scanner;
 import java.util.regex.Pattern;
@@ -47,7 +48,7 @@ final class Controller {
         _winner = null;
         _board.init();
         while (_playing) {
-            _view.update(this);
+            updateView();
             String command;
             if (_winner == null) {
                 if (_board.turn() == WHITE) {
@@ -111,6 +112,21 @@ final class Controller {
         }
     }
 
+    /** Take commands that arrive while I am busy from SOURCE (if not
+     *  null). */
+    void setCommandSource(CommandSource source) {
+        _commandSource = source;
+    }
+
+    /** Return a command that has arrived from my command source, waiting
+     *  up to MILLIS milliseconds for one, or null if there is none. */
+    String pollCommand(long millis) {
+        if (_commandSource == null) {
+            return null;
+        }
+        return _commandSource.pollCommand(millis);
+    }
+
     /** Return true iff white is a manual player. */
     boolean manualWhite() {
         return _white.isManual();
@@ -136,12 +152,27 @@ final class Controller {
         _reporter.reportMove(move);
     }
 
-    /** Print a comment in the log.  The arguments FORMAT and ARGS are
-     *  as for String.format. */
+    /** Print a comment in the log, or on the standard error if there is
+     *  no log.  The arguments FORMAT and ARGS are as for String.format. */
     void logComment(String format, Object... args) {
         if (_logFile != null) {
             _logFile.printf("# " + format + "%n", args);
             _logFile.flush();
+        } else {
+            System.err.printf("# " + format + "%n", args);
+        }
+    }
+
+    /** Update my view of the game, recording the time taken as a
+     *  ViewUpdate event (see Events). */
+    private void updateView() {
+        Events.ViewUpdate event = new Events.ViewUpdate();
+        event.begin();
+        _view.update(this);
+        event.end();
+        if (event.shouldCommit()) {
+            event.moveCount = _board.moveCount();
+            event.commit();
         }
     }
 
@@ -171,6 +202,11 @@ final class Controller {
         new Command("seed\\s+(\\d+)$", this::doSeed),
         new Command("dump$", this::doDump),
         new Command("undo$", this::doUndo),
+        new Command("stop$", this::doStop),
+        new Command("analyze\\s+(\\d+)$", this::doAnalyze),
+        new Command("solve(?:\\s+(\\d+))?$", this::doSolve),
+        new Command("perft\\s+(\\d+)$", this::doPerft),
+        new Command("divide\\s+(\\d+)$", this::doDivide),
         new Command("manual\\s+(white|black)$", this::doManual),
         new Command("auto\\s+(white|black)$", this::doAuto),
         new Command("limit\\s+(\\d+)$", this::doLimit),
@@ -182,8 +218,35 @@ final class Controller {
     private static final Matcher COMMENT = Pattern.compile("#.*").matcher("");
 
     /** Check that CMND is one of the valid Tablut commands and execute it, if
-     *  so, raising an IllegalArgumentException otherwise. */
+     *  so, raising an IllegalArgumentException otherwise.  Records the
+     *  time taken as a Command event (see Events). */
     private void executeCommand(String cmnd) {
+        Events.Command event = new Events.Command();
+        event.begin();
+        try {
+            execute(cmnd);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.text = cmnd;
+                event.type = commandType(cmnd);
+                event.commit();
+            }
+        }
+    }
+
+    /** Return the type of command CMND: "move" for a move, and otherwise
+     *  its first word. */
+    private static String commandType(String cmnd) {
+        cmnd = COMMENT.pattern().matcher(cmnd).replaceFirst("").trim();
+        if (Move.MOVE_PATTERN.matcher(cmnd.toLowerCase()).matches()) {
+            return "move";
+        }
+        return cmnd.split("\\s+", 2)[0].toLowerCase();
+    }
+
+    /** Execute command CMND, as for executeCommand. */
+    private void execute(String cmnd) {
         if (_logFile != null) {
             _logFile.println(cmnd);
             _logFile.flush();
@@ -223,7 +286,7 @@ final class Controller {
         default:
             assert false;
         }
-        _view.update(this);
+        updateView();
     }
 
     /** Command "auto <color>", where <color> is COLOR.group(1). */
@@ -238,7 +301,7 @@ final class Controller {
         default:
             assert false;
         }
-        _view.update(this);
+        updateView();
     }
 
     /** Command "toggle". The first group of MAT is a square designation.
@@ -287,7 +350,7 @@ final class Controller {
         if (_winner == null) {
             _winner = _board.winner();
             if (_winner != null) {
-                _view.update(this);
+                updateView();
                 _reporter.reportNote("%s wins.", _winner.toName());
             }
         }
@@ -305,7 +368,117 @@ final class Controller {
             _board.undo();
             _board.undo();
             _winner = null;
-            _view.update(this);
+            updateView();
+        }
+    }
+
+    /** Command "stop", which has effect only when it arrives from my
+     *  command source while an AI is searching (see AI.myMove).  Text
+     *  input is not read during a search, so without a command source, as
+     *  outside the GUI, it is an error. */
+    private void doStop(Matcher unused) {
+        if (_commandSource == null) {
+            throw error("stop is available only with --display");
+        }
+    }
+
+    /** Command "analyze N", where N is the first group of MAT: report the
+     *  best N moves for the side to move, with their scores and principal
+     *  variations. */
+    private void doAnalyze(Matcher mat) {
+        int n;
+        try {
+            n = Integer.parseInt(mat.group(1));
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+        if (n == 0 || _winner != null) {
+            return;
+        }
+        _reporter.reportAnalysis(analyst().analyze(_board, n));
+    }
+
+    /** Command "solve [N]", where N, the first group of MAT, is the size
+     *  of the tree to use (ProofSolver.DEFAULT_NODES if absent): report
+     *  whether a proof-number search settles which side wins. */
+    private void doSolve(Matcher mat) {
+        int nodes = ProofSolver.DEFAULT_NODES;
+        if (mat.group(1) != null) {
+            try {
+                nodes = Integer.parseInt(mat.group(1));
+            } catch (NumberFormatException excp) {
+                throw error("number too large");
+            }
+        }
+        if (_winner != null) {
+            return;
+        }
+        Piece turn = _board.turn();
+        ProofSolver solver = new ProofSolver(nodes);
+        switch (solver.solve(_board, turn, () -> false)) {
+        case ProofSolver.PROVEN:
+            _reporter.reportNote("%s wins with %s (%d nodes).",
+                                 turn.toName(), solver.winningMove(),
+                                 solver.nodes());
+            break;
+        case ProofSolver.DISPROVEN:
+            _reporter.reportNote("%s wins (%d nodes).",
+                                 turn.opponent().toName(), solver.nodes());
+            break;
+        default:
+            _reporter.reportNote("Not solved in %d nodes.", solver.nodes());
+            break;
+        }
+    }
+
+    /** Command "perft N", where N is the first group of MAT: report the
+     *  numbers of paths of N plies from the current position, of
+     *  captures, and of game-ending moves at their ends (see Perft). */
+    private void doPerft(Matcher mat) {
+        perft(mat, false);
+    }
+
+    /** Command "divide N", where N is the first group of MAT: as for
+     *  "perft N", but also reporting the counts for each first move. */
+    private void doDivide(Matcher mat) {
+        perft(mat, true);
+    }
+
+    /** Perform "perft" or "divide" (iff DIVIDE) as specified by MAT. */
+    private void perft(Matcher mat, boolean divide) {
+        int depth;
+        try {
+            depth = Integer.parseInt(mat.group(1));
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+        long start = System.nanoTime();
+        Perft.Counts total = new Perft.Counts();
+        for (Map.Entry<Move, Perft.Counts> entry
+                 : Perft.divide(_board, depth, false, true).entrySet()) {
+            if (divide) {
+                _reporter.reportNote("%s: %s", entry.getKey(),
+                                     entry.getValue());
+            }
+            total.add(entry.getValue());
+        }
+        _reporter.reportNote("perft %d: %s (%.3f s)", depth, total,
+                             (System.nanoTime() - start) * 1e-9);
+    }
+
+    /** Return an AI for the side to move: its current player, if that is
+     *  an AI, so that the analysis uses and adds to that player's search
+     *  results, or else one made from the automated-player template if
+     *  that is an AI, or else a default AI. */
+    private AI analyst() {
+        Piece turn = _board.turn();
+        Player player = turn == WHITE ? _white : _black;
+        if (player instanceof AI) {
+            return (AI) player;
+        } else if (_autoPlayerTemplate instanceof AI) {
+            return (AI) _autoPlayerTemplate.create(turn, this);
+        } else {
+            return new AI(turn, this);
         }
     }
 
@@ -341,6 +514,9 @@ final class Controller {
     /** The current templates for manual and automated players. */
     private Player _autoPlayerTemplate, _manualPlayerTemplate;
 
+    /** Source of commands that arrive while a player is busy, or null. */
+    private CommandSource _commandSource;
+
     /** Reporter for messages and errors. */
     private Reporter _reporter;
 
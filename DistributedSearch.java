@@ -0,0 +1,525 @@
+package tablut;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.ProcessBuilder.Redirect;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static tablut.AI.INFTY;
+import static tablut.Piece.*;
+import static tablut.Utils.error;
+
+/**
+ * The coordinator of a search split among SearchWorkers, each in its own
+ * JVM, on this machine or others.  Workers connect to the coordinator's
+ * socket and announce themselves; the coordinator then hands each idle
+ * worker one root move at a time to search to the full depth, passing
+ * the best value found so far as a bound, and collects the values as
+ * they arrive.  The first move is searched alone, so that the rest start
+ * with a bound.
+ *
+ * A worker whose connection fails, or that takes more than the job
+ * timeout to answer, is dropped (and its process killed, if it is
+ * ours), and its move is handed to another worker.  So is a move that a
+ * worker aborts.  A move that fails MAX_ATTEMPTS times in either way,
+ * and any left when no workers remain, is searched by the local AI
+ * after the workers are done.
+ *
+ * The protocol is one line of text per message.  A worker starts with
+ * "hello FINGERPRINT PID", where FINGERPRINT identifies its evaluation
+ * (see AI.fingerprint), and is dropped unless it matches ours.  The
+ * coordinator sends "search ID SIDE DEPTH ALPHA BETA MOVE POSITION
+ * HASH...", where POSITION is an encoded board (see Board.encodedBoard)
+ * and the HASHes, in hex, are those of earlier positions for the
+ * repetition rule; "stop", to abandon the current job; and "quit".  The
+ * worker answers each search with "result ID VALUE" or, if stopped,
+ * "aborted ID".
+ *
+ * @author Shreyansh Loharuka
+ */
+class DistributedSearch {
+
+    /**
+     * Milliseconds to wait for all workers to connect and announce
+     * themselves.
+     */
+    static final long CONNECT_MILLIS = 30000;
+    /**
+     * Default milliseconds a worker may take over one move before it is
+     * considered lost.
+     */
+    static final long DEFAULT_JOB_MILLIS = 600000;
+    /**
+     * Number of times a move is handed to a worker before it is left to
+     * the local AI.
+     */
+    static final int MAX_ATTEMPTS = 3;
+    /**
+     * Milliseconds between checks for timeouts and requests to stop.
+     */
+    private static final long POLL_MILLIS = 50;
+
+    /**
+     * A coordinator for N workers started as subprocesses of this JVM,
+     * with the same class path, whose evaluation must have FINGERPRINT.
+     * WORKERARGS are passed to each worker after the address of the
+     * coordinator (see SearchWorker.main).
+     */
+    static DistributedSearch launch(int n, long fingerprint,
+                                    List<String> workerArgs)
+        throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        ServerSocket server = new ServerSocket(0, n, loopback);
+        String java =
+            Paths.get(System.getProperty("java.home"), "bin", "java")
+            .toString();
+        List<Process> processes = new ArrayList<>();
+        for (int k = 0; k < n; k += 1) {
+            List<String> command = new ArrayList<>(Arrays.asList(
+                java, "-cp", System.getProperty("java.class.path"),
+                "tablut.SearchWorker", loopback.getHostAddress(),
+                Integer.toString(server.getLocalPort())));
+            command.addAll(workerArgs);
+            processes.add(new ProcessBuilder(command)
+                          .redirectOutput(Redirect.DISCARD)
+                          .redirectError(Redirect.INHERIT)
+                          .start());
+        }
+        return new DistributedSearch(server, n, fingerprint, processes);
+    }
+
+    /**
+     * A coordinator for N workers, started separately, that connect to
+     * PORT, and whose evaluation must have FINGERPRINT.
+     */
+    static DistributedSearch listen(int port, int n, long fingerprint)
+        throws IOException {
+        return new DistributedSearch(new ServerSocket(port), n,
+                                     fingerprint, new ArrayList<>());
+    }
+
+    /**
+     * A coordinator accepting up to N workers on SERVER, which it closes
+     * afterwards, whose evaluation must have FINGERPRINT.  PROCESSES are
+     * the processes of the workers I launched.
+     */
+    private DistributedSearch(ServerSocket server, int n, long fingerprint,
+                              List<Process> processes) throws IOException {
+        _processes = processes;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+        long deadline = System.currentTimeMillis() + CONNECT_MILLIS;
+        try (ServerSocket s = server) {
+            while (_workers.size() < n) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    break;
+                }
+                s.setSoTimeout((int) left);
+                Socket socket;
+                try {
+                    socket = s.accept();
+                } catch (SocketTimeoutException excp) {
+                    break;
+                }
+                Worker worker = connect(socket, fingerprint, left);
+                if (worker != null) {
+                    _workers.add(worker);
+                }
+            }
+        }
+        if (_workers.isEmpty()) {
+            close();
+            throw error("no search workers connected");
+        }
+        for (Worker worker : _workers) {
+            Thread reader = new Thread(() -> read(worker), "worker reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+    }
+
+    /**
+     * Return the Worker on SOCKET, after reading its announcement within
+     * MILLIS milliseconds, or null (closing SOCKET) if it does not
+     * announce itself properly or its evaluation does not have
+     * FINGERPRINT.
+     */
+    private Worker connect(Socket socket, long fingerprint, long millis) {
+        try {
+            socket.setSoTimeout((int) millis);
+            Worker worker = new Worker(socket);
+            String line = worker.in.readLine();
+            String[] words = line == null ? new String[0] : line.split(" ");
+            socket.setSoTimeout(0);
+            if (words.length == 3 && words[0].equals("hello")
+                && Long.parseLong(words[1]) == fingerprint) {
+                worker.pid = Long.parseLong(words[2]);
+                return worker;
+            }
+        } catch (IOException | NumberFormatException excp) {
+            /* Fall through to reject the worker. */
+        }
+        try {
+            socket.close();
+        } catch (IOException excp) {
+            /* Ignore IOException. */
+        }
+        return null;
+    }
+
+    /**
+     * Allow each worker JOBMILLIS milliseconds per move before it is
+     * considered lost.
+     */
+    void setJobTimeout(long jobMillis) {
+        _jobMillis = jobMillis;
+    }
+
+    /**
+     * Return the number of workers still connected.
+     */
+    int workers() {
+        return _workers.size();
+    }
+
+    /**
+     * Return the best of MOVES, the legal moves of the side to move in
+     * BOARD in the order to try them, by searches of DEPTH plies split
+     * among my workers and evaluated as LOCAL would.  LOCAL searches the
+     * moves no worker could.  Stops early when STOP becomes true,
+     * returning the best move found so far, or null if there is none.
+     */
+    synchronized Move search(Board board, List<Move> moves, int depth,
+                             AI local, BooleanSupplier stop) {
+        Piece side = local.myPiece();
+        boolean maximizing = board.turn() == WHITE;
+        String position = board.encodedBoard() + historyText(board);
+        Deque<Job> pending = new ArrayDeque<>();
+        for (Move move : moves) {
+            pending.add(new Job(move));
+        }
+        List<Job> leftover = new ArrayList<>();
+        Map<Integer, Job> running = new HashMap<>();
+        Move best = null;
+        int bestValue = maximizing ? -INFTY : INFTY;
+
+        while (!stop.getAsBoolean()) {
+            if (_workers.isEmpty()) {
+                leftover.addAll(pending);
+                pending.clear();
+            }
+            for (Worker worker : _workers) {
+                if (pending.isEmpty()
+                    || best == null && !running.isEmpty()) {
+                    break;
+                }
+                if (worker.job < 0) {
+                    Job job = pending.remove();
+                    int id = _nextId;
+                    _nextId += 1;
+                    String alpha = Integer.toString(maximizing ? bestValue
+                                                    : -INFTY),
+                        beta = Integer.toString(maximizing ? INFTY
+                                                : bestValue);
+                    if (send(worker, String.join(" ", "search",
+                                                  Integer.toString(id),
+                                                  side.toString(),
+                                                  Integer.toString(depth),
+                                                  alpha, beta,
+                                                  job.move.toString(),
+                                                  position))) {
+                        worker.job = id;
+                        worker.deadline =
+                            System.currentTimeMillis() + _jobMillis;
+                        running.put(id, job);
+                    } else {
+                        lose(worker, running, pending, leftover);
+                        pending.addFirst(job);
+                    }
+                }
+            }
+            if (pending.isEmpty() && running.isEmpty()) {
+                break;
+            }
+
+            Event event;
+            try {
+                event = _events.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException excp) {
+                break;
+            }
+            if (event != null && _workers.contains(event.worker)) {
+                Worker worker = event.worker;
+                String[] words = event.line == null ? new String[0]
+                    : event.line.split(" ");
+                try {
+                    if (words.length < 2) {
+                        throw new NumberFormatException();
+                    } else if (Integer.parseInt(words[1]) == worker.job) {
+                        Job job = running.remove(worker.job);
+                        worker.job = -1;
+                        if (job != null && words[0].equals("result")) {
+                            int value = Integer.parseInt(words[2]);
+                            if (best == null
+                                || (maximizing ? value > bestValue
+                                    : value < bestValue)) {
+                                best = job.move;
+                                bestValue = value;
+                            }
+                        } else if (job != null) {
+                            requeue(job, pending, leftover);
+                        }
+                    }
+                } catch (NumberFormatException
+                         | ArrayIndexOutOfBoundsException excp) {
+                    lose(worker, running, pending, leftover);
+                }
+            }
+            long now = System.currentTimeMillis();
+            for (Worker worker : _workers) {
+                if (worker.job >= 0 && now > worker.deadline) {
+                    lose(worker, running, pending, leftover);
+                }
+            }
+        }
+
+        if (stop.getAsBoolean()) {
+            for (Worker worker : _workers) {
+                if (worker.job >= 0 && !send(worker, "stop")) {
+                    lose(worker, running, pending, leftover);
+                }
+            }
+            return best;
+        }
+        for (Job job : leftover) {
+            int value = local.rootScore(board, job.move, depth,
+                                        maximizing ? bestValue : -INFTY,
+                                        maximizing ? INFTY : bestValue);
+            if (stop.getAsBoolean()) {
+                break;
+            }
+            if (best == null
+                || (maximizing ? value > bestValue : value < bestValue)) {
+                best = job.move;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Disconnect all workers and kill those I launched.  This may be
+     * called while a search is running, as at exit, which it ends.
+     */
+    void close() {
+        for (Worker worker : _workers) {
+            worker.out.println("quit");
+            try {
+                worker.socket.close();
+            } catch (IOException excp) {
+                /* Ignore IOException. */
+            }
+        }
+        _workers.clear();
+        for (Process process : _processes) {
+            process.destroy();
+        }
+    }
+
+    /**
+     * Return the hashes of BOARD's history, each preceded by a blank, in
+     * the form sent to workers.
+     */
+    private static String historyText(Board board) {
+        StringBuilder result = new StringBuilder();
+        for (long hash : board.history()) {
+            result.append(' ').append(Long.toHexString(hash));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Send LINE to WORKER.  Return false if the connection has failed.
+     */
+    private boolean send(Worker worker, String line) {
+        worker.out.println(line);
+        return !worker.out.checkError();
+    }
+
+    /**
+     * Drop WORKER, closing its connection and killing its process if it
+     * is mine.  Its job, if RUNNING, is requeued (see requeue).
+     */
+    private void lose(Worker worker, Map<Integer, Job> running,
+                      Deque<Job> pending, List<Job> leftover) {
+        _workers.remove(worker);
+        try {
+            worker.socket.close();
+        } catch (IOException excp) {
+            /* Ignore IOException. */
+        }
+        for (Process process : _processes) {
+            if (process.pid() == worker.pid) {
+                process.destroyForcibly();
+            }
+        }
+        Job job = running.remove(worker.job);
+        if (job != null) {
+            requeue(job, pending, leftover);
+        }
+    }
+
+    /**
+     * Count a failed attempt at JOB, and put it back at the front of
+     * PENDING, or in LEFTOVER if it has been tried MAX_ATTEMPTS times.
+     */
+    private static void requeue(Job job, Deque<Job> pending,
+                                List<Job> leftover) {
+        job.attempts += 1;
+        if (job.attempts < MAX_ATTEMPTS) {
+            pending.addFirst(job);
+        } else {
+            leftover.add(job);
+        }
+    }
+
+    /**
+     * Pass the lines from WORKER to _events, followed by an event with a
+     * null line when its connection closes.
+     */
+    private void read(Worker worker) {
+        try {
+            String line;
+            while ((line = worker.in.readLine()) != null) {
+                _events.add(new Event(worker, line));
+            }
+        } catch (IOException excp) {
+            /* Fall through to report the loss. */
+        }
+        _events.add(new Event(worker, null));
+    }
+
+    /**
+     * A connected worker.
+     */
+    private static class Worker {
+        /**
+         * A worker connected by SOCKET.
+         */
+        Worker(Socket socket) throws IOException {
+            this.socket = socket;
+            in = new BufferedReader(new InputStreamReader(
+                socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(socket.getOutputStream(), true,
+                                  StandardCharsets.UTF_8);
+        }
+
+        /**
+         * The connection to the worker.
+         */
+        private final Socket socket;
+        /**
+         * Lines from the worker.
+         */
+        private final BufferedReader in;
+        /**
+         * Lines to the worker.
+         */
+        private final PrintWriter out;
+        /**
+         * The worker's process id.
+         */
+        private long pid;
+        /**
+         * Id of the job the worker is running, or -1 if it is idle.
+         */
+        private int job = -1;
+        /**
+         * Time by which the worker must finish its job.
+         */
+        private long deadline;
+    }
+
+    /**
+     * A root move to be searched.
+     */
+    private static class Job {
+        /**
+         * A job searching MOVE.
+         */
+        Job(Move move) {
+            this.move = move;
+        }
+
+        /**
+         * The move searched.
+         */
+        private final Move move;
+        /**
+         * Number of workers lost while searching it.
+         */
+        private int attempts;
+    }
+
+    /**
+     * A line from a worker, or null when its connection has closed.
+     */
+    private static class Event {
+        /**
+         * The event of WORKER sending LINE.
+         */
+        Event(Worker worker, String line) {
+            this.worker = worker;
+            this.line = line;
+        }
+
+        /**
+         * The worker.
+         */
+        private final Worker worker;
+        /**
+         * The line it sent, or null.
+         */
+        private final String line;
+    }
+
+    /**
+     * Connected workers.
+     */
+    private final List<Worker> _workers = new CopyOnWriteArrayList<>();
+    /**
+     * Processes of the workers I launched.
+     */
+    private final List<Process> _processes;
+    /**
+     * Lines from workers, in order of arrival.
+     */
+    private final BlockingQueue<Event> _events = new LinkedBlockingQueue<>();
+    /**
+     * Milliseconds allowed a worker per move.
+     */
+    private long _jobMillis = DEFAULT_JOB_MILLIS;
+    /**
+     * Id of the next job sent.
+     */
+    private int _nextId;
+}
@@ -0,0 +1,84 @@
+package tablut;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed-size table of static scores indexed by position hash (see
+ * Board.hash), or of other values indexed by some other 64-bit hash.
+ * Each slot holds the full hash and a score; a new entry always
+ * replaces the old one in its slot.
+ *
+ * @author Shreyansh Loharuka
+ */
+class EvalCache {
+
+    /**
+     * Size in bytes of one slot: key (8), score (4), flag (4) marking the
+     * slot as used.
+     */
+    static final int ENTRY_SIZE = 16;
+
+    /**
+     * A cache with 2**LOGSIZE slots.
+     */
+    EvalCache(int logSize) {
+        this(ByteBuffer.allocate(ENTRY_SIZE << logSize));
+    }
+
+    /**
+     * A cache whose slots are stored in STORAGE, whose capacity must be
+     * ENTRY_SIZE times a power of two.
+     */
+    EvalCache(ByteBuffer storage) {
+        _slots = storage;
+        _mask = storage.capacity() / ENTRY_SIZE - 1;
+        assert (_mask & (_mask + 1)) == 0;
+    }
+
+    /**
+     * Return the slot holding the score for KEY, or -1 if there is none.
+     */
+    int find(long key) {
+        int at = ((int) key & _mask) * ENTRY_SIZE;
+        if (_slots.getInt(at + 12) != 0 && _slots.getLong(at) == key) {
+            return at / ENTRY_SIZE;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the score stored in SLOT.
+     */
+    int score(int slot) {
+        return _slots.getInt(slot * ENTRY_SIZE + 8);
+    }
+
+    /**
+     * Record that the position with hash KEY has static score SCORE.
+     */
+    void store(long key, int score) {
+        int at = ((int) key & _mask) * ENTRY_SIZE;
+        _slots.putLong(at, key);
+        _slots.putInt(at + 8, score);
+        _slots.putInt(at + 12, 1);
+    }
+
+    /**
+     * Remove all entries.
+     */
+    void clear() {
+        for (int at = 0; at < _slots.capacity(); at += ENTRY_SIZE) {
+            _slots.putInt(at + 12, 0);
+        }
+    }
+
+    /**
+     * The slots of this cache, ENTRY_SIZE bytes apiece.
+     */
+    private final ByteBuffer _slots;
+
+    /**
+     * Number of slots minus 1.  The number of slots is a power of 2.
+     */
+    private final int _mask;
+}
@@ -0,0 +1,122 @@
+package tablut;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder events that show where a game spends its time: in the
+ * AI's searches, in the Controller's commands (including the write to
+ * the log), or in updating the view and repainting the board.  They are
+ * disabled unless a recording enables them, as the settings in
+ * tablut.jfc do, for example with
+ *
+ *     java -XX:StartFlightRecording:settings=default,settings=tablut.jfc
+ *
+ * at startup or "jcmd PID JFR.start settings=tablut.jfc" on a running
+ * game.  A disabled event costs nothing once compiled: its object is
+ * never allocated, and its fields are only filled in by callers when
+ * shouldCommit() is true.
+ *
+ * @author Shreyansh Loharuka
+ */
+final class Events {
+
+    /**
+     * Not instantiable.
+     */
+    private Events() {
+    }
+
+    /**
+     * One call of AI.searchMove.
+     */
+    @Name("tablut.Search")
+    @Label("Search")
+    @Category("Tablut")
+    @Description("A search by the AI for a move")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Search extends Event {
+        /**
+         * The side searched for.
+         */
+        @Label("Side")
+        String side;
+        /**
+         * Depth of the last complete iteration.
+         */
+        @Label("Depth")
+        int depth;
+        /**
+         * Nodes visited.
+         */
+        @Label("Nodes")
+        long nodes;
+        /**
+         * The move found.
+         */
+        @Label("Move")
+        String move;
+        /**
+         * Value found, positive for White.
+         */
+        @Label("Value")
+        int value;
+    }
+
+    /**
+     * One call of Controller.executeCommand.
+     */
+    @Name("tablut.Command")
+    @Label("Command")
+    @Category("Tablut")
+    @Description("A command executed by the controller")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Command extends Event {
+        /**
+         * The command's first word, or "move" for a move.
+         */
+        @Label("Type")
+        String type;
+        /**
+         * The full text of the command.
+         */
+        @Label("Text")
+        String text;
+    }
+
+    /**
+     * One update of the Controller's View.
+     */
+    @Name("tablut.ViewUpdate")
+    @Label("View Update")
+    @Category("Tablut")
+    @Description("An update of the view after a change to the game")
+    @Enabled(false)
+    @StackTrace(false)
+    static class ViewUpdate extends Event {
+        /**
+         * Number of moves made in the game.
+         */
+        @Label("Move Count")
+        int moveCount;
+    }
+
+    /**
+     * One repaint of a BoardWidget.
+     */
+    @Name("tablut.Repaint")
+    @Label("Board Repaint")
+    @Category("Tablut")
+    @Description("A repaint of the board in the GUI")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Repaint extends Event {
+    }
+}
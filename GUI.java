@@ -11,13 +11,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The GUI controller for a Tablut board and buttons.
  *
  * @author Shreyansh Loharuka
  */
-class GUI extends TopLevel implements View, Reporter {
+class GUI extends TopLevel implements View, Reporter, CommandSource {
 
     /**
      * Minimum size of board in pixels.
@@ -39,6 +40,11 @@ class GUI extends TopLevel implements View, Reporter {
      */
     static final String HELP_TEXT = "tablut/Help.html";
 
+    /**
+     * Number of moves shown by "Analyze".
+     */
+    static final int ANALYSIS_LINES = 3;
+
     /**
      * A new window with given TITLE providing a view of a Tablut board.
      */
@@ -47,6 +53,8 @@ class GUI extends TopLevel implements View, Reporter {
         addMenuButton("Game->Quit", this::quit);
         addMenuButton("Game->New", this::gameNew);
         addMenuButton("Game->Undo", this::undo);
+        addMenuButton("Game->Stop", this::stop);
+        addMenuButton("Game->Analyze", this::analyze);
         addMenuButton("Player->Auto Black", this::auto);
         addMenuButton("Player->Auto White", this::auto);
         addMenuButton("Player->Manual Black", this::manual);
@@ -97,6 +105,22 @@ class GUI extends TopLevel implements View, Reporter {
         _pendingCommands.offer("undo");
     }
 
+    /**
+     * Response to "Stop" button click.
+     * @param dummy not used
+     */
+    private void stop(String dummy) {
+        _pendingCommands.offer("stop");
+    }
+
+    /**
+     * Response to "Analyze" button click.
+     * @param dummy not used
+     */
+    private void analyze(String dummy) {
+        _pendingCommands.offer("analyze " + ANALYSIS_LINES);
+    }
+
     /**
      * New game.
      * @param dummy not used
@@ -122,6 +146,15 @@ class GUI extends TopLevel implements View, Reporter {
         }
     }
 
+    @Override
+    public String pollCommand(long millis) {
+        try {
+            return _pendingCommands.poll(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException excp) {
+            return null;
+        }
+    }
+
     @Override
     public void update(Controller controller) {
         Board board = controller.board();
@@ -193,6 +226,13 @@ class GUI extends TopLevel implements View, Reporter {
     public void reportMove(Move unused) {
     }
 
+    @Override
+    public void reportAnalysis(Analysis analysis) {
+        showMessage(String.format("Best moves for %s:%n%s",
+                                  analysis.turn().toName(), analysis),
+                    "Tablut Analysis", "information");
+    }
+
     /**
      * The board widget.
      */
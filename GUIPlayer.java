@@ -56,6 +56,11 @@ class GUIPlayer extends Player implements Reporter {
     public void reportMove(Move unused) {
     }
 
+    @Override
+    public void reportAnalysis(Analysis analysis) {
+        _gui.reportAnalysis(analysis);
+    }
+
     /** The GUI I use for input. */
     private GUI _gui;
 }
@@ -0,0 +1,297 @@
+package tablut;
+
+import static tablut.BatchEvaluator.*;
+import static tablut.PositionBatch.LOW_SQUARES;
+import static tablut.Square.NUM_SQUARES;
+
+/**
+ * Fast facts about the king's ways to the edge, computed from the
+ * occupancy masks that a Board maintains (see Board.occupiedLow) and
+ * masks precomputed here, laid out as in PositionBatch.
+ *
+ * @author Shreyansh Loharuka
+ */
+final class KingMobility {
+
+    /**
+     * Returned by escapeDistance when the king cannot reach the edge
+     * within the limit given, or has been captured.
+     */
+    static final int NO_ESCAPE = Integer.MAX_VALUE;
+
+    /**
+     * Results of enclosure.
+     */
+    static final int OPEN = 0, SEALED = 1, UNSTOPPABLE = 2;
+
+    /**
+     * RAY_LOW[i][dir] and RAY_HIGH[i][dir] are the low and high words of
+     * the squares from square I (exclusive) to the edge in direction DIR.
+     */
+    private static final long[][] RAY_LOW = new long[NUM_SQUARES][4],
+        RAY_HIGH = new long[NUM_SQUARES][4];
+
+    static {
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            Square from = Square.sq(i);
+            for (int dir = 0; dir < 4; dir += 1) {
+                for (int n = 1; from.rookMove(dir, n) != null; n += 1) {
+                    int k = from.rookMove(dir, n).index();
+                    if (k < LOW_SQUARES) {
+                        RAY_LOW[i][dir] |= 1L << k;
+                    } else {
+                        RAY_HIGH[i][dir] |= 1L << (k - LOW_SQUARES);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Not instantiable.
+     */
+    private KingMobility() {
+    }
+
+    /**
+     * Return a bit mask of the directions (bit DIR for direction DIR, as
+     * for Square.rookMove) in which the king on BOARD has a clear line to
+     * the edge.  Returns 0 if the king has been captured or is already on
+     * the edge.
+     */
+    static int openLines(Board board) {
+        Square king = board.kingPosition();
+        if (king == null) {
+            return 0;
+        }
+        return openLines(king, board.occupiedLow(), board.occupiedHigh());
+    }
+
+    /**
+     * Return openLines for a king on KING when the occupied squares are
+     * OL, OH.
+     */
+    static int openLines(Square king, long ol, long oh) {
+        if (king.isEdge()) {
+            return 0;
+        }
+        int i = king.index();
+        int result = 0;
+        for (int dir = 0; dir < 4; dir += 1) {
+            if ((RAY_LOW[i][dir] & ol) == 0 && (RAY_HIGH[i][dir] & oh) == 0) {
+                result |= 1 << dir;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return openLines for BOARD as it would be after MOVE, ignoring any
+     * captures the move makes.
+     */
+    static int openLinesAfter(Board board, Move move) {
+        Square king = board.kingPosition();
+        if (king == null) {
+            return 0;
+        }
+        long ol = board.occupiedLow(), oh = board.occupiedHigh();
+        int from = move.from().index(), to = move.to().index();
+        if (from < LOW_SQUARES) {
+            ol &= ~(1L << from);
+        } else {
+            oh &= ~(1L << (from - LOW_SQUARES));
+        }
+        if (to < LOW_SQUARES) {
+            ol |= 1L << to;
+        } else {
+            oh |= 1L << (to - LOW_SQUARES);
+        }
+        return openLines(move.from() == king ? move.to() : king, ol, oh);
+    }
+
+    /**
+     * Return the fewest king moves, with no other piece moving, that take
+     * the king on BOARD to the edge: 0 if it is there already, and
+     * NO_ESCAPE if it has been captured or needs more than LIMIT moves.
+     */
+    static int escapeDistance(Board board, int limit) {
+        Square king = board.kingPosition();
+        if (king == null) {
+            return NO_ESCAPE;
+        }
+        int i = king.index();
+        return escapeDistance(i < LOW_SQUARES ? 1L << i : 0,
+                              i < LOW_SQUARES ? 0 : 1L << (i - LOW_SQUARES),
+                              ~board.occupiedLow() & LOW_MASK,
+                              ~board.occupiedHigh() & HIGH_MASK, limit);
+    }
+
+    /**
+     * Return escapeDistance for a king on the square in KL, KH (or none,
+     * if both are 0), where EL, EH are the empty squares, as in
+     * PositionBatch.
+     */
+    static int escapeDistance(long kl, long kh, long el, long eh,
+                              int limit) {
+        if ((kl | kh) == 0) {
+            return NO_ESCAPE;
+        } else if ((kl & EDGE_LOW) != 0 || (kh & EDGE_HIGH) != 0) {
+            return 0;
+        }
+        long fl = kl, fh = kh;
+        long rl = fl, rh = fh;
+        long[] fill = new long[2];
+        for (int d = 1; d <= limit; d += 1) {
+            long nl = 0, nh = 0;
+            for (int dir = 0; dir < 4; dir += 1) {
+                BatchEvaluator.fill(dir, fl, fh, el, eh, fill);
+                nl |= fill[0];
+                nh |= fill[1];
+            }
+            if ((nl & EDGE_LOW) != 0 || (nh & EDGE_HIGH) != 0) {
+                return d;
+            }
+            fl = nl & ~rl;
+            fh = nh & ~rh;
+            rl |= nl;
+            rh |= nh;
+            if ((fl | fh) == 0) {
+                break;
+            }
+        }
+        return NO_ESCAPE;
+    }
+
+    /**
+     * Classify the king's prospects on BOARD as for enclosure(WL, WH, BL,
+     * BH, KING, WHITETOMOVE), except that an escape the move limit would
+     * cut off is OPEN, as is a sealed king when there is a move limit,
+     * since the limit may end the game before Black captures it.
+     */
+    static int enclosure(Board board) {
+        Square king = board.kingPosition();
+        if (king == null) {
+            return OPEN;
+        }
+        int i = king.index();
+        long kl = i < LOW_SQUARES ? 1L << i : 0,
+            kh = i < LOW_SQUARES ? 0 : 1L << (i - LOW_SQUARES);
+        long bl = board.blackLow(), bh = board.blackHigh();
+        long wl = board.occupiedLow() & ~bl & ~kl,
+            wh = board.occupiedHigh() & ~bh & ~kh;
+        int result = enclosure(wl, wh, bl, bh, king,
+                               board.turn() == Piece.WHITE);
+        if (result == UNSTOPPABLE && board.atMoveLimit(2)
+            || result == SEALED && board.hasMoveLimit()) {
+            return OPEN;
+        }
+        return result;
+    }
+
+    /**
+     * Return UNSTOPPABLE if it is Black's move (WHITETOMOVE is false), the
+     * king on KING has clear lines to the edge in two directions, and no
+     * black move captures it, so that it escapes next move whatever Black
+     * does.  Return SEALED if the king is White's only piece and the
+     * empty squares it can reach include no edge square and border no
+     * attacker next to the throne, so that it can neither escape nor
+     * capture its way out unless Black opens the ring.  Otherwise return
+     * OPEN.  WL, WH and BL, BH are the low and high words of the squares
+     * holding the other defenders and the attackers.
+     */
+    static int enclosure(long wl, long wh, long bl, long bh, Square king,
+                         boolean whiteToMove) {
+        if (king.isEdge()) {
+            return OPEN;
+        }
+        int i = king.index();
+        long kl = i < LOW_SQUARES ? 1L << i : 0,
+            kh = i < LOW_SQUARES ? 0 : 1L << (i - LOW_SQUARES);
+        long el = ~(wl | bl | kl) & LOW_MASK, eh = ~(wh | bh | kh) & HIGH_MASK;
+        if (!whiteToMove) {
+            int lines = 0;
+            for (int dir = 0; dir < 4; dir += 1) {
+                if ((RAY_LOW[i][dir] & ~el) == 0
+                    && (RAY_HIGH[i][dir] & ~eh) == 0) {
+                    lines += 1;
+                }
+            }
+            if (lines >= 2 && !capturable(king, wl, wh, bl, bh, el, eh)) {
+                return UNSTOPPABLE;
+            }
+        }
+        if ((wl | wh) != 0) {
+            return OPEN;
+        }
+        long rl = kl, rh = kh;
+        while (true) {
+            long nl = rl | neighborsLow(rl, rh) & el,
+                nh = rh | neighborsHigh(rl, rh) & eh;
+            if (nl == rl && nh == rh) {
+                break;
+            }
+            rl = nl;
+            rh = nh;
+        }
+        if ((rl & EDGE_LOW) != 0 || (rh & EDGE_HIGH) != 0) {
+            return OPEN;
+        }
+        long borderLow = neighborsLow(rl, rh) & bl,
+            borderHigh = neighborsHigh(rl, rh) & bh;
+        if ((borderLow & THRONES_LOW) != 0
+            || (borderHigh & THRONES_HIGH) != 0) {
+            return OPEN;
+        }
+        return SEALED;
+    }
+
+    /**
+     * Return true iff a single black move could capture the king on KING,
+     * where WL, WH, BL, BH, and EL, EH are the squares holding the other
+     * defenders, the attackers, and nothing.  This follows the capture
+     * rules as Board.threatened does.
+     */
+    private static boolean capturable(Square king, long wl, long wh,
+                                      long bl, long bh, long el, long eh) {
+        long[] fill = new long[2];
+        long rl = 0, rh = 0;
+        for (int dir = 0; dir < 4; dir += 1) {
+            BatchEvaluator.fill(dir, bl, bh, el, eh, fill);
+            rl |= fill[0];
+            rh |= fill[1];
+        }
+        rl &= ~THRONE_LOW;
+        rh &= ~THRONE_HIGH;
+        boolean throneArea =
+            king == Board.THRONE || king.adjacent(Board.THRONE);
+        for (int dir = 0; dir < 4; dir += 1) {
+            Square to = king.rookMove(dir, 1),
+                far = king.rookMove((dir + 2) & 3, 1);
+            if (!contains(rl, rh, to)
+                || far != Board.THRONE && !contains(bl, bh, far)) {
+                continue;
+            }
+            if (!throneArea) {
+                return true;
+            }
+            Square side1 = king.rookMove((dir + 1) & 3, 1),
+                side2 = king.rookMove((dir + 3) & 3, 1);
+            if (side1 == Board.THRONE ? !contains(wl, wh, side2)
+                : side2 == Board.THRONE ? !contains(wl, wh, side1)
+                : contains(bl, bh, side1) && contains(bl, bh, side2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return true iff square S is in the set whose low and high words are
+     * XL, XH.
+     */
+    private static boolean contains(long xl, long xh, Square s) {
+        int i = s.index();
+        return i < LOW_SQUARES ? (xl & (1L << i)) != 0
+            : (xh & (1L << (i - LOW_SQUARES))) != 0;
+    }
+}
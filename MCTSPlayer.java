@@ -0,0 +1,429 @@
+package tablut;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static tablut.Piece.*;
+import static tablut.Square.NUM_SQUARES;
+import static tablut.Square.sq;
+
+/**
+ * A Player that automatically generates moves by Monte Carlo tree search.
+ * Lines are chosen with UCT and evaluated by random playouts.  Several
+ * threads share one tree, using virtual losses to spread themselves over
+ * different lines.  The part of the tree below the actual moves played is
+ * kept from one move to the next.
+ *
+ * @author Shreyansh Loharuka
+ */
+class MCTSPlayer extends Player {
+
+    /**
+     * Default time allowed per move, in milliseconds.
+     */
+    static final int DEFAULT_TIME = 5000;
+
+    /**
+     * Maximum number of nodes in the tree.
+     */
+    private static final int CAPACITY = 1 << 20;
+    /**
+     * The UCT exploration constant.
+     */
+    private static final double EXPLORATION = 1.4;
+    /**
+     * Number of visits (with no wins) charged to each node on a line
+     * while a thread is playing it out.
+     */
+    private static final int VIRTUAL_LOSS = 3;
+    /**
+     * Plies after which a playout is scored as a draw.
+     */
+    private static final int PLAYOUT_LIMIT = 200;
+
+    /**
+     * A new MCTSPlayer with no piece or controller (intended to produce
+     * a template) that thinks for MILLIS milliseconds per move.
+     */
+    MCTSPlayer(int millis) {
+        this(null, null, millis);
+    }
+
+    /**
+     * A new MCTSPlayer playing PIECE under control of CONTROLLER that
+     * thinks for MILLIS milliseconds per move.
+     */
+    MCTSPlayer(Piece piece, Controller controller, int millis) {
+        super(piece, controller);
+        _millis = millis;
+        _threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    Player create(Piece piece, Controller controller) {
+        return new MCTSPlayer(piece, controller, _millis);
+    }
+
+    @Override
+    String myMove() {
+        if (board().winner() != null || board().turn() != myPiece()) {
+            return "dump";
+        }
+        Move move = findMove();
+        if (move == null) {
+            return "dump";
+        }
+        _controller.reportMove(move);
+        return move.toString();
+    }
+
+    @Override
+    boolean isManual() {
+        return false;
+    }
+
+    /**
+     * Return a move for me from the current position, or null if there
+     * is none.
+     */
+    private Move findMove() {
+        Board root = new Board(board());
+        reuseTree(root);
+        long deadline = System.currentTimeMillis() + _millis;
+        Thread[] workers = new Thread[_threads];
+        for (int i = 0; i < workers.length; i += 1) {
+            SplittableRandom random =
+                new SplittableRandom(_controller.randInt(Integer.MAX_VALUE));
+            workers[i] = new Thread(() -> search(root, deadline, random));
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException excp) {
+                throw new Error("unexpected interrupt");
+            }
+        }
+
+        Tree tree = _tree;
+        int best = -1;
+        for (int k = 0; k < tree._numChildren[0]; k += 1) {
+            int child = tree._firstChild[0] + k;
+            if (best < 0 || tree._visits[child] > tree._visits[best]) {
+                best = child;
+            }
+        }
+        if (best < 0) {
+            _tree = null;
+            return null;
+        }
+        Move move = tree.move(best);
+        _expected = root;
+        _expected.makeMove(move);
+        _tree = tree.subtree(best);
+        return move;
+    }
+
+    /**
+     * Set _tree to the part of the tree kept from my last move that
+     * starts at ROOT, or to a new tree if there is no such part.
+     */
+    private void reuseTree(Board root) {
+        Tree tree = _tree;
+        _tree = null;
+        if (tree != null && _expected != null) {
+            for (int k = 0; k < tree._numChildren[0]; k += 1) {
+                int child = tree._firstChild[0] + k;
+                _expected.makeMove(tree.move(child));
+                boolean same = _expected.hash() == root.hash()
+                    && _expected.encodedBoard().equals(root.encodedBoard());
+                _expected.undo();
+                if (same) {
+                    _tree = tree.subtree(child);
+                    break;
+                }
+            }
+        }
+        if (_tree == null) {
+            _tree = new Tree(CAPACITY);
+        }
+        _expected = null;
+    }
+
+    /**
+     * Repeatedly select a line from ROOT, play it out, and record the
+     * result in _tree until DEADLINE, using RANDOM to choose playout
+     * moves.
+     */
+    private void search(Board root, long deadline, SplittableRandom random) {
+        Tree tree = _tree;
+        int[] path = new int[PLAYOUT_LIMIT + 1];
+        boolean[] whiteMoved = new boolean[PLAYOUT_LIMIT + 1];
+        while (System.currentTimeMillis() < deadline) {
+            Board board = new SearchBoard(root);
+            int len;
+            synchronized (tree) {
+                len = tree.select(board, path, whiteMoved, random);
+            }
+            double result = playout(board, random);
+            synchronized (tree) {
+                tree.update(path, whiteMoved, len, result);
+            }
+        }
+    }
+
+    /**
+     * Play random moves on BOARD, chosen using RANDOM, until the game ends
+     * or PLAYOUT_LIMIT is reached.  Return 1 if White wins, 0 if Black
+     * wins, and 0.5 otherwise.  A king that can reach the edge always
+     * does.  As on a Board, a side with no moves has not lost by that
+     * alone, so the playout ends there undecided.
+     */
+    private static double playout(Board board, SplittableRandom random) {
+        for (int ply = 0; ply < PLAYOUT_LIMIT; ply += 1) {
+            if (board.winner() != null) {
+                return board.winner() == WHITE ? 1.0 : 0.0;
+            }
+            List<Move> moves = board.legalMoves(board.turn());
+            if (moves.isEmpty()) {
+                return 0.5;
+            }
+            Move move = null;
+            if (board.turn() == WHITE) {
+                Square king = board.kingPosition();
+                for (Move m : moves) {
+                    if (m.from() == king && m.to().isEdge()) {
+                        move = m;
+                        break;
+                    }
+                }
+            }
+            if (move == null) {
+                move = moves.get(random.nextInt(moves.size()));
+            }
+            board.makeMove(move);
+        }
+        return 0.5;
+    }
+
+    /**
+     * A search tree stored as parallel arrays indexed by node number.
+     * Node 0 is the root, and the children of each node occupy
+     * consecutive node numbers.
+     */
+    private static class Tree {
+
+        /**
+         * An empty tree (containing only a root) with room for CAPACITY
+         * nodes.
+         */
+        Tree(int capacity) {
+            _parent = new int[capacity];
+            _firstChild = new int[capacity];
+            _numChildren = new int[capacity];
+            _move = new int[capacity];
+            _visits = new int[capacity];
+            _wins = new double[capacity];
+            _size = 1;
+            _parent[0] = -1;
+            _move[0] = -1;
+            _numChildren[0] = -1;
+        }
+
+        /**
+         * Return the move that leads to NODE.
+         */
+        Move move(int node) {
+            int code = _move[node];
+            return Move.mv(sq(code / NUM_SQUARES), sq(code % NUM_SQUARES));
+        }
+
+        /**
+         * Starting from the root, whose position is BOARD, descend by UCT
+         * to a leaf, expanding it if there is room, and making the moves on
+         * BOARD.  Charge a virtual loss to each node visited.  Record the
+         * nodes in PATH and whether White made the move to each in
+         * WHITEMOVED, using RANDOM to pick among new children.  Return
+         * the length of the path.
+         */
+        int select(Board board, int[] path, boolean[] whiteMoved,
+                   SplittableRandom random) {
+            int node = 0, len = 0;
+            while (true) {
+                path[len] = node;
+                _visits[node] += VIRTUAL_LOSS;
+                len += 1;
+                if (board.winner() != null || len == path.length) {
+                    return len;
+                }
+                if (_numChildren[node] < 0 && !expand(node, board)) {
+                    return len;
+                }
+                if (_numChildren[node] == 0) {
+                    return len;
+                }
+                int child = choose(node, random);
+                whiteMoved[len] = board.turn() == WHITE;
+                board.makeMove(move(child));
+                node = child;
+            }
+        }
+
+        /**
+         * Add the children of NODE, whose position is BOARD.  Return false
+         * if there is no room.
+         */
+        private boolean expand(int node, Board board) {
+            List<Move> moves = board.legalMoves(board.turn());
+            if (_size + moves.size() > _parent.length) {
+                return false;
+            }
+            _firstChild[node] = _size;
+            _numChildren[node] = moves.size();
+            for (Move move : moves) {
+                _parent[_size] = node;
+                _move[_size] =
+                    move.from().index() * NUM_SQUARES + move.to().index();
+                _numChildren[_size] = -1;
+                _visits[_size] = 0;
+                _wins[_size] = 0.0;
+                _size += 1;
+            }
+            return true;
+        }
+
+        /**
+         * Return the child of NODE with the highest UCT value for the side
+         * to move, for whom each child's wins are already counted (see
+         * update).  Unvisited children come first, in an order chosen by
+         * RANDOM.
+         */
+        private int choose(int node, SplittableRandom random) {
+            int first = _firstChild[node], n = _numChildren[node];
+            int start = random.nextInt(n);
+            for (int k = 0; k < n; k += 1) {
+                int child = first + (start + k) % n;
+                if (_visits[child] == 0) {
+                    return child;
+                }
+            }
+            double logN = Math.log(_visits[node]);
+            int best = first;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int child = first; child < first + n; child += 1) {
+                double value = _wins[child] / _visits[child]
+                    + EXPLORATION * Math.sqrt(logN / _visits[child]);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Record a playout with RESULT (1 for a White win, 0 for a Black
+         * win) along the first LEN nodes of PATH, removing the virtual
+         * losses charged by select.  WHITEMOVED is as for select.
+         */
+        void update(int[] path, boolean[] whiteMoved, int len,
+                    double result) {
+            for (int i = 0; i < len; i += 1) {
+                int node = path[i];
+                _visits[node] += 1 - VIRTUAL_LOSS;
+                if (i > 0) {
+                    _wins[node] += whiteMoved[i] ? result : 1.0 - result;
+                }
+            }
+        }
+
+        /**
+         * Return a new tree containing a copy of the subtree rooted at
+         * NODE.
+         */
+        Tree subtree(int node) {
+            Tree result = new Tree(_parent.length);
+            int[] queue = new int[_size];
+            int head = 0, tail = 0;
+            queue[tail++] = node;
+            result.copyNode(0, this, node);
+            for (int to = 0; head < tail; to += 1) {
+                int from = queue[head++];
+                if (_numChildren[from] > 0) {
+                    result._firstChild[to] = result._size;
+                    for (int k = 0; k < _numChildren[from]; k += 1) {
+                        int child = _firstChild[from] + k;
+                        result.copyNode(result._size, this, child);
+                        result._parent[result._size] = to;
+                        result._size += 1;
+                        queue[tail++] = child;
+                    }
+                }
+            }
+            result._parent[0] = -1;
+            return result;
+        }
+
+        /**
+         * Copy the statistics of node FROM in SOURCE to my node TO.
+         */
+        private void copyNode(int to, Tree source, int from) {
+            _move[to] = source._move[from];
+            _numChildren[to] = source._numChildren[from];
+            _visits[to] = source._visits[from];
+            _wins[to] = source._wins[from];
+        }
+
+        /**
+         * Parent of each node, or -1 for the root.
+         */
+        private final int[] _parent;
+        /**
+         * Number of the first child of each node.
+         */
+        private final int[] _firstChild;
+        /**
+         * Number of children of each node, or -1 if not yet expanded.
+         */
+        private final int[] _numChildren;
+        /**
+         * The move leading to each node, as FROM * NUM_SQUARES + TO.
+         */
+        private final int[] _move;
+        /**
+         * Number of playouts through each node (including virtual losses).
+         */
+        private final int[] _visits;
+        /**
+         * Total playout reward through each node, for the side that moved
+         * into it.
+         */
+        private final double[] _wins;
+        /**
+         * Number of nodes in use.
+         */
+        private int _size;
+    }
+
+    /**
+     * Time allowed per move, in milliseconds.
+     */
+    private final int _millis;
+
+    /**
+     * Number of searching threads.
+     */
+    private final int _threads;
+
+    /**
+     * The current search tree, rooted at the position after my last
+     * move, or null if there is none.
+     */
+    private Tree _tree;
+
+    /**
+     * The position after my last move, whose children in _tree are the
+     * positions I may face next.
+     */
+    private Board _expected;
+}
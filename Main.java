@@ -1,6 +1,8 @@
 package tablut;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -19,14 +21,60 @@ public class Main {
     public static void main(String... args) {
 
         CommandArgs options =
-            new CommandArgs("--display --testing --strict --log={0,1} --={0,2}",
-                            args);
+            new CommandArgs("--display --testing --strict --ponder --mcts"
+                            + " --time={0,1} --tablebase={0,1} --book={0,1}"
+                            + " --weights={0,1} --nnue={0,1} --solve={0,1}"
+                            + " --perft={0,1} --cache={0,1} --log={0,1}"
+                            + " --workers={0,1} --listen={0,1}"
+                            + " --warmup={0,1} --policy={0,1}"
+                            + " --bench={0,1}"
+                            + " --={0,2}", args);
         if (!options.ok()) {
             System.err.println("Usage: java tablut.Main [--display]"
-                               + " [--log=FILE] [--strict] [INPUT [OUTPUT]]");
+                               + " [--log=FILE] [--strict] [--ponder]"
+                               + " [--mcts [--time=MILLIS]]"
+                               + " [--tablebase=FILE] [--book=FILE]"
+                               + " [--weights=FILE] [--nnue=FILE]"
+                               + " [--policy=FILE] [--solve=NODES]"
+                               + " [--perft=DEPTH] [--bench=DEPTH]"
+                               + " [--cache=FILE]"
+                               + " [--workers=N [--listen=PORT]]"
+                               + " [--warmup=MILLIS]"
+                               + " [INPUT [OUTPUT]]");
             System.exit(1);
         }
 
+        if (options.contains("--perft")) {
+            try {
+                Perft.run(new Board(),
+                          Integer.parseInt(options.getFirst("--perft")),
+                          false, true, true, System.out);
+            } catch (NumberFormatException excp) {
+                System.err.println("Bad perft depth");
+                System.exit(1);
+            }
+            System.exit(0);
+        }
+
+        if (options.contains("--bench")) {
+            int depth = 0;
+            try {
+                depth = Integer.parseInt(options.getFirst("--bench"));
+            } catch (NumberFormatException excp) {
+                /* Reported below. */
+            }
+            if (depth <= 0) {
+                System.err.println("Bad bench depth");
+                System.exit(1);
+            }
+            AI ai = getAI(options);
+            Controller controller =
+                new Controller(new NullView(), null, new TextReporter(),
+                               new TextPlayer(), ai, false);
+            SearchBench.run(ai, controller, depth, System.out);
+            System.exit(0);
+        }
+
         List<String> files = options.get("--");
         if (!files.isEmpty()) {
             try {
@@ -63,9 +111,123 @@ public class Main {
 
     }
 
+    /** Return a DistributedSearch with the number of workers given by
+     *  OPTIONS, whose evaluation has FINGERPRINT.  With --listen, it waits
+     *  for them to connect to the given port; otherwise, it starts them
+     *  here, evaluating with the given weights or network. */
+    private static DistributedSearch distributedSearch(CommandArgs options,
+                                                       long fingerprint) {
+        try {
+            int workers = Integer.parseInt(options.getFirst("--workers"));
+            if (options.contains("--listen")) {
+                return DistributedSearch.listen(
+                    Integer.parseInt(options.getFirst("--listen")),
+                    workers, fingerprint);
+            }
+            List<String> workerArgs = new ArrayList<>();
+            for (String option
+                     : new String[] { "--weights", "--nnue", "--policy" }) {
+                if (options.contains(option)) {
+                    workerArgs.add(option + "=" + options.getFirst(option));
+                }
+            }
+            return DistributedSearch.launch(workers, fingerprint,
+                                            workerArgs);
+        } catch (NumberFormatException excp) {
+            throw error("Bad number of workers or port");
+        } catch (IOException excp) {
+            throw error("Could not start search workers: %s",
+                        excp.getMessage());
+        }
+    }
+
+    /** Return an AI configured as indicated by OPTIONS.  A benchmark
+     *  (--bench) ignores --cache, since each of its searches must start
+     *  with empty tables. */
+    private static AI getAI(CommandArgs options) {
+        AI ai = new AI(options.contains("--ponder"));
+        if (options.contains("--tablebase")) {
+            File file = new File(options.getFirst("--tablebase"));
+            try {
+                ai.setTablebase(new Tablebase(file));
+            } catch (IOException excp) {
+                throw error("Could not open tablebase: %s",
+                            excp.getMessage());
+            }
+        }
+        if (options.contains("--book")) {
+            File file = new File(options.getFirst("--book"));
+            try {
+                ai.setBook(new OpeningBook(file));
+            } catch (IOException excp) {
+                throw error("Could not open opening book: %s",
+                            excp.getMessage());
+            }
+        }
+        if (options.contains("--weights")) {
+            File file = new File(options.getFirst("--weights"));
+            try {
+                ai.setWeights(new Weights(file));
+            } catch (IOException excp) {
+                throw error("Could not read weights: %s",
+                            excp.getMessage());
+            }
+        }
+        if (options.contains("--nnue")) {
+            File file = new File(options.getFirst("--nnue"));
+            try {
+                ai.setNetwork(new Network(file));
+            } catch (IOException excp) {
+                throw error("Could not read network: %s",
+                            excp.getMessage());
+            }
+        }
+        if (options.contains("--policy")) {
+            File file = new File(options.getFirst("--policy"));
+            try {
+                ai.setPolicy(new Policy(file));
+            } catch (IOException excp) {
+                throw error("Could not read policy: %s",
+                            excp.getMessage());
+            }
+        }
+        if (options.contains("--solve")) {
+            try {
+                ai.setSolverNodes(
+                    Integer.parseInt(options.getFirst("--solve")));
+            } catch (NumberFormatException excp) {
+                throw error("Bad number of solver nodes");
+            }
+        }
+        if (options.contains("--cache") && !options.contains("--bench")) {
+            File file = new File(options.getFirst("--cache"));
+            try {
+                ai.setCache(new SearchCache(file, ai.fingerprint()));
+            } catch (IOException excp) {
+                throw error("Could not open cache: %s",
+                            excp.getMessage());
+            }
+        }
+        if (options.contains("--workers")) {
+            ai.setDistributed(distributedSearch(options,
+                                                ai.fingerprint()));
+        }
+        if (options.contains("--warmup")) {
+            try {
+                WarmUp warmUp = new WarmUp(ai,
+                    Long.parseLong(options.getFirst("--warmup")));
+                warmUp.start();
+                ai.setWarmUp(warmUp);
+            } catch (NumberFormatException excp) {
+                throw error("Bad warm-up time");
+            }
+        }
+        return ai;
+    }
+
     /** Return an appropriate Controller as indicated by OPTIONS. */
     private static Controller getController(CommandArgs options) {
-        Player manualPlayer;
+        Player manualPlayer, autoPlayer;
         GUI gui;
         PrintStream log;
         View view;
@@ -96,7 +258,24 @@ public class Main {
             }
         }
 
-        return new Controller(view, log, reporter, manualPlayer,
-                              new AI(), options.contains("--strict"));
+        if (options.contains("--mcts")) {
+            int millis = MCTSPlayer.DEFAULT_TIME;
+            if (options.contains("--time")) {
+                try {
+                    millis = Integer.parseInt(options.getFirst("--time"));
+                } catch (NumberFormatException excp) {
+                    throw error("Bad time limit");
+                }
+            }
+            autoPlayer = new MCTSPlayer(millis);
+        } else {
+            autoPlayer = getAI(options);
+        }
+
+        Controller controller =
+            new Controller(view, log, reporter, manualPlayer,
+                           autoPlayer, options.contains("--strict"));
+        controller.setCommandSource(gui);
+        return controller;
     }
 }
@@ -65,6 +65,12 @@ final class Move {
         return null;
     }
 
+    /** Return the image of this Move under board symmetry SYM (see
+     *  Square.symmetric). */
+    Move symmetric(int sym) {
+        return mv(_from.symmetric(sym), _to.symmetric(sym));
+    }
+
     /** Return true iff STR has the right format for a Move. */
     static boolean isGrammaticalMove(String str) {
         _moveMatcher.reset(str);
@@ -0,0 +1,408 @@
+package tablut;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static tablut.Piece.*;
+import static tablut.Square.BOARD_SIZE;
+import static tablut.Square.NUM_SQUARES;
+import static tablut.Square.sq;
+
+/**
+ * An efficiently updatable neural network (NNUE) evaluating positions.
+ * The inputs are sparse binary features: one for each kind of piece on
+ * each square and, optionally, one for each white or black piece at each
+ * offset from the king.  The first layer is kept by an Accumulator as the
+ * sum of the weights of the features present, updated as pieces move, so
+ * that evaluating a position costs only the two small dense layers that
+ * follow.  Those use 8-bit activations and weights with 32-bit sums, as
+ * below; the output, chosen by side to move, estimates the log odds that
+ * White wins, and is returned in units of 1/UNITS, positive favoring
+ * White.  Networks are trained by NetworkTrainer, which works in floating
+ * point with the parameter layout described by the OFFSET methods, and
+ * are stored in a file read by the constructor.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Network {
+
+    /**
+     * Identifies network files.
+     */
+    static final int MAGIC = 0x4e4e5545;
+    /**
+     * Version of the file layout.
+     */
+    static final int VERSION = 1;
+    /**
+     * Number of piece-square features.
+     */
+    static final int PIECE_FEATURES = 3 * NUM_SQUARES;
+    /**
+     * Number of rows (or columns) of offsets from the king.
+     */
+    static final int SPAN = 2 * BOARD_SIZE - 1;
+    /**
+     * Number of king-relative features.
+     */
+    static final int KING_FEATURES = 2 * SPAN * SPAN;
+    /**
+     * Most features that can be present in one position.
+     */
+    static final int MAX_ACTIVE = 2 * NUM_SQUARES;
+    /**
+     * Size of the first layer (the accumulator).
+     */
+    static final int ACCUMULATOR_SIZE = 64;
+    /**
+     * Size of the hidden layer.
+     */
+    static final int HIDDEN_SIZE = 16;
+    /**
+     * Quantized value of an activation of 1.  Activations are clipped to
+     * [0, ACTIVATION_MAX].
+     */
+    static final int ACTIVATION_MAX = 127;
+    /**
+     * Quantized value of a dense-layer weight of 1.
+     */
+    static final int WEIGHT_SCALE = 64;
+    /**
+     * log2(WEIGHT_SCALE).
+     */
+    static final int WEIGHT_SHIFT = 6;
+    /**
+     * Largest dense-layer weight that can be quantized.
+     */
+    static final float MAX_WEIGHT = 127f / WEIGHT_SCALE;
+    /**
+     * Points of static score per unit of log odds.
+     */
+    static final int UNITS = 1000;
+
+    /**
+     * The network in FILE.  Throws IOException if FILE is missing or
+     * malformed.
+     */
+    Network(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a network: " + file);
+            }
+            _kingRelative = in.readInt() != 0;
+            if (in.readInt() != ACCUMULATOR_SIZE
+                || in.readInt() != HIDDEN_SIZE) {
+                throw new IOException("unsupported network shape: " + file);
+            }
+            allocate();
+            for (int i = 0; i < _inputWeights.length; i += 1) {
+                _inputWeights[i] = in.readShort();
+            }
+            for (int i = 0; i < _inputBias.length; i += 1) {
+                _inputBias[i] = in.readShort();
+            }
+            in.readFully(_hiddenWeights);
+            for (int i = 0; i < _hiddenBias.length; i += 1) {
+                _hiddenBias[i] = in.readInt();
+            }
+            in.readFully(_outputWeights);
+            for (int i = 0; i < _outputBias.length; i += 1) {
+                _outputBias[i] = in.readInt();
+            }
+        }
+    }
+
+    /**
+     * The network, with king-relative features iff KINGRELATIVE, that
+     * quantizes floating-point parameters PARAMS, laid out as described by
+     * the OFFSET methods.
+     */
+    Network(boolean kingRelative, float[] params) {
+        _kingRelative = kingRelative;
+        allocate();
+        int w0 = 0, b0 = inputBiasOffset(kingRelative),
+            w1 = hiddenWeightsOffset(kingRelative),
+            b1 = hiddenBiasOffset(kingRelative),
+            w2 = outputWeightsOffset(kingRelative),
+            b2 = outputBiasOffset(kingRelative);
+        for (int i = 0; i < _inputWeights.length; i += 1) {
+            _inputWeights[i] = (short) quantize(params[w0 + i], ACTIVATION_MAX,
+                                                Short.MAX_VALUE);
+        }
+        for (int i = 0; i < _inputBias.length; i += 1) {
+            _inputBias[i] = (short) quantize(params[b0 + i], ACTIVATION_MAX,
+                                             Short.MAX_VALUE);
+        }
+        for (int i = 0; i < _hiddenWeights.length; i += 1) {
+            _hiddenWeights[i] = (byte) quantize(params[w1 + i], WEIGHT_SCALE,
+                                                Byte.MAX_VALUE);
+        }
+        for (int i = 0; i < _hiddenBias.length; i += 1) {
+            _hiddenBias[i] = quantize(params[b1 + i],
+                                      ACTIVATION_MAX * WEIGHT_SCALE,
+                                      Integer.MAX_VALUE);
+        }
+        for (int i = 0; i < _outputWeights.length; i += 1) {
+            _outputWeights[i] = (byte) quantize(params[w2 + i], WEIGHT_SCALE,
+                                                Byte.MAX_VALUE);
+        }
+        for (int i = 0; i < _outputBias.length; i += 1) {
+            _outputBias[i] = quantize(params[b2 + i],
+                                      ACTIVATION_MAX * WEIGHT_SCALE,
+                                      Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Write this network to FILE.
+     */
+    void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(_kingRelative ? 1 : 0);
+            out.writeInt(ACCUMULATOR_SIZE);
+            out.writeInt(HIDDEN_SIZE);
+            for (short w : _inputWeights) {
+                out.writeShort(w);
+            }
+            for (short b : _inputBias) {
+                out.writeShort(b);
+            }
+            out.write(_hiddenWeights);
+            for (int b : _hiddenBias) {
+                out.writeInt(b);
+            }
+            out.write(_outputWeights);
+            for (int b : _outputBias) {
+                out.writeInt(b);
+            }
+        }
+    }
+
+    /**
+     * Return a hash of this network, which identifies it in caches of
+     * scores.
+     */
+    long fingerprint() {
+        long h = _kingRelative ? 1 : 0;
+        h = 31 * h + Arrays.hashCode(_inputWeights);
+        h = 31 * h + Arrays.hashCode(_inputBias);
+        h = 31 * h + Arrays.hashCode(_hiddenWeights);
+        h = 31 * h + Arrays.hashCode(_hiddenBias);
+        h = 31 * h + Arrays.hashCode(_outputWeights);
+        return 31 * h + Arrays.hashCode(_outputBias);
+    }
+
+    /**
+     * Return true iff this network uses king-relative features.
+     */
+    boolean kingRelative() {
+        return _kingRelative;
+    }
+
+    /**
+     * Return the number of input features, with king-relative features
+     * iff KINGRELATIVE.
+     */
+    static int numFeatures(boolean kingRelative) {
+        return PIECE_FEATURES + (kingRelative ? KING_FEATURES : 0);
+    }
+
+    /**
+     * Return the offset of the first-layer biases in the parameters of a
+     * network with king-relative features iff KINGRELATIVE.  The
+     * first-layer weights come first, ACCUMULATOR_SIZE for each feature.
+     */
+    static int inputBiasOffset(boolean kingRelative) {
+        return numFeatures(kingRelative) * ACCUMULATOR_SIZE;
+    }
+
+    /**
+     * Return the offset of the hidden-layer weights, ACCUMULATOR_SIZE for
+     * each hidden unit, in the parameters of a network with king-relative
+     * features iff KINGRELATIVE.
+     */
+    static int hiddenWeightsOffset(boolean kingRelative) {
+        return inputBiasOffset(kingRelative) + ACCUMULATOR_SIZE;
+    }
+
+    /**
+     * Return the offset of the hidden-layer biases in the parameters of a
+     * network with king-relative features iff KINGRELATIVE.
+     */
+    static int hiddenBiasOffset(boolean kingRelative) {
+        return hiddenWeightsOffset(kingRelative)
+            + HIDDEN_SIZE * ACCUMULATOR_SIZE;
+    }
+
+    /**
+     * Return the offset of the output weights, HIDDEN_SIZE for White to
+     * move and then HIDDEN_SIZE for Black, in the parameters of a network
+     * with king-relative features iff KINGRELATIVE.
+     */
+    static int outputWeightsOffset(boolean kingRelative) {
+        return hiddenBiasOffset(kingRelative) + HIDDEN_SIZE;
+    }
+
+    /**
+     * Return the offset of the two output biases, for White and Black to
+     * move, in the parameters of a network with king-relative features iff
+     * KINGRELATIVE.
+     */
+    static int outputBiasOffset(boolean kingRelative) {
+        return outputWeightsOffset(kingRelative) + 2 * HIDDEN_SIZE;
+    }
+
+    /**
+     * Return the number of parameters of a network with king-relative
+     * features iff KINGRELATIVE.
+     */
+    static int numParameters(boolean kingRelative) {
+        return outputBiasOffset(kingRelative) + 2;
+    }
+
+    /**
+     * Return the feature for piece P on square S, which is not empty.
+     */
+    static int pieceFeature(Piece p, Square s) {
+        return (p.ordinal() - 1) * NUM_SQUARES + s.index();
+    }
+
+    /**
+     * Return the king-relative feature for a white or black piece P on
+     * square S with the king on KING.
+     */
+    static int kingFeature(Piece p, Square s, Square king) {
+        return PIECE_FEATURES + (p == WHITE ? 0 : SPAN * SPAN)
+            + (s.row() - king.row() + BOARD_SIZE - 1) * SPAN
+            + s.col() - king.col() + BOARD_SIZE - 1;
+    }
+
+    /**
+     * Store the features of BOARD in FEATURES, with king-relative features
+     * iff KINGRELATIVE, and return their number.  FEATURES must have
+     * length at least MAX_ACTIVE.
+     */
+    static int features(Board board, boolean kingRelative, int[] features) {
+        Square king = kingRelative ? board.kingPosition() : null;
+        int n = 0;
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            Square s = sq(i);
+            Piece p = board.get(s);
+            if (p != EMPTY) {
+                features[n] = pieceFeature(p, s);
+                n += 1;
+                if (king != null && p != KING) {
+                    features[n] = kingFeature(p, s, king);
+                    n += 1;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Add (if SIGN is 1) or subtract (if SIGN is -1) the weights of
+     * feature F to VALUES.
+     */
+    void accumulate(short[] values, int f, int sign) {
+        int base = f * ACCUMULATOR_SIZE;
+        for (int i = 0; i < ACCUMULATOR_SIZE; i += 1) {
+            values[i] += sign * _inputWeights[base + i];
+        }
+    }
+
+    /**
+     * Set VALUES to the first-layer biases.
+     */
+    void clear(short[] values) {
+        System.arraycopy(_inputBias, 0, values, 0, ACCUMULATOR_SIZE);
+    }
+
+    /**
+     * Return the value of BOARD, whose features are accumulated in
+     * ACCUMULATOR, in units of 1/UNITS of log odds of a White win.
+     */
+    int evaluate(Board board, Accumulator accumulator) {
+        short[] values = accumulator.values(board);
+        int[] hidden = accumulator.hidden();
+        for (int j = 0; j < HIDDEN_SIZE; j += 1) {
+            int sum = _hiddenBias[j], base = j * ACCUMULATOR_SIZE;
+            for (int i = 0; i < ACCUMULATOR_SIZE; i += 1) {
+                int v = values[i];
+                if (v > 0) {
+                    sum += Math.min(v, ACTIVATION_MAX)
+                        * _hiddenWeights[base + i];
+                }
+            }
+            hidden[j] = Math.max(0, Math.min(ACTIVATION_MAX,
+                                             sum >> WEIGHT_SHIFT));
+        }
+        int side = board.turn() == WHITE ? 0 : 1;
+        int out = _outputBias[side];
+        for (int j = 0; j < HIDDEN_SIZE; j += 1) {
+            out += hidden[j] * _outputWeights[side * HIDDEN_SIZE + j];
+        }
+        return (int) ((long) out * UNITS / (ACTIVATION_MAX * WEIGHT_SCALE));
+    }
+
+    /**
+     * Return X * SCALE, rounded and clipped to [-LIMIT, LIMIT].
+     */
+    private static int quantize(float x, int scale, int limit) {
+        long q = Math.round((double) x * scale);
+        return (int) Math.max(-limit, Math.min(limit, q));
+    }
+
+    /**
+     * Allocate my parameter arrays.
+     */
+    private void allocate() {
+        _inputWeights = new short[numFeatures(_kingRelative)
+                                  * ACCUMULATOR_SIZE];
+        _inputBias = new short[ACCUMULATOR_SIZE];
+        _hiddenWeights = new byte[HIDDEN_SIZE * ACCUMULATOR_SIZE];
+        _hiddenBias = new int[HIDDEN_SIZE];
+        _outputWeights = new byte[2 * HIDDEN_SIZE];
+        _outputBias = new int[2];
+    }
+
+    /**
+     * True iff the inputs include king-relative features.
+     */
+    private final boolean _kingRelative;
+    /**
+     * First-layer weights, scaled by ACTIVATION_MAX.
+     */
+    private short[] _inputWeights;
+    /**
+     * First-layer biases, scaled by ACTIVATION_MAX.
+     */
+    private short[] _inputBias;
+    /**
+     * Hidden-layer weights, scaled by WEIGHT_SCALE.
+     */
+    private byte[] _hiddenWeights;
+    /**
+     * Hidden-layer biases, scaled by ACTIVATION_MAX * WEIGHT_SCALE.
+     */
+    private int[] _hiddenBias;
+    /**
+     * Output weights, scaled by WEIGHT_SCALE.
+     */
+    private byte[] _outputWeights;
+    /**
+     * Output biases, scaled by ACTIVATION_MAX * WEIGHT_SCALE.
+     */
+    private int[] _outputBias;
+}
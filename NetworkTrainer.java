@@ -0,0 +1,286 @@
+package tablut;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static tablut.Piece.*;
+
+/**
+ * Trains a Network on games of the AI against itself.  Each position
+ * reached is labeled with the result of its game (1 for a White win, 0
+ * for a Black win, 1/2 for an abandoned game), and the network, in
+ * floating point, is fitted so that the logistic function of its output
+ * predicts that label, by minibatch gradient descent (Adam) on the mean
+ * squared error.  Gradients of each minibatch are summed in parallel.
+ * Dense-layer weights are kept within the range that Network can
+ * quantize.
+ *
+ * @author Shreyansh Loharuka
+ */
+class NetworkTrainer {
+
+    /**
+     * Positions in each minibatch.
+     */
+    private static final int BATCH = 256;
+    /**
+     * Step size of gradient descent.
+     */
+    private static final float LEARNING_RATE = 0.001f;
+
+    /**
+     * Train a network from self-play.  ARGS are [--king] GAMES DEPTH
+     * EPOCHS FILE: play GAMES games, searching DEPTH plies, train for
+     * EPOCHS passes over their positions, and write the network to FILE.
+     * With --king, the network has king-relative features.
+     */
+    public static void main(String... args) {
+        boolean king = args.length > 0 && args[0].equals("--king");
+        int first = king ? 1 : 0;
+        if (args.length != first + 4) {
+            Utils.fatal("Usage: java tablut.NetworkTrainer [--king] GAMES"
+                        + " DEPTH EPOCHS FILE%n");
+        }
+        try {
+            int games = Integer.parseInt(args[first]);
+            int depth = Integer.parseInt(args[first + 1]);
+            int epochs = Integer.parseInt(args[first + 2]);
+            NetworkTrainer trainer = new NetworkTrainer(king, 0);
+            for (SelfPlay.Game game
+                     : new SelfPlay(depth).play(games, 0)) {
+                trainer.add(game);
+            }
+            System.out.printf("%d positions%n", trainer.size());
+            for (int e = 1; e <= epochs; e += 1) {
+                System.out.printf("epoch %d: error %.5f%n", e,
+                                  trainer.epoch());
+            }
+            trainer.network().write(new File(args[first + 3]));
+        } catch (NumberFormatException excp) {
+            Utils.fatal("bad number: %s%n", excp.getMessage());
+        } catch (IOException excp) {
+            Utils.fatal("%s%n", excp.getMessage());
+        }
+    }
+
+    /**
+     * A trainer for a network with king-relative features iff
+     * KINGRELATIVE, with parameters initialized randomly from SEED.
+     */
+    NetworkTrainer(boolean kingRelative, long seed) {
+        _kingRelative = kingRelative;
+        int n = Network.numParameters(kingRelative);
+        _params = new float[n];
+        _adam = new Adam(n, LEARNING_RATE);
+        _random = new Random(seed);
+        _hiddenWeights = Network.hiddenWeightsOffset(kingRelative);
+        _hiddenBias = Network.hiddenBiasOffset(kingRelative);
+        _outputWeights = Network.outputWeightsOffset(kingRelative);
+        _outputBias = Network.outputBiasOffset(kingRelative);
+        int inputBias = Network.inputBiasOffset(kingRelative);
+        for (int i = 0; i < inputBias; i += 1) {
+            _params[i] = (float) (_random.nextGaussian() * 0.05);
+        }
+        for (int i = inputBias; i < _hiddenWeights; i += 1) {
+            _params[i] = 0.5f;
+        }
+        float spread = (float) (1 / Math.sqrt(Network.ACCUMULATOR_SIZE));
+        for (int i = _hiddenWeights; i < _hiddenBias; i += 1) {
+            _params[i] = (2 * _random.nextFloat() - 1) * spread;
+        }
+        for (int i = _hiddenBias; i < _outputWeights; i += 1) {
+            _params[i] = 0.5f;
+        }
+        for (int i = _outputWeights; i < _outputBias; i += 1) {
+            _params[i] = (2 * _random.nextFloat() - 1) * 0.1f;
+        }
+    }
+
+    /**
+     * Add the positions of GAME to my training data.  Positions decided
+     * by the king, which the AI never evaluates with the network, are
+     * skipped.
+     */
+    void add(SelfPlay.Game game) {
+        float result = game.winner() == WHITE ? 1f
+            : game.winner() == BLACK ? 0f : 0.5f;
+        Board board = new Board();
+        int[] features = new int[Network.MAX_ACTIVE];
+        for (int k = 0; k < game.length(); k += 1) {
+            board.setPosition(game.position(k));
+            if (AI.isDecided(board)) {
+                continue;
+            }
+            int n = Network.features(board, _kingRelative, features);
+            int[] sample = new int[n + 1];
+            System.arraycopy(features, 0, sample, 1, n);
+            sample[0] = board.turn() == WHITE ? 0 : 1;
+            _samples.add(sample);
+            _results.add(result);
+        }
+    }
+
+    /**
+     * Return the number of positions added.
+     */
+    int size() {
+        return _samples.size();
+    }
+
+    /**
+     * Train on every position once, in random order, and return the mean
+     * squared error over them before each update.
+     */
+    double epoch() {
+        int n = _samples.size();
+        int[] order = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            int j = _random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        double error = 0;
+        for (int start = 0; start < n; start += BATCH) {
+            int end = Math.min(n, start + BATCH);
+            float[] g = IntStream.range(start, end).parallel()
+                .collect(() -> new float[_params.length + 1],
+                         (acc, i) -> backward(order[i], acc),
+                         (a, b) -> {
+                             for (int k = 0; k < a.length; k += 1) {
+                                 a[k] += b[k];
+                             }
+                         });
+            error += g[_params.length];
+            step(g, end - start);
+        }
+        return error / Math.max(1, n);
+    }
+
+    /**
+     * Return the quantized network for my current parameters.
+     */
+    Network network() {
+        return new Network(_kingRelative, _params);
+    }
+
+    /**
+     * Add the gradient of the squared error on sample number I to
+     * GRADIENT, and the squared error itself to its last element.
+     */
+    private void backward(int i, float[] gradient) {
+        int[] sample = _samples.get(i);
+        float y = _results.get(i);
+        int acc = Network.ACCUMULATOR_SIZE, hid = Network.HIDDEN_SIZE;
+        int inputBias = Network.inputBiasOffset(_kingRelative);
+
+        float[] a = new float[acc];
+        System.arraycopy(_params, inputBias, a, 0, acc);
+        for (int k = 1; k < sample.length; k += 1) {
+            int base = sample[k] * acc;
+            for (int j = 0; j < acc; j += 1) {
+                a[j] += _params[base + j];
+            }
+        }
+        float[] z = new float[hid], h = new float[hid];
+        for (int j = 0; j < hid; j += 1) {
+            float sum = _params[_hiddenBias + j];
+            for (int k = 0; k < acc; k += 1) {
+                sum += clip(a[k]) * _params[_hiddenWeights + j * acc + k];
+            }
+            z[j] = sum;
+            h[j] = clip(sum);
+        }
+        int side = sample[0];
+        float out = _params[_outputBias + side];
+        for (int j = 0; j < hid; j += 1) {
+            out += h[j] * _params[_outputWeights + side * hid + j];
+        }
+
+        float p = (float) (1 / (1 + Math.exp(-out)));
+        gradient[_params.length] += (p - y) * (p - y);
+        float d = 2 * (p - y) * p * (1 - p);
+        gradient[_outputBias + side] += d;
+        float[] da = new float[acc];
+        for (int j = 0; j < hid; j += 1) {
+            gradient[_outputWeights + side * hid + j] += d * h[j];
+            if (z[j] <= 0 || z[j] >= 1) {
+                continue;
+            }
+            float dz = d * _params[_outputWeights + side * hid + j];
+            gradient[_hiddenBias + j] += dz;
+            for (int k = 0; k < acc; k += 1) {
+                gradient[_hiddenWeights + j * acc + k] += dz * clip(a[k]);
+                da[k] += dz * _params[_hiddenWeights + j * acc + k];
+            }
+        }
+        for (int k = 0; k < acc; k += 1) {
+            if (a[k] <= 0 || a[k] >= 1) {
+                da[k] = 0;
+            }
+            gradient[inputBias + k] += da[k];
+        }
+        for (int f = 1; f < sample.length; f += 1) {
+            int base = sample[f] * acc;
+            for (int k = 0; k < acc; k += 1) {
+                gradient[base + k] += da[k];
+            }
+        }
+    }
+
+    /**
+     * Take one Adam step along the summed GRADIENT of a minibatch of N
+     * positions.
+     */
+    private void step(float[] gradient, int n) {
+        _adam.step(_params, gradient, 1.0 / n);
+        for (int k = _hiddenWeights; k < _hiddenBias; k += 1) {
+            _params[k] = Math.max(-Network.MAX_WEIGHT,
+                                  Math.min(Network.MAX_WEIGHT, _params[k]));
+        }
+        for (int k = _outputWeights; k < _outputBias; k += 1) {
+            _params[k] = Math.max(-Network.MAX_WEIGHT,
+                                  Math.min(Network.MAX_WEIGHT, _params[k]));
+        }
+    }
+
+    /**
+     * Return X clipped to [0, 1].
+     */
+    private static float clip(float x) {
+        return Math.max(0f, Math.min(1f, x));
+    }
+
+    /**
+     * True iff the network has king-relative features.
+     */
+    private final boolean _kingRelative;
+    /**
+     * The parameters, laid out as described by Network.
+     */
+    private final float[] _params;
+    /**
+     * The descent fitting _params.
+     */
+    private final Adam _adam;
+    /**
+     * Source of initial parameters and of the order of positions.
+     */
+    private final Random _random;
+    /**
+     * Offsets of the dense-layer parameters.
+     */
+    private final int _hiddenWeights, _hiddenBias, _outputWeights,
+        _outputBias;
+    /**
+     * Training positions: side to move (0 for White), then the features.
+     */
+    private final List<int[]> _samples = new ArrayList<>();
+    /**
+     * Results of the games in which each position occurred.
+     */
+    private final List<Float> _results = new ArrayList<>();
+}
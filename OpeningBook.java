@@ -0,0 +1,174 @@
+package tablut;
+
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static tablut.Square.NUM_SQUARES;
+import static tablut.Square.SYMMETRIES;
+import static tablut.Square.sq;
+
+/**
+ * A book of opening moves, each with a weight, keyed by position hash.
+ * If the book is symmetric, positions are keyed by the least hash of any
+ * of their images under the board symmetries, and moves are stored in
+ * that image's orientation, so one entry serves all equivalent positions.
+ * The file is a header followed by entries sorted by key, and is searched
+ * by binary search in a memory-mapped buffer.  Books are made by
+ * BookBuilder.
+ *
+ * @author Shreyansh Loharuka
+ */
+class OpeningBook {
+
+    /**
+     * Identifies opening-book files.
+     */
+    static final int MAGIC = 0x424f4f4b;
+    /**
+     * Version of the file layout.
+     */
+    static final int VERSION = 1;
+    /**
+     * Size in bytes of the header: magic, version, symmetric flag, and
+     * number of entries.
+     */
+    static final int HEADER_SIZE = 16;
+    /**
+     * Size in bytes of one entry: key, move, and weight.
+     */
+    static final int ENTRY_SIZE = 16;
+
+    /**
+     * The book in FILE.  Throws IOException if FILE is missing or
+     * malformed.
+     */
+    OpeningBook(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("not an opening book: " + file);
+            }
+            _entries = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                   channel.size());
+        }
+        if (_entries.getInt(0) != MAGIC || _entries.getInt(4) != VERSION) {
+            throw new IOException("not an opening book: " + file);
+        }
+        _symmetric = _entries.getInt(8) != 0;
+        _size = _entries.getInt(12);
+        if (HEADER_SIZE + (long) _size * ENTRY_SIZE > _entries.capacity()) {
+            throw new IOException("truncated opening book: " + file);
+        }
+    }
+
+    /**
+     * Store the book moves for BOARD in MOVES and their weights in WEIGHTS,
+     * up to the length of MOVES, and return the number stored.
+     */
+    int probe(Board board, Move[] moves, int[] weights) {
+        int sym = symmetry(board, _symmetric);
+        long key = board.hash(sym);
+        int lo = 0, hi = _size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (key(mid) < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int inverse = Square.inverse(sym);
+        int n = 0;
+        for (int i = lo; i < _size && key(i) == key && n < moves.length;
+             i += 1) {
+            int at = HEADER_SIZE + i * ENTRY_SIZE;
+            int code = _entries.getInt(at + 8);
+            Move move = Move.mv(sq(code / NUM_SQUARES), sq(code % NUM_SQUARES))
+                .symmetric(inverse);
+            if (board.isLegal(move)) {
+                moves[n] = move;
+                weights[n] = _entries.getInt(at + 12);
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Return the symmetry under which BOARD is keyed: that giving the
+     * least hash if SYMMETRIC, and otherwise the identity.
+     */
+    static int symmetry(Board board, boolean symmetric) {
+        int best = 0;
+        if (symmetric) {
+            long least = board.hash(0);
+            for (int sym = 1; sym < SYMMETRIES; sym += 1) {
+                long h = board.hash(sym);
+                if (h < least) {
+                    least = h;
+                    best = sym;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Write a book to FILE containing, for each key K in WEIGHTS, the
+     * moves in WEIGHTS.get(K) with their weights.  Keys and moves must
+     * already be in the book's orientation (symmetric iff SYMMETRIC).
+     */
+    static void write(File file, boolean symmetric,
+                      Map<Long, Map<Move, Integer>> weights)
+        throws IOException {
+        TreeMap<Long, Map<Move, Integer>> sorted = new TreeMap<>(weights);
+        int size = 0;
+        for (Map<Move, Integer> moves : sorted.values()) {
+            size += moves.size();
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(symmetric ? 1 : 0);
+            out.writeInt(size);
+            for (Map.Entry<Long, Map<Move, Integer>> e : sorted.entrySet()) {
+                for (Map.Entry<Move, Integer> m : e.getValue().entrySet()) {
+                    Move move = m.getKey();
+                    out.writeLong(e.getKey());
+                    out.writeInt(move.from().index() * NUM_SQUARES
+                                 + move.to().index());
+                    out.writeInt(m.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the key of entry I.
+     */
+    private long key(int i) {
+        return _entries.getLong(HEADER_SIZE + i * ENTRY_SIZE);
+    }
+
+    /**
+     * The mapped file.
+     */
+    private final MappedByteBuffer _entries;
+    /**
+     * True iff positions are keyed up to symmetry.
+     */
+    private final boolean _symmetric;
+    /**
+     * Number of entries.
+     */
+    private final int _size;
+}
@@ -0,0 +1,312 @@
+package tablut;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts the move paths of a given length from a position (perft), as a
+ * check on Board's move generation and a measure of its speed.  For
+ * paths of DEPTH plies, perft counts the positions reached (leaves), how
+ * many of the last moves captured, and how many of them ended the game.
+ * Lines on which the game ends early are not extended, and a position in
+ * which the move limit would end the game has no moves.
+ *
+ * The hashed variant remembers the counts of positions already seen at
+ * each depth.  Because the repetition rule depends on the moves that
+ * led to a position, its counts may differ from the exact ones on lines
+ * that repeat positions.  The parallel variant counts the subtree of
+ * each root move as a separate fork/join task on its own copy of the
+ * board.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Perft {
+
+    /**
+     * Log2 of the number of entries in the table of the hashed variant.
+     */
+    private static final int TABLE_LOG_SIZE = 20;
+
+    /**
+     * The results of a perft.
+     */
+    static class Counts {
+
+        /**
+         * Return the number of leaves.
+         */
+        long nodes() {
+            return _nodes;
+        }
+
+        /**
+         * Return the number of last moves that captured.
+         */
+        long captures() {
+            return _captures;
+        }
+
+        /**
+         * Return the number of last moves that ended the game.
+         */
+        long ends() {
+            return _ends;
+        }
+
+        /**
+         * Add OTHER's counts to mine.
+         */
+        void add(Counts other) {
+            _nodes += other._nodes;
+            _captures += other._captures;
+            _ends += other._ends;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d nodes, %d captures, %d game ends",
+                                 _nodes, _captures, _ends);
+        }
+
+        /**
+         * Number of leaves.
+         */
+        private long _nodes;
+        /**
+         * Number of capturing last moves.
+         */
+        private long _captures;
+        /**
+         * Number of game-ending last moves.
+         */
+        private long _ends;
+    }
+
+    /**
+     * Count paths from positions given by ARGS: [--hash] [--parallel]
+     * [--divide] DEPTH.  Counts from the initial position, printing the
+     * counts, the time taken, and the leaves per second, and with
+     * --divide the counts for each first move.
+     */
+    public static void main(String... args) {
+        boolean hashed = false, parallel = false, divide = false;
+        int k;
+        for (k = 0; k < args.length - 1; k += 1) {
+            switch (args[k]) {
+            case "--hash":
+                hashed = true;
+                break;
+            case "--parallel":
+                parallel = true;
+                break;
+            case "--divide":
+                divide = true;
+                break;
+            default:
+                Utils.fatal("Usage: java tablut.Perft [--hash] [--parallel]"
+                            + " [--divide] DEPTH%n");
+            }
+        }
+        if (k != args.length - 1) {
+            Utils.fatal("Usage: java tablut.Perft [--hash] [--parallel]"
+                        + " [--divide] DEPTH%n");
+        }
+        try {
+            run(new Board(), Integer.parseInt(args[k]), hashed, parallel,
+                divide, System.out);
+        } catch (NumberFormatException excp) {
+            Utils.fatal("bad depth: %s%n", args[k]);
+        }
+    }
+
+    /**
+     * Count the paths of DEPTH plies from BOARD, using the hashed variant
+     * iff HASHED and the parallel one iff PARALLEL, and print the counts
+     * on OUT, preceded by those of each first move iff DIVIDE.
+     */
+    static void run(Board board, int depth, boolean hashed,
+                    boolean parallel, boolean divide, PrintStream out) {
+        long start = System.nanoTime();
+        Map<Move, Counts> moves = divide(board, depth, hashed, parallel);
+        Counts total = new Counts();
+        for (Map.Entry<Move, Counts> entry : moves.entrySet()) {
+            if (divide) {
+                out.printf("%s: %s%n", entry.getKey(), entry.getValue());
+            }
+            total.add(entry.getValue());
+        }
+        double seconds = (System.nanoTime() - start) * 1e-9;
+        out.printf("perft %d: %s%n", depth, total);
+        out.printf("%.3f s, %.0f nodes/s%n", seconds,
+                   total.nodes() / Math.max(seconds, 1e-9));
+    }
+
+    /**
+     * Return the counts of the paths of DEPTH plies from BOARD, which is
+     * not modified, using the hashed variant iff HASHED and the parallel
+     * one iff PARALLEL.
+     */
+    static Counts count(Board board, int depth, boolean hashed,
+                        boolean parallel) {
+        Counts total = new Counts();
+        for (Counts counts
+                 : divide(board, depth, hashed, parallel).values()) {
+            total.add(counts);
+        }
+        return total;
+    }
+
+    /**
+     * Return, for each legal move in BOARD (which is not modified), in
+     * order of generation, the counts of the paths of DEPTH plies that
+     * start with it.  Uses the hashed variant iff HASHED and the parallel
+     * one iff PARALLEL.  Returns an empty map if DEPTH is 0 or the game
+     * is over.
+     */
+    static Map<Move, Counts> divide(Board board, int depth, boolean hashed,
+                                    boolean parallel) {
+        Map<Move, Counts> result = new LinkedHashMap<>();
+        if (depth <= 0 || isFinished(board)) {
+            return result;
+        }
+        List<Move> moves = board.legalMoves(board.turn());
+        if (!parallel) {
+            Perft perft = new Perft(hashed);
+            Board b = new Board(board);
+            for (Move move : moves) {
+                result.put(move, perft.countMove(b, move, depth));
+            }
+            return result;
+        }
+        List<RecursiveTask<Counts>> tasks = new ArrayList<>();
+        for (Move move : moves) {
+            tasks.add(new RecursiveTask<Counts>() {
+                @Override
+                protected Counts compute() {
+                    return new Perft(hashed)
+                        .countMove(new Board(board), move, depth);
+                }
+            });
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+        for (int i = 0; i < moves.size(); i += 1) {
+            result.put(moves.get(i), tasks.get(i).join());
+        }
+        return result;
+    }
+
+    /**
+     * A counter, which remembers the counts of positions iff HASHED.
+     */
+    private Perft(boolean hashed) {
+        if (hashed) {
+            int size = 1 << TABLE_LOG_SIZE;
+            _keys = new long[size];
+            _depths = new int[size];
+            _counts = new Counts[size];
+        } else {
+            _keys = null;
+            _depths = null;
+            _counts = null;
+        }
+    }
+
+    /**
+     * Return the counts of the paths of DEPTH plies in BOARD that start
+     * with MOVE, leaving BOARD as it was.
+     */
+    private Counts countMove(Board board, Move move, int depth) {
+        Counts result = new Counts();
+        int pieces = pieces(board);
+        board.makeMove(move);
+        if (depth == 1) {
+            result._nodes = 1;
+            result._captures = pieces(board) < pieces ? 1 : 0;
+            result._ends = board.winner() != null ? 1 : 0;
+        } else if (!isFinished(board)) {
+            count(board, depth - 1, result);
+        }
+        board.undo();
+        return result;
+    }
+
+    /**
+     * Add the counts of the paths of DEPTH > 0 plies in BOARD, whose game
+     * is not finished, to RESULT, leaving BOARD as it was.
+     */
+    private void count(Board board, int depth, Counts result) {
+        int slot = -1;
+        if (_keys != null && depth > 1) {
+            long key = board.hash();
+            slot = (int) (key ^ (key >>> 32) ^ depth) & (_keys.length - 1);
+            if (_counts[slot] != null && _keys[slot] == key
+                && _depths[slot] == depth) {
+                result.add(_counts[slot]);
+                return;
+            }
+        }
+        Counts counts = new Counts();
+        int pieces = pieces(board);
+        for (Move move : board.legalMoves(board.turn())) {
+            board.makeMove(move);
+            if (depth == 1) {
+                counts._nodes += 1;
+                if (pieces(board) < pieces) {
+                    counts._captures += 1;
+                }
+                if (board.winner() != null) {
+                    counts._ends += 1;
+                }
+            } else if (!isFinished(board)) {
+                count(board, depth - 1, counts);
+            }
+            board.undo();
+        }
+        if (slot >= 0) {
+            _keys[slot] = board.hash();
+            _depths[slot] = depth;
+            _counts[slot] = counts;
+        }
+        result.add(counts);
+    }
+
+    /**
+     * Return true iff the game on BOARD is over or will be ended by the
+     * move limit with the next move.
+     */
+    private static boolean isFinished(Board board) {
+        return board.winner() != null || board.atMoveLimit();
+    }
+
+    /**
+     * Return the number of pieces on BOARD.
+     */
+    private static int pieces(Board board) {
+        return Long.bitCount(board.occupiedLow())
+            + Long.bitCount(board.occupiedHigh());
+    }
+
+    /**
+     * Hashes of the positions in the table, or null if I am not hashed.
+     */
+    private final long[] _keys;
+    /**
+     * Depths counted for the positions in the table.
+     */
+    private final int[] _depths;
+    /**
+     * Counts for the positions in the table (null for empty slots).
+     */
+    private final Counts[] _counts;
+}
@@ -0,0 +1,240 @@
+package tablut;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import static tablut.Piece.*;
+
+/**
+ * A linear model that scores moves for ordering the search, one weight
+ * vector for each side.  A move's score is the dot product of the
+ * weights of the side to move with the features of the move: which
+ * class of square (up to the symmetries of the board) it leaves and
+ * which it enters, whether it moves the king, whether it may capture,
+ * whether the piece moved is threatened, how many lines from the king to
+ * the edge it opens (or, if negative, closes), and how close it starts
+ * and ends to the king.  Scoring a move takes a few table lookups and
+ * mask tests.  Policies are stored in text files like those of Weights,
+ * with lines such as "white.capture 120", and are made by PolicyTrainer.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Policy {
+
+    /**
+     * Number of classes of squares under the symmetries of the board.
+     */
+    static final int NUM_CLASSES = 15;
+    /**
+     * Index of the first of the features for the class of the square
+     * moved from (one per class, 1 for the class of the square and 0
+     * for the others).
+     */
+    static final int FROM = 0;
+    /**
+     * Index of the first of the features for the class of the square
+     * moved to.
+     */
+    static final int TO = FROM + NUM_CLASSES;
+    /**
+     * 1 iff the king moves.
+     */
+    static final int KING_MOVE = TO + NUM_CLASSES;
+    /**
+     * 1 iff the move may capture (see AI.mayCapture).
+     */
+    static final int CAPTURE = KING_MOVE + 1;
+    /**
+     * 1 iff the piece moved is threatened (see Board.threatened).
+     */
+    static final int THREATENED = CAPTURE + 1;
+    /**
+     * Change in the number of clear lines from the king to the edge.
+     */
+    static final int LINES = THREATENED + 1;
+    /**
+     * Closeness of the square moved to to the king (see closeness).
+     */
+    static final int TO_KING = LINES + 1;
+    /**
+     * Closeness of the square moved from to the king.
+     */
+    static final int FROM_KING = TO_KING + 1;
+    /**
+     * Number of features.
+     */
+    static final int NUM_FEATURES = FROM_KING + 1;
+    /**
+     * Length of the compact form of a move's features (see features).
+     */
+    static final int COMPACT_LENGTH = 2 + NUM_FEATURES - KING_MOVE;
+
+    /**
+     * Names of the features in policy files.
+     */
+    static final String[] NAMES = new String[NUM_FEATURES];
+
+    /**
+     * CLASS[I] is the class of square I.
+     */
+    private static final int[] CLASS = new int[Square.NUM_SQUARES];
+
+    static {
+        for (int c = 0; c < NUM_CLASSES; c += 1) {
+            NAMES[FROM + c] = "from-" + c;
+            NAMES[TO + c] = "to-" + c;
+        }
+        NAMES[KING_MOVE] = "king";
+        NAMES[CAPTURE] = "capture";
+        NAMES[THREATENED] = "threatened";
+        NAMES[LINES] = "lines";
+        NAMES[TO_KING] = "to-king";
+        NAMES[FROM_KING] = "from-king";
+        int last = Square.BOARD_SIZE - 1, half = last / 2;
+        for (int i = 0; i < Square.NUM_SQUARES; i += 1) {
+            Square s = Square.sq(i);
+            int r = Math.min(s.row(), last - s.row()),
+                c = Math.min(s.col(), last - s.col());
+            int a = Math.min(r, c), b = Math.max(r, c);
+            CLASS[i] = a * (half + 1) - a * (a - 1) / 2 + b - a;
+        }
+    }
+
+    /**
+     * A policy with weights WHITEWEIGHTS for White and BLACKWEIGHTS for
+     * Black.
+     */
+    Policy(int[] whiteWeights, int[] blackWeights) {
+        _white = Arrays.copyOf(whiteWeights, NUM_FEATURES);
+        _black = Arrays.copyOf(blackWeights, NUM_FEATURES);
+    }
+
+    /**
+     * The policy in FILE, whose missing weights are 0.  Throws
+     * IOException if FILE cannot be read or is malformed.
+     */
+    Policy(File file) throws IOException {
+        this(new int[0], new int[0]);
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] words = line.split("\\s+");
+                int dot = words[0].indexOf('.');
+                int f = dot < 0 ? -1
+                    : Arrays.asList(NAMES).indexOf(
+                        words[0].substring(dot + 1));
+                String side = dot < 0 ? "" : words[0].substring(0, dot);
+                if (words.length != 2 || f < 0
+                    || !(side.equals("white") || side.equals("black"))) {
+                    throw new IOException("bad weight in " + file + ": "
+                                          + line);
+                }
+                try {
+                    (side.equals("white") ? _white : _black)[f] =
+                        Integer.parseInt(words[1]);
+                } catch (NumberFormatException excp) {
+                    throw new IOException("bad weight in " + file + ": "
+                                          + line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write this policy to FILE.
+     */
+    void write(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file)) {
+            for (int f = 0; f < NUM_FEATURES; f += 1) {
+                out.printf("white.%s %d%n", NAMES[f], _white[f]);
+            }
+            for (int f = 0; f < NUM_FEATURES; f += 1) {
+                out.printf("black.%s %d%n", NAMES[f], _black[f]);
+            }
+            if (out.checkError()) {
+                throw new IOException("could not write " + file);
+            }
+        }
+    }
+
+    /**
+     * Return the score of MOVE for the side to move on BOARD.
+     */
+    int score(Board board, Move move) {
+        int[] w = board.turn() == WHITE ? _white : _black;
+        Square from = move.from(), to = move.to();
+        int score = w[FROM + CLASS[from.index()]] + w[TO + CLASS[to.index()]];
+        if (AI.mayCapture(board, move)) {
+            score += w[CAPTURE];
+        }
+        if (board.threatened(from)) {
+            score += w[THREATENED];
+        }
+        Square king = board.kingPosition();
+        if (king != null) {
+            if (from == king) {
+                score += w[KING_MOVE];
+            }
+            score += w[LINES] * lines(board, move)
+                + w[TO_KING] * closeness(to, king)
+                + w[FROM_KING] * closeness(from, king);
+        }
+        return score;
+    }
+
+    /**
+     * Set FEATURES, of length COMPACT_LENGTH, to the features of MOVE for
+     * the side to move on BOARD in compact form: the classes of the
+     * squares it leaves and enters, followed by features KING_MOVE on.
+     * The features are then the same as score uses.
+     */
+    static void features(Board board, Move move, int[] features) {
+        Square from = move.from(), to = move.to(), king = board.kingPosition();
+        int base = 2 - KING_MOVE;
+        features[0] = CLASS[from.index()];
+        features[1] = CLASS[to.index()];
+        features[base + KING_MOVE] = from == king ? 1 : 0;
+        features[base + CAPTURE] = AI.mayCapture(board, move) ? 1 : 0;
+        features[base + THREATENED] = board.threatened(from) ? 1 : 0;
+        features[base + LINES] = king == null ? 0 : lines(board, move);
+        features[base + TO_KING] = king == null ? 0 : closeness(to, king);
+        features[base + FROM_KING] =
+            king == null ? 0 : closeness(from, king);
+    }
+
+    /**
+     * Return the number of clear lines from the king to the edge after
+     * MOVE on BOARD, less the number before.
+     */
+    private static int lines(Board board, Move move) {
+        return Integer.bitCount(KingMobility.openLinesAfter(board, move))
+            - Integer.bitCount(KingMobility.openLines(board));
+    }
+
+    /**
+     * Return how close S is to KING: 4 less the distance between them
+     * along ranks and files, or 0 if that is negative.
+     */
+    private static int closeness(Square s, Square king) {
+        int distance = Math.abs(s.row() - king.row())
+            + Math.abs(s.col() - king.col());
+        return Math.max(0, 4 - distance);
+    }
+
+    /**
+     * Weights for White.
+     */
+    private final int[] _white;
+    /**
+     * Weights for Black.
+     */
+    private final int[] _black;
+}
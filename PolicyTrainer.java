@@ -0,0 +1,242 @@
+package tablut;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static tablut.Piece.*;
+
+/**
+ * Trains a move-ordering Policy on games of the AI against itself.  In
+ * each position where the AI chose the move by searching, the policy
+ * should rank that move first among the legal moves.  For each side's
+ * weight vector W we therefore fit a softmax model: the probability it
+ * gives a move is proportional to exp(W . F) over the features F of the
+ * legal moves, and W minimizes the mean over positions of -log of the
+ * probability of the move chosen, by gradient descent (Adam) with
+ * gradients summed in parallel over the positions.  The fitted weights
+ * are written multiplied by UNITS and rounded, since Policy scores in
+ * integers.
+ *
+ * @author Shreyansh Loharuka
+ */
+class PolicyTrainer {
+
+    /**
+     * Number of gradient-descent steps.
+     */
+    private static final int ITERATIONS = 500;
+    /**
+     * Step size of gradient descent.
+     */
+    private static final double LEARNING_RATE = 0.05;
+    /**
+     * Points of policy score per unit of the fitted model.
+     */
+    private static final double UNITS = 100;
+
+    /**
+     * Train a policy from self-play.  ARGS are GAMES DEPTH FILE: play
+     * GAMES games, searching DEPTH plies, and write the policy to FILE.
+     */
+    public static void main(String... args) {
+        try {
+            PolicyTrainer trainer = new PolicyTrainer();
+            for (SelfPlay.Game game
+                     : SelfPlay.trainingGames("PolicyTrainer", args)) {
+                trainer.add(game);
+            }
+            System.out.printf("%d positions%n", trainer.size());
+            trainer.train().write(new File(args[2]));
+        } catch (NumberFormatException excp) {
+            Utils.fatal("bad number: %s%n", excp.getMessage());
+        } catch (IOException excp) {
+            Utils.fatal("%s%n", excp.getMessage());
+        }
+    }
+
+    /**
+     * Add the positions of GAME whose moves were searched to my training
+     * data.  Positions decided by the king, and those with only one
+     * legal move, are skipped.
+     */
+    void add(SelfPlay.Game game) {
+        Board board = new Board();
+        for (int k = 0; k < game.length(); k += 1) {
+            if (!game.searched(k)) {
+                continue;
+            }
+            board.setPosition(game.position(k));
+            List<Move> moves = board.legalMoves(board.turn());
+            int chosen = moves.indexOf(game.move(k));
+            if (AI.isDecided(board) || moves.size() < 2 || chosen < 0) {
+                continue;
+            }
+            int[][] features = new int[moves.size()][];
+            for (int i = 0; i < features.length; i += 1) {
+                features[i] = new int[Policy.COMPACT_LENGTH];
+                Policy.features(board, moves.get(i), features[i]);
+            }
+            int s = board.turn() == WHITE ? 0 : 1;
+            _features.get(s).add(features);
+            _chosen.get(s).add(chosen);
+        }
+    }
+
+    /**
+     * Return the number of positions added.
+     */
+    int size() {
+        return _chosen.get(0).size() + _chosen.get(1).size();
+    }
+
+    /**
+     * Return the policy fitted to the positions added.
+     */
+    Policy train() {
+        int[][] weights = new int[2][];
+        Piece[] sides = { WHITE, BLACK };
+        for (int s = 0; s < 2; s += 1) {
+            int[][][] x = _features.get(s).toArray(new int[0][][]);
+            int[] y = _chosen.get(s).stream().mapToInt(i -> i).toArray();
+            weights[s] = train(sides[s], x, y);
+        }
+        return new Policy(weights[0], weights[1]);
+    }
+
+    /**
+     * Return SIDE's weights fitted to positions whose moves have compact
+     * features X (see Policy.features), where Y gives the move chosen in
+     * each.
+     */
+    private int[] train(Piece side, int[][][] x, int[] y) {
+        double[] theta = new double[Policy.NUM_FEATURES];
+        System.out.printf("%s: %d positions, loss %.4f, first %.1f%%",
+                          side, x.length, loss(x, y, theta),
+                          100 * accuracy(x, y, theta));
+        Adam adam = new Adam(theta.length, LEARNING_RATE);
+        for (int t = 1; t <= ITERATIONS; t += 1) {
+            adam.step(theta, gradient(x, y, theta));
+        }
+        System.out.printf(" -> loss %.4f, first %.1f%%%n", loss(x, y, theta),
+                          100 * accuracy(x, y, theta));
+        int[] result = new int[Policy.NUM_FEATURES];
+        for (int f = 0; f < result.length; f += 1) {
+            result[f] = (int) Math.round(theta[f] * UNITS);
+        }
+        return result;
+    }
+
+    /**
+     * Return the mean of -log(probability of the chosen move) under
+     * weights THETA, for features X and choices Y.
+     */
+    private static double loss(int[][][] x, int[] y, double[] theta) {
+        return IntStream.range(0, x.length).parallel()
+            .mapToDouble(i -> {
+                double[] p = probabilities(x[i], theta);
+                return -Math.log(Math.max(p[y[i]], 1e-300));
+            }).sum() / Math.max(1, x.length);
+    }
+
+    /**
+     * Return the fraction of positions in X whose chosen move (from Y)
+     * has the highest score under THETA.
+     */
+    private static double accuracy(int[][][] x, int[] y, double[] theta) {
+        return IntStream.range(0, x.length).parallel()
+            .filter(i -> {
+                double best = score(x[i][y[i]], theta);
+                for (int j = 0; j < x[i].length; j += 1) {
+                    if (j != y[i] && score(x[i][j], theta) >= best) {
+                        return false;
+                    }
+                }
+                return true;
+            }).count() / (double) Math.max(1, x.length);
+    }
+
+    /**
+     * Return the gradient of loss(X, Y, THETA) with respect to THETA.
+     */
+    private static double[] gradient(int[][][] x, int[] y, double[] theta) {
+        double[] g = IntStream.range(0, x.length).parallel()
+            .collect(() -> new double[theta.length],
+                     (acc, i) -> {
+                         double[] p = probabilities(x[i], theta);
+                         for (int j = 0; j < p.length; j += 1) {
+                             add(acc, x[i][j], p[j] - (j == y[i] ? 1 : 0));
+                         }
+                     },
+                     (a, b) -> {
+                         for (int f = 0; f < a.length; f += 1) {
+                             a[f] += b[f];
+                         }
+                     });
+        for (int f = 0; f < g.length; f += 1) {
+            g[f] /= Math.max(1, x.length);
+        }
+        return g;
+    }
+
+    /**
+     * Return the softmax probabilities under THETA of moves with compact
+     * features MOVES.
+     */
+    private static double[] probabilities(int[][] moves, double[] theta) {
+        double[] p = new double[moves.length];
+        double max = Double.NEGATIVE_INFINITY, sum = 0;
+        for (int j = 0; j < p.length; j += 1) {
+            p[j] = score(moves[j], theta);
+            max = Math.max(max, p[j]);
+        }
+        for (int j = 0; j < p.length; j += 1) {
+            p[j] = Math.exp(p[j] - max);
+            sum += p[j];
+        }
+        for (int j = 0; j < p.length; j += 1) {
+            p[j] /= sum;
+        }
+        return p;
+    }
+
+    /**
+     * Return the score under THETA of a move with compact features
+     * FEATURES.
+     */
+    private static double score(int[] features, double[] theta) {
+        double sum = theta[Policy.FROM + features[0]]
+            + theta[Policy.TO + features[1]];
+        for (int k = 2; k < features.length; k += 1) {
+            sum += theta[Policy.KING_MOVE + k - 2] * features[k];
+        }
+        return sum;
+    }
+
+    /**
+     * Add SCALE times the full feature vector of the move with compact
+     * features FEATURES to ACC.
+     */
+    private static void add(double[] acc, int[] features, double scale) {
+        acc[Policy.FROM + features[0]] += scale;
+        acc[Policy.TO + features[1]] += scale;
+        for (int k = 2; k < features.length; k += 1) {
+            acc[Policy.KING_MOVE + k - 2] += scale * features[k];
+        }
+    }
+
+    /**
+     * Compact features of the legal moves in each training position, for
+     * White and Black.
+     */
+    private final List<List<int[][]>> _features =
+        List.of(new ArrayList<>(), new ArrayList<>());
+    /**
+     * Index of the move chosen in each training position, for White and
+     * Black.
+     */
+    private final List<List<Integer>> _chosen =
+        List.of(new ArrayList<>(), new ArrayList<>());
+}
@@ -0,0 +1,212 @@
+package tablut;
+
+import java.util.Arrays;
+
+import static tablut.Piece.*;
+import static tablut.Square.NUM_SQUARES;
+import static tablut.Square.sq;
+import static tablut.Utils.error;
+
+/**
+ * A batch of positions laid out for evaluation by BatchEvaluator.  Each
+ * position is kept as bit masks of its white pieces, black pieces, and
+ * king, stored struct-of-arrays: one array for each mask, indexed by
+ * position.  A mask of the 81 squares takes two longs: bit I of the low
+ * word is square I for squares 0 to 62 (rows 1 to 7), and bit I of the
+ * high word is square 63 + I (rows 8 and 9), so that no row is split
+ * between the words.
+ *
+ * Positions arrive in a compact binary form of POSITION_BYTES bytes: two
+ * bits per square, in order of square index starting with the low bits of
+ * the first byte, giving the ordinal of its Piece, followed by one bit
+ * that is 1 iff White is to move.
+ *
+ * @author Shreyansh Loharuka
+ */
+class PositionBatch {
+
+    /**
+     * Number of bytes in the compact form of a position.
+     */
+    static final int POSITION_BYTES = 21;
+    /**
+     * Number of squares in the low word of a mask.
+     */
+    static final int LOW_SQUARES = 63;
+
+    /**
+     * An empty batch with room for CAPACITY positions (it grows as
+     * needed).
+     */
+    PositionBatch(int capacity) {
+        capacity = Math.max(1, capacity);
+        _whiteLow = new long[capacity];
+        _whiteHigh = new long[capacity];
+        _blackLow = new long[capacity];
+        _blackHigh = new long[capacity];
+        _kingLow = new long[capacity];
+        _kingHigh = new long[capacity];
+        _whiteToMove = new long[capacity];
+    }
+
+    /**
+     * The batch of the N positions in compact form in DATA.
+     */
+    PositionBatch(byte[] data, int n) {
+        this(n);
+        for (int k = 0; k < n; k += 1) {
+            add(data, k * POSITION_BYTES);
+        }
+    }
+
+    /**
+     * Add the position in compact form at DATA[OFFSET...] to the batch.
+     * The position must have at most one king.
+     */
+    void add(byte[] data, int offset) {
+        int k = reserve();
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            int code = (data[offset + i / 4] >> (2 * (i % 4))) & 3;
+            if (code == EMPTY.ordinal()) {
+                continue;
+            }
+            long[] low = code == WHITE.ordinal() ? _whiteLow
+                : code == BLACK.ordinal() ? _blackLow : _kingLow;
+            long[] high = code == WHITE.ordinal() ? _whiteHigh
+                : code == BLACK.ordinal() ? _blackHigh : _kingHigh;
+            if (i < LOW_SQUARES) {
+                low[k] |= 1L << i;
+            } else {
+                high[k] |= 1L << (i - LOW_SQUARES);
+            }
+        }
+        if (Long.bitCount(_kingLow[k]) + Long.bitCount(_kingHigh[k]) > 1) {
+            throw error("position has more than one king");
+        }
+        int turn = (data[offset + NUM_SQUARES / 4] >> (2 * (NUM_SQUARES % 4)))
+            & 1;
+        _whiteToMove[k] = turn == 1 ? -1L : 0L;
+        _size += 1;
+    }
+
+    /**
+     * Add the position on BOARD to the batch.
+     */
+    void add(Board board) {
+        byte[] data = new byte[POSITION_BYTES];
+        pack(board, data, 0);
+        add(data, 0);
+    }
+
+    /**
+     * Store the compact form of the position on BOARD in
+     * DATA[OFFSET...].
+     */
+    static void pack(Board board, byte[] data, int offset) {
+        Arrays.fill(data, offset, offset + POSITION_BYTES, (byte) 0);
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            data[offset + i / 4] |= board.get(sq(i)).ordinal() << (2 * (i % 4));
+        }
+        if (board.turn() == WHITE) {
+            data[offset + NUM_SQUARES / 4] |= 1 << (2 * (NUM_SQUARES % 4));
+        }
+    }
+
+    /**
+     * Return the number of positions in the batch.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Return the low words of the masks of white pieces other than the
+     * king, indexed by position.
+     */
+    long[] whiteLow() {
+        return _whiteLow;
+    }
+
+    /**
+     * Return the high words of the masks of white pieces other than the
+     * king.
+     */
+    long[] whiteHigh() {
+        return _whiteHigh;
+    }
+
+    /**
+     * Return the low words of the masks of black pieces.
+     */
+    long[] blackLow() {
+        return _blackLow;
+    }
+
+    /**
+     * Return the high words of the masks of black pieces.
+     */
+    long[] blackHigh() {
+        return _blackHigh;
+    }
+
+    /**
+     * Return the low words of the masks of the king.
+     */
+    long[] kingLow() {
+        return _kingLow;
+    }
+
+    /**
+     * Return the high words of the masks of the king.
+     */
+    long[] kingHigh() {
+        return _kingHigh;
+    }
+
+    /**
+     * Return, for each position, all ones if White is to move and
+     * otherwise 0.
+     */
+    long[] whiteToMove() {
+        return _whiteToMove;
+    }
+
+    /**
+     * Return the index of a new, empty position, growing the arrays if
+     * necessary.
+     */
+    private int reserve() {
+        if (_size == _whiteLow.length) {
+            int capacity = 2 * _size;
+            _whiteLow = Arrays.copyOf(_whiteLow, capacity);
+            _whiteHigh = Arrays.copyOf(_whiteHigh, capacity);
+            _blackLow = Arrays.copyOf(_blackLow, capacity);
+            _blackHigh = Arrays.copyOf(_blackHigh, capacity);
+            _kingLow = Arrays.copyOf(_kingLow, capacity);
+            _kingHigh = Arrays.copyOf(_kingHigh, capacity);
+            _whiteToMove = Arrays.copyOf(_whiteToMove, capacity);
+        }
+        return _size;
+    }
+
+    /**
+     * Masks of the white pieces (not the king), low and high words.
+     */
+    private long[] _whiteLow, _whiteHigh;
+    /**
+     * Masks of the black pieces, low and high words.
+     */
+    private long[] _blackLow, _blackHigh;
+    /**
+     * Masks of the king, low and high words.
+     */
+    private long[] _kingLow, _kingHigh;
+    /**
+     * All ones for positions with White to move, and otherwise 0.
+     */
+    private long[] _whiteToMove;
+    /**
+     * Number of positions.
+     */
+    private int _size;
+}
@@ -0,0 +1,128 @@
+package tablut;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fixed set of positions, from the opening through the endgame, taken
+ * from games between AIs searching to depth 2 after a few random moves.
+ * They give warm-ups and benchmarks a repeatable, realistic workload.
+ *
+ * @author Shreyansh Loharuka
+ */
+final class Positions {
+
+    /**
+     * The positions, in the format of Board.encodedBoard.
+     */
+    private static final String[] ENCODED = {
+        "B---BBB------WB--------W----B---W---BBBW-"
+            + "K-WBB---W-W-------W----B--B--------BBB--B",
+        "W---BBB------------------------WBW--BBBW-"
+            + "K-WBB---W-W-------W----B-----------BBB--B",
+        "B-----B--B---------------------WBW---BBW-"
+            + "K-WBB---W-W------B-----B---W--------B--BB",
+        "B---BBB-------B--------W------B-WW--BB-W-"
+            + "K-WBB---W-W--B----------B--B-------BBB---",
+        "W---BBB-------B---B----W------BW-W---B-W-"
+            + "K-WBB---WB---------W------B--------B-B--B",
+        "BB---BB-------B----B---W-------W---WBBBW-"
+            + "KWWBBB---W---B----W--------B-----B--BB---",
+        "WB---BB-------B----B---W----B--W---WB---B"
+            + "KWWBBB--W----B----W--------B--------B--B-",
+        "BB---BB-------B-------WW----B-W-----BBB-B"
+            + "KWWBB----W---B------W------B-------BBB---",
+        "WB---BB-------B---B---WW----B-W--W----B-B"
+            + "K-WBBB---B---------W-----------B---BB----",
+        "B---BB--B-----B----W--------B---W-B--BBWW"
+            + "K-WBBB--W-W--B----W--------B-----B--BB---",
+        "W-B--B--B-B---W----B-----------W-----BBW-"
+            + "K-WBBB--W-W--B----W--------B-----B--B--B-",
+        "B---BBB---B---B---B-----W-------W----BBWW"
+            + "K-W-BB--W-W-BB----W--------B-------BBB---",
+        "W-B--BB----B--BB-------W-------W-W---BBW-"
+            + "K--WBB--W-WB-B----W--------B-------BB--B-",
+        "B---BB--------B--------W----B---WB--BBB-W"
+            + "K-WBBB---W---B-----W--W-BW--------B-BB---",
+        "W---B-B--B----B---------W---B---W----BB-W"
+            + "-K-BBB---W-W-------W--W-BW--------B-BB---",
+        "B-----B--B----B--------BW---B-W---W--BB--"
+            + "-K-WBB--W--W-------W----B---B--W-B---B---",
+        "B---BBB-B----WB--------W----B---W--B-BBW-"
+            + "K-W-BB--W-W--B----W--------B-------BBB---",
+        "WB---B--B-----B---B----W----B--W-W---BBW-"
+            + "K-WB-B--W-W--B----W--------B-------BB---B",
+        "B---BBB-------B----------------W-W--BBBW-"
+            + "K-WBBB---W---B----W---------W--B---BBB---",
+        "W--B--B------------------------WBW--BBBW-"
+            + "K-WBBB--W-W-------W------------B-B--BB---",
+        "B----BB-------B--------W----B--W----BB-W-"
+            + "KWWBBB--W-W--B----W-------BB-------BBB---",
+        "W----BB------------------------W-W---B---"
+            + "K-WBB--WW-W--B----W----B--BB-------BBB---",
+        "B---BBBW---B--B--------W----B--W-W--BB-W-"
+            + "KW-BBB---W---B----W--------B----B---B--B-",
+        "W-B--B--BB-B--B--W-----W----B--W-W---B-W-"
+            + "K-WBB-----W--B----W----B---B----B-----BB-",
+        "B----BB-------B--------W--B--B-W----BBB--"
+            + "KWW-BB--W---WB----W--------B-------BBB---",
+        "W----BB-------B--------W-----B-W-W--B---B"
+            + "K-WBBB--W-W--B----W--------B----B---B----",
+        "B---BB-B------B--------W----B---W-B--B--W"
+            + "K-WBBB---W---B-----WW----W-B-----B-BBB---",
+        "B---BBB---------B------W----B--W---WBBBW-"
+            + "KWW-BB---W-----W-----B-----B-------BBB--B",
+        "W---BB-B--------B------W----B--W-W--BB--B"
+            + "K-W-BB--W-W-------WB----------------BB--B",
+        "B---BB--------B-------W-B---B---W---BBBW-"
+            + "KWWBBB-----W-B----W-------WB-------BBB---",
+        "W---BB--------B-------W---------B-B--BBW-"
+            + "KB-BBB--W--W-B----W--W------B----B--BB---",
+        "B----B------------B-----W-------B---BBBW-"
+            + "KBBB-------W--B---WW--------B----B--BB---",
+        "B---BBB-------B--------W-W--B---W---BBBW-"
+            + "KW-BBB-W-B---B----W----B--W--------BB----",
+        "W-B-B-B--------W------WB-W------B---BBBW-"
+            + "KB--BB-W-B---B----W----B--W--------BB----",
+        "BB--BBB--------B--B----W-------W-W---BBW-"
+            + "K-WBBB---W---B----W-------WB-------BBB---",
+        "B---BBB---B---B---------W---------W-BBBWW"
+            + "KW-BBB---W-W-B---B-B-------B--------B----",
+        "W----B---BB-----------W-----B-W-K-W-B-B-W"
+            + "-WB-BB---W-W-B---B-B-------B--------B----",
+        "B----BB---B---W-------W-K---BBW----WB---W"
+            + "---BBB--BBW--B--------------BW------B----",
+        "B---BBB---B---B--------W--------K-W-BBBWW"
+            + "-W-BBB---W--B-----W--------BBW-----BB----",
+        "BB---BB-------B--------W-------W----BBB--"
+            + "KWWBBB--W--W-B----W------------B---BBB---",
+        "WB---BB-------B--------W-------W-W--BB--B"
+            + "KB--BB--W-W--B----W--------B-------B-----"
+    };
+
+    /**
+     * Not instantiable.
+     */
+    private Positions() {
+    }
+
+    /**
+     * Return the number of positions.
+     */
+    static int size() {
+        return ENCODED.length;
+    }
+
+    /**
+     * Return new Boards holding each of the positions, in a fixed order.
+     */
+    static List<Board> all() {
+        List<Board> result = new ArrayList<>();
+        for (String encoded : ENCODED) {
+            Board board = new Board();
+            board.setPosition(encoded);
+            result.add(board);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,270 @@
+package tablut;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static tablut.Piece.*;
+import static tablut.Square.NUM_SQUARES;
+import static tablut.Square.sq;
+
+/**
+ * A proof-number search that tries to prove that one side wins from a
+ * position: that White escapes, or that Black captures the king.  The
+ * tree is grown best first, always expanding a most-proving node, so
+ * that narrow forcing lines are followed far deeper than a full-width
+ * search would reach.  Moves are made on a real Board, so that captures,
+ * repetitions, and the move limit are judged along each line exactly as
+ * in play.  The tree is kept in parallel arrays of fixed size, which
+ * bounds both the nodes and the memory used.
+ *
+ * @author Shreyansh Loharuka
+ */
+class ProofSolver {
+
+    /**
+     * Results of solve.
+     */
+    static final int UNKNOWN = 0, PROVEN = 1, DISPROVEN = 2;
+
+    /**
+     * Default maximum number of nodes.
+     */
+    static final int DEFAULT_NODES = 200000;
+
+    /**
+     * Proof or disproof number of a node that cannot be proven or
+     * disproven.
+     */
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    /**
+     * A solver whose tree holds at most CAPACITY nodes.
+     */
+    ProofSolver(int capacity) {
+        capacity = Math.max(1, capacity);
+        _parent = new int[capacity];
+        _firstChild = new int[capacity];
+        _numChildren = new int[capacity];
+        _move = new int[capacity];
+        _proof = new int[capacity];
+        _disproof = new int[capacity];
+    }
+
+    /**
+     * Try to prove that SIDE wins from the position on BOARD, which is
+     * not modified.  Returns PROVEN or DISPROVEN if that is settled, and
+     * otherwise UNKNOWN, which happens when the tree is full, when STOP
+     * becomes true, or when the result turns on positions in which a side
+     * has no moves.
+     */
+    int solve(Board board, Piece side, BooleanSupplier stop) {
+        Board b = new SearchBoard(board);
+        _attacker = side;
+        _size = 1;
+        _parent[0] = -1;
+        _move[0] = -1;
+        _rootTurn = b.turn();
+        evaluate(0, b);
+        while (_proof[0] != 0 && _disproof[0] != 0
+               && (_proof[0] != INFINITY || _disproof[0] != INFINITY)
+               && !stop.getAsBoolean()) {
+            int node = 0, depth = 0;
+            while (_numChildren[node] > 0) {
+                node = select(node, b.turn() == _attacker);
+                b.makeMove(move(node));
+                depth += 1;
+            }
+            boolean expanded = expand(node, b);
+            for (int k = 0; k < depth; k += 1) {
+                b.undo();
+            }
+            if (!expanded) {
+                break;
+            }
+            update(node, depth);
+        }
+        return _proof[0] == 0 ? PROVEN
+            : _disproof[0] == 0 ? DISPROVEN : UNKNOWN;
+    }
+
+    /**
+     * Return a winning move for the side to move in the position last
+     * solved, if the result showed that it wins, and otherwise null.
+     */
+    Move winningMove() {
+        boolean attacking = _rootTurn == _attacker;
+        if (_numChildren[0] <= 0
+            || (attacking ? _proof[0] : _disproof[0]) != 0) {
+            return null;
+        }
+        for (int k = 0; k < _numChildren[0]; k += 1) {
+            int child = _firstChild[0] + k;
+            if ((attacking ? _proof[child] : _disproof[child]) == 0) {
+                return move(child);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the number of nodes in the tree from the last solve.
+     */
+    int nodes() {
+        return _size;
+    }
+
+    /**
+     * Return the child of NODE to follow toward a most-proving node:
+     * the one with the least proof number if the attacker is to move
+     * (ATTACKING) and otherwise the one with the least disproof number.
+     * If that number is INFINITY at NODE, because every child leads to a
+     * position that cannot be settled that way, follow instead the
+     * unsettled child with the least number of the other kind.
+     */
+    private int select(int node, boolean attacking) {
+        int[] numbers = attacking ? _proof : _disproof;
+        boolean summed = numbers[node] == INFINITY;
+        if (summed) {
+            numbers = attacking ? _disproof : _proof;
+        }
+        int first = _firstChild[node], best = -1;
+        for (int child = first; child < first + _numChildren[node];
+             child += 1) {
+            if ((best < 0 || numbers[child] < numbers[best])
+                && !(summed && numbers[child] == 0)) {
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Add the children of NODE, whose position is BOARD, and give each
+     * its initial proof and disproof numbers.  As on a Board, a side with
+     * no legal moves has not lost by that alone, so such a node can be
+     * neither proven nor disproven.  Return false if there is no room.
+     */
+    private boolean expand(int node, Board board) {
+        List<Move> moves = board.legalMoves(board.turn());
+        if (_size + moves.size() > _parent.length) {
+            return false;
+        }
+        _firstChild[node] = _size;
+        _numChildren[node] = moves.size();
+        for (Move move : moves) {
+            int child = _size;
+            _parent[child] = node;
+            _move[child] = move.from().index() * NUM_SQUARES
+                + move.to().index();
+            _size += 1;
+            board.makeMove(move);
+            evaluate(child, board);
+            board.undo();
+        }
+        if (moves.isEmpty()) {
+            _proof[node] = _disproof[node] = INFINITY;
+        }
+        return true;
+    }
+
+    /**
+     * Set the initial proof and disproof numbers of NODE, whose position
+     * is BOARD, marking it unexpanded.  Finished games are settled, as
+     * are positions in which the move limit ends the game with the next
+     * move (a loss for the side to move) and those in which White is to
+     * move and the king has a clear line to the edge.
+     */
+    private void evaluate(int node, Board board) {
+        _numChildren[node] = -1;
+        if (board.winner() != null) {
+            setResult(node, board.winner() == _attacker);
+        } else if (board.atMoveLimit()) {
+            setResult(node, board.turn() != _attacker);
+        } else if (board.turn() == WHITE
+                   && KingMobility.openLines(board) != 0) {
+            setResult(node, _attacker == WHITE);
+        } else {
+            _proof[node] = _disproof[node] = 1;
+        }
+    }
+
+    /**
+     * Mark NODE as proven if WON, and otherwise as disproven.
+     */
+    private void setResult(int node, boolean won) {
+        _numChildren[node] = Math.max(0, _numChildren[node]);
+        _proof[node] = won ? 0 : INFINITY;
+        _disproof[node] = won ? INFINITY : 0;
+    }
+
+    /**
+     * Recompute the proof and disproof numbers of NODE, DEPTH plies below
+     * the root, and then those of its ancestors, stopping early at one
+     * whose numbers do not change.
+     */
+    private void update(int node, int depth) {
+        for (; node >= 0; node = _parent[node], depth -= 1) {
+            if (_numChildren[node] <= 0) {
+                continue;
+            }
+            Piece turn = depth % 2 == 0 ? _rootTurn : _rootTurn.opponent();
+            boolean attacking = turn == _attacker;
+            int[] least = attacking ? _proof : _disproof,
+                summed = attacking ? _disproof : _proof;
+            int min = INFINITY;
+            long sum = 0;
+            for (int k = 0; k < _numChildren[node]; k += 1) {
+                int child = _firstChild[node] + k;
+                min = Math.min(min, least[child]);
+                sum += summed[child];
+            }
+            int total = (int) Math.min(INFINITY, sum);
+            if (least[node] == min && summed[node] == total) {
+                return;
+            }
+            least[node] = min;
+            summed[node] = total;
+        }
+    }
+
+    /**
+     * Return the move that leads to NODE.
+     */
+    private Move move(int node) {
+        int code = _move[node];
+        return Move.mv(sq(code / NUM_SQUARES), sq(code % NUM_SQUARES));
+    }
+
+    /**
+     * Parent of each node, or -1 for the root.
+     */
+    private final int[] _parent;
+    /**
+     * Number of the first child of each node.
+     */
+    private final int[] _firstChild;
+    /**
+     * Number of children of each node, or -1 if not yet expanded.
+     */
+    private final int[] _numChildren;
+    /**
+     * The move leading to each node, as FROM * NUM_SQUARES + TO.
+     */
+    private final int[] _move;
+    /**
+     * Proof and disproof numbers of each node.
+     */
+    private final int[] _proof, _disproof;
+    /**
+     * Number of nodes in use.
+     */
+    private int _size;
+    /**
+     * The side whose win is being proven.
+     */
+    private Piece _attacker;
+    /**
+     * Side to move at the root.
+     */
+    private Piece _rootTurn;
+}
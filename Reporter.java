@@ -24,5 +24,10 @@ interface Reporter {
      */
     void reportMove(Move move);
 
+    /**
+     * Display the results of ANALYSIS.
+     */
+    void reportAnalysis(Analysis analysis);
+
 }
 
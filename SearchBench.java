@@ -0,0 +1,54 @@
+package tablut;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Searches each of the built-in Positions to a fixed depth and reports,
+ * for each, the nodes visited, the time taken, and the move and value
+ * found, followed by the total nodes and the nodes searched per second.
+ * Each position is searched by a new AI, with empty tables (Main ignores
+ * --cache for a benchmark), under a Controller whose random numbers have
+ * a fixed seed, so the node counts and moves depend only on the build and
+ * options: they are a signature of the search to compare between builds,
+ * and the rate a measure of its speed to compare between machines.
+ *
+ * @author Shreyansh Loharuka
+ */
+class SearchBench {
+
+    /**
+     * Seed for the Controller's random numbers.
+     */
+    static final long SEED = 61;
+
+    /**
+     * Search each built-in position to DEPTH plies with an AI created
+     * from TEMPLATE under CONTROLLER, and print the results on OUT.
+     */
+    static void run(AI template, Controller controller, int depth,
+                    PrintStream out) {
+        controller.setSeed(SEED);
+        List<Board> positions = Positions.all();
+        long totalNodes = 0, totalNanos = 0;
+        out.printf("%4s %12s %10s %-8s %s%n",
+                   "#", "nodes", "ms", "move", "value");
+        for (int k = 0; k < positions.size(); k += 1) {
+            Board position = positions.get(k);
+            AI ai = (AI) template.create(position.turn(), controller);
+            ai.setDepth(depth);
+            long start = System.nanoTime();
+            Move move = ai.searchMove(new SearchBoard(position));
+            long nanos = System.nanoTime() - start;
+            out.printf("%4d %12d %10.1f %-8s %d%n", k + 1, ai.nodes(),
+                       nanos * 1e-6, move, ai.lastValue());
+            totalNodes += ai.nodes();
+            totalNanos += nanos;
+        }
+        double seconds = totalNanos * 1e-9;
+        out.printf("bench %d: %d positions, %d nodes%n", depth,
+                   positions.size(), totalNodes);
+        out.printf("%.3f s, %.0f nodes/s%n", seconds,
+                   totalNodes / Math.max(seconds, 1e-9));
+    }
+}
@@ -0,0 +1,138 @@
+package tablut;
+
+import java.util.Arrays;
+
+import static tablut.Square.sq;
+
+/**
+ * A Board for searches, which makes and undoes moves without allocating.
+ * Instead of a snapshot of the whole board after each move, it keeps, in
+ * arrays preallocated for INITIAL_PLIES plies (and grown if a line goes
+ * deeper), the squares each move changed with their old contents, and
+ * the hash of each position for the repetition rule.  It starts from a
+ * copy of the position on a game Board, as new Board(BOARD) would, and
+ * can undo only the moves made on it.
+ *
+ * @author Shreyansh Loharuka
+ */
+class SearchBoard extends Board {
+
+    /**
+     * Number of plies for which space is allocated initially.
+     */
+    private static final int INITIAL_PLIES = 256;
+    /**
+     * Most squares one move can change: the move itself and four
+     * captures.
+     */
+    private static final int MAX_CHANGES = 6;
+
+    /**
+     * A search board starting at the position on MODEL, with MODEL's
+     * positions so far counting for the repetition rule.
+     */
+    SearchBoard(Board model) {
+        this(model, model.history());
+    }
+
+    /**
+     * A search board starting at the position on MODEL, with the
+     * positions whose hashes are in HISTORY, oldest first, counting for
+     * the repetition rule.
+     */
+    SearchBoard(Board model, long[] history) {
+        super(model, false);
+        _history = Arrays.copyOf(history, history.length + INITIAL_PLIES);
+        _historySize = history.length;
+        _marks = new int[INITIAL_PLIES + 1];
+        _squares = new int[INITIAL_PLIES * MAX_CHANGES];
+        _pieces = new Piece[INITIAL_PLIES * MAX_CHANGES];
+    }
+
+    @Override
+    void revPut(Piece p, Square s) {
+        if (_top == _squares.length) {
+            _squares = Arrays.copyOf(_squares, 2 * _top);
+            _pieces = Arrays.copyOf(_pieces, 2 * _top);
+        }
+        _squares[_top] = s.index();
+        _pieces[_top] = get(s);
+        _top += 1;
+        put(p, s);
+    }
+
+    @Override
+    boolean isRepeated() {
+        long key = hash();
+        for (int i = 0; i < _historySize; i += 1) {
+            if (_history[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    void recordPosition() {
+        if (_historySize == _history.length) {
+            _history = Arrays.copyOf(_history, 2 * _historySize);
+        }
+        if (_ply + 1 == _marks.length) {
+            _marks = Arrays.copyOf(_marks, 2 * _marks.length);
+        }
+        _history[_historySize] = hash();
+        _historySize += 1;
+        _ply += 1;
+        _marks[_ply] = _top;
+    }
+
+    @Override
+    long[] history() {
+        return Arrays.copyOf(_history, _historySize);
+    }
+
+    @Override
+    boolean undoPosition() {
+        if (_ply == 0) {
+            return false;
+        }
+        int start = _marks[_ply - 1];
+        while (_top > start) {
+            _top -= 1;
+            put(_pieces[_top], sq(_squares[_top]));
+        }
+        _ply -= 1;
+        _historySize -= 1;
+        return true;
+    }
+
+    /**
+     * Hashes of the positions so far, oldest first, for the repetition
+     * rule.
+     */
+    private long[] _history;
+    /**
+     * Number of valid entries in _history.
+     */
+    private int _historySize;
+    /**
+     * Number of moves made on me and not undone.
+     */
+    private int _ply;
+    /**
+     * _marks[k] is the number of changes recorded after my first K moves.
+     */
+    private int[] _marks;
+    /**
+     * Indices of the squares changed by my moves, in order.
+     */
+    private int[] _squares;
+    /**
+     * The previous contents of those squares.
+     */
+    private Piece[] _pieces;
+    /**
+     * Number of changes recorded.
+     */
+    private int _top;
+}
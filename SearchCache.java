@@ -0,0 +1,149 @@
+package tablut;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static tablut.Piece.*;
+
+/**
+ * Transposition tables and evaluation caches for both sides kept in a
+ * memory-mapped file, so that they survive from one run to the next.
+ * Pages of the file are read only when a search touches them, and a
+ * background thread writes changed pages back every FLUSH_MILLIS
+ * milliseconds and at exit.  The file starts with a header (magic
+ * number, version, table sizes, and a fingerprint of the evaluation
+ * function).  A file whose header does not match is rejected: its
+ * contents are discarded and it is reinitialized to empty tables, since
+ * its scores would be wrong.
+ *
+ * @author Shreyansh Loharuka
+ */
+class SearchCache {
+
+    /**
+     * Identifies cache files.
+     */
+    static final int MAGIC = 0x54435348;
+    /**
+     * Version of the file layout.
+     */
+    static final int VERSION = 1;
+    /**
+     * Size in bytes of the file header (magic, version, log2 of the
+     * transposition-table and evaluation-cache sizes, fingerprint).
+     */
+    static final int HEADER_SIZE = 24;
+    /**
+     * Log2 of the number of slots in each transposition table.
+     */
+    static final int TABLE_LOG_SIZE = 20;
+    /**
+     * Log2 of the number of slots in each evaluation cache.
+     */
+    static final int EVAL_LOG_SIZE = 20;
+    /**
+     * Milliseconds between background flushes.
+     */
+    static final long FLUSH_MILLIS = 10000;
+
+    /**
+     * The cache in FILE, for an evaluation function identified by
+     * FINGERPRINT, creating or reinitializing FILE if it does not exist
+     * or its header does not match.
+     */
+    SearchCache(File file, long fingerprint) throws IOException {
+        long tableSize = (long) TranspositionTable.ENTRY_SIZE
+            << TABLE_LOG_SIZE;
+        long evalSize = (long) EvalCache.ENTRY_SIZE << EVAL_LOG_SIZE;
+        long length = HEADER_SIZE + 2 * (tableSize + evalSize);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() != length || raf.readInt() != MAGIC
+                || raf.readInt() != VERSION
+                || raf.readInt() != TABLE_LOG_SIZE
+                || raf.readInt() != EVAL_LOG_SIZE
+                || raf.readLong() != fingerprint) {
+                raf.setLength(0);
+                raf.setLength(length);
+                raf.seek(0);
+                raf.writeInt(MAGIC);
+                raf.writeInt(VERSION);
+                raf.writeInt(TABLE_LOG_SIZE);
+                raf.writeInt(EVAL_LOG_SIZE);
+                raf.writeLong(fingerprint);
+            }
+            FileChannel channel = raf.getChannel();
+            FileChannel.MapMode mode = FileChannel.MapMode.READ_WRITE;
+            long offset = HEADER_SIZE;
+            for (int k = 0; k < 2; k += 1) {
+                _tableBuffers[k] = channel.map(mode, offset, tableSize);
+                _tables[k] = new TranspositionTable(_tableBuffers[k]);
+                offset += tableSize;
+                _evalBuffers[k] = channel.map(mode, offset, evalSize);
+                _evals[k] = new EvalCache(_evalBuffers[k]);
+                offset += evalSize;
+            }
+        }
+        Thread flusher = new Thread(this::flushPeriodically, "cache flush");
+        flusher.setDaemon(true);
+        flusher.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+    }
+
+    /**
+     * Return the transposition table for SIDE.
+     */
+    TranspositionTable table(Piece side) {
+        return _tables[side == WHITE ? 0 : 1];
+    }
+
+    /**
+     * Return the evaluation cache for SIDE.
+     */
+    EvalCache evals(Piece side) {
+        return _evals[side == WHITE ? 0 : 1];
+    }
+
+    /**
+     * Write all changes to the file.
+     */
+    synchronized void flush() {
+        for (int k = 0; k < 2; k += 1) {
+            _tableBuffers[k].force();
+            _evalBuffers[k].force();
+        }
+    }
+
+    /**
+     * Flush every FLUSH_MILLIS milliseconds, forever.
+     */
+    private void flushPeriodically() {
+        while (true) {
+            try {
+                Thread.sleep(FLUSH_MILLIS);
+            } catch (InterruptedException excp) {
+                return;
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Storage of the transposition tables for White and Black.
+     */
+    private final MappedByteBuffer[] _tableBuffers = new MappedByteBuffer[2];
+    /**
+     * Storage of the evaluation caches for White and Black.
+     */
+    private final MappedByteBuffer[] _evalBuffers = new MappedByteBuffer[2];
+    /**
+     * Transposition tables for White and Black.
+     */
+    private final TranspositionTable[] _tables = new TranspositionTable[2];
+    /**
+     * Evaluation caches for White and Black.
+     */
+    private final EvalCache[] _evals = new EvalCache[2];
+}
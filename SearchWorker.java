@@ -0,0 +1,187 @@
+package tablut;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static tablut.Piece.*;
+
+/**
+ * A process that searches root moves for a DistributedSearch, using the
+ * usual AI.  It keeps one AI for each side, so that their transposition
+ * tables carry over from one job to the next.  Each job is searched on a
+ * separate thread, so that the worker can be told to stop it.  The
+ * worker exits when its connection closes or it is told to quit.  See
+ * DistributedSearch for the protocol.
+ *
+ * @author Shreyansh Loharuka
+ */
+class SearchWorker {
+
+    /**
+     * Connect to the coordinator at the host and port given by ARGS:
+     * HOST PORT [--weights=FILE] [--nnue=FILE] [--policy=FILE], and
+     * search for it, evaluating with the given weights or network and
+     * ordering moves with the given policy.
+     */
+    public static void main(String... args) {
+        if (args.length < 2) {
+            Utils.fatal("Usage: java tablut.SearchWorker HOST PORT"
+                        + " [--weights=FILE] [--nnue=FILE]"
+                        + " [--policy=FILE]%n");
+        }
+        AI template = new AI();
+        try {
+            for (int k = 2; k < args.length; k += 1) {
+                String file = args[k].substring(args[k].indexOf('=') + 1);
+                if (args[k].startsWith("--weights=")) {
+                    template.setWeights(new Weights(new File(file)));
+                } else if (args[k].startsWith("--nnue=")) {
+                    template.setNetwork(new Network(new File(file)));
+                } else if (args[k].startsWith("--policy=")) {
+                    template.setPolicy(new Policy(new File(file)));
+                } else {
+                    Utils.fatal("unknown option: %s%n", args[k]);
+                }
+            }
+            try (Socket socket =
+                     new Socket(args[0], Integer.parseInt(args[1]))) {
+                new SearchWorker(template, socket).run();
+            }
+        } catch (NumberFormatException excp) {
+            Utils.fatal("bad port: %s%n", args[1]);
+        } catch (IOException excp) {
+            Utils.fatal("%s%n", excp.getMessage());
+        }
+        System.exit(0);
+    }
+
+    /**
+     * A worker connected by SOCKET, with AIs created from TEMPLATE.
+     */
+    SearchWorker(AI template, Socket socket) throws IOException {
+        _fingerprint = template.fingerprint();
+        _white = (AI) template.create(WHITE, null);
+        _black = (AI) template.create(BLACK, null);
+        _in = new BufferedReader(new InputStreamReader(
+            socket.getInputStream(), StandardCharsets.UTF_8));
+        _out = new PrintWriter(socket.getOutputStream(), true,
+                               StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Announce myself and handle commands until the connection closes or
+     * I am told to quit.
+     */
+    void run() throws IOException {
+        send("hello " + _fingerprint + " " + ProcessHandle.current().pid());
+        String line;
+        while ((line = _in.readLine()) != null) {
+            String[] words = line.trim().split("\\s+");
+            switch (words[0]) {
+            case "search":
+                start(words);
+                break;
+            case "stop":
+                _stopped = true;
+                _white.setStopSearch(true);
+                _black.setStopSearch(true);
+                break;
+            case "quit":
+                return;
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * Start the search requested by WORDS, the words of a search command,
+     * after any previous search has finished.
+     */
+    private void start(String[] words) {
+        finish();
+        String id = words.length > 1 ? words[1] : "-1";
+        try {
+            AI ai = words[2].equals(WHITE.toString()) ? _white : _black;
+            int depth = Integer.parseInt(words[3]),
+                alpha = Integer.parseInt(words[4]),
+                beta = Integer.parseInt(words[5]);
+            Move move = Move.mv(words[6]);
+            Board position = new Board();
+            position.setPosition(words[7]);
+            long[] history = new long[words.length - 8];
+            for (int i = 0; i < history.length; i += 1) {
+                history[i] = Long.parseUnsignedLong(words[i + 8], 16);
+            }
+            Board board = new SearchBoard(position, history);
+            if (move == null || !board.isLegal(move)) {
+                send("aborted " + id);
+                return;
+            }
+            ai.setStopSearch(false);
+            _search = new Thread(() -> {
+                int value = ai.rootScore(board, move, depth, alpha, beta);
+                if (_stopped) {
+                    send("aborted " + id);
+                } else {
+                    send("result " + id + " " + value);
+                }
+            }, "search");
+            _stopped = false;
+            _search.start();
+        } catch (NumberFormatException | IndexOutOfBoundsException excp) {
+            send("aborted " + id);
+        }
+    }
+
+    /**
+     * Wait for the current search, if any, to finish.
+     */
+    private void finish() {
+        if (_search != null) {
+            try {
+                _search.join();
+            } catch (InterruptedException excp) {
+                /* Ignore InterruptedException. */
+            }
+            _search = null;
+        }
+    }
+
+    /**
+     * Send LINE to the coordinator.
+     */
+    private synchronized void send(String line) {
+        _out.println(line);
+    }
+
+    /**
+     * Identifies my evaluation function (see AI.fingerprint).
+     */
+    private final long _fingerprint;
+    /**
+     * The AIs searching for White and Black.
+     */
+    private final AI _white, _black;
+    /**
+     * Commands from the coordinator.
+     */
+    private final BufferedReader _in;
+    /**
+     * Replies to the coordinator.
+     */
+    private final PrintWriter _out;
+    /**
+     * The thread running the current search, or null.
+     */
+    private Thread _search;
+    /**
+     * True iff the current search has been told to stop.
+     */
+    private volatile boolean _stopped;
+}
@@ -0,0 +1,189 @@
+package tablut;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static tablut.Piece.*;
+
+/**
+ * Games of the AI against itself, used to build opening books and other
+ * tables offline.  Each game is determined by its seed: occasional random
+ * moves early in the game, chosen using the seed, keep the games from
+ * all being the same.
+ *
+ * @author Shreyansh Loharuka
+ */
+class SelfPlay {
+
+    /**
+     * Plies at the start of each training game that may be random.
+     */
+    static final int RANDOM_PLIES = 12;
+    /**
+     * Probability that each of those plies is random.
+     */
+    static final double RANDOM_RATE = 0.5;
+    /**
+     * Plies after which a self-play game is abandoned.
+     */
+    static final int MAX_PLIES = 200;
+
+    /**
+     * Return the games requested of the trainer PROGRAM by its
+     * command-line arguments ARGS, GAMES DEPTH FILE: GAMES games in which
+     * the AI searches DEPTH plies, for training data to be written to
+     * FILE.  Exits with a usage message if ARGS are not of that form.
+     */
+    static List<Game> trainingGames(String program, String... args) {
+        if (args.length != 3) {
+            Utils.fatal("Usage: java tablut.%s GAMES DEPTH FILE%n", program);
+        }
+        int games = Integer.parseInt(args[0]);
+        int depth = Integer.parseInt(args[1]);
+        return new SelfPlay(depth).play(games, 0);
+    }
+
+    /**
+     * Training games in which the AI searches to DEPTH plies (0 for its
+     * usual depth), with RANDOM_PLIES, RANDOM_RATE, and MAX_PLIES.
+     */
+    SelfPlay(int depth) {
+        this(depth, RANDOM_PLIES, RANDOM_RATE, MAX_PLIES);
+    }
+
+    /**
+     * Games in which the AI searches to DEPTH plies (0 for its usual
+     * depth), each ply among the first RANDOMPLIES is random with
+     * probability RANDOMRATE, and games are abandoned as drawn after
+     * MAXPLIES plies.
+     */
+    SelfPlay(int depth, int randomPlies, double randomRate, int maxPlies) {
+        _depth = depth;
+        _randomPlies = randomPlies;
+        _randomRate = randomRate;
+        _maxPlies = maxPlies;
+    }
+
+    /**
+     * Return GAMES games played in parallel, using seeds SEED, SEED + 1,
+     * ....
+     */
+    List<Game> play(int games, long seed) {
+        return LongStream.range(seed, seed + games).parallel()
+            .mapToObj(this::play).collect(Collectors.toList());
+    }
+
+    /**
+     * Return the game played with seed SEED.
+     */
+    Game play(long seed) {
+        Random random = new Random(seed);
+        Board board = new Board();
+        AI white = new AI(WHITE, null), black = new AI(BLACK, null);
+        white.setDepth(_depth);
+        black.setDepth(_depth);
+        Game game = new Game();
+        while (board.winner() == null && game.length() < _maxPlies) {
+            List<Move> legal = board.legalMoves(board.turn());
+            if (legal.isEmpty()) {
+                game._winner = board.turn().opponent();
+                return game;
+            }
+            Move move;
+            boolean searched =
+                game.length() >= _randomPlies
+                || random.nextDouble() >= _randomRate;
+            if (searched) {
+                AI player = board.turn() == WHITE ? white : black;
+                move = player.searchMove(new SearchBoard(board));
+            } else {
+                move = legal.get(random.nextInt(legal.size()));
+            }
+            game._positions.add(board.encodedBoard());
+            game._moves.add(move);
+            game._searched.add(searched);
+            board.makeMove(move);
+        }
+        game._winner = board.winner();
+        return game;
+    }
+
+    /**
+     * The record of one game.
+     */
+    static class Game {
+
+        /**
+         * Return the number of moves made.
+         */
+        int length() {
+            return _moves.size();
+        }
+
+        /**
+         * Return the position before move K, as Board.encodedBoard.
+         */
+        String position(int k) {
+            return _positions.get(k);
+        }
+
+        /**
+         * Return move K.
+         */
+        Move move(int k) {
+            return _moves.get(k);
+        }
+
+        /**
+         * Return true iff move K was chosen by the AI rather than at
+         * random.
+         */
+        boolean searched(int k) {
+            return _searched.get(k);
+        }
+
+        /**
+         * Return the winner, or null if the game was abandoned.
+         */
+        Piece winner() {
+            return _winner;
+        }
+
+        /**
+         * Positions before each move.
+         */
+        private final List<String> _positions = new ArrayList<>();
+        /**
+         * The moves.
+         */
+        private final List<Move> _moves = new ArrayList<>();
+        /**
+         * Whether each move was searched.
+         */
+        private final List<Boolean> _searched = new ArrayList<>();
+        /**
+         * The winner, or null.
+         */
+        private Piece _winner;
+    }
+
+    /**
+     * Search depth, or 0 for the AI's usual depth.
+     */
+    private final int _depth;
+    /**
+     * Number of plies at the start of a game that may be random.
+     */
+    private final int _randomPlies;
+    /**
+     * Probability that each of those is random.
+     */
+    private final double _randomRate;
+    /**
+     * Maximum length of a game.
+     */
+    private final int _maxPlies;
+}
@@ -70,6 +70,24 @@ final class Square {
         return this != to && (_row == to._row || _col == to._col);
     }
 
+    /**
+     * Return the image of me under symmetry SYM of the board, where
+     * 0 <= SYM < SYMMETRIES.  Bit 2 of SYM transposes rows and columns,
+     * and then bits 0 and 1 reflect columns and rows, respectively.
+     * Symmetry 0 is the identity.
+     */
+    Square symmetric(int sym) {
+        return SYMMETRIC[sym][_index];
+    }
+
+    /**
+     * Return the symmetry that undoes symmetry SYM.
+     */
+    static int inverse(int sym) {
+        return (sym & 4) == 0 ? sym
+            : 4 | ((sym & 1) << 1) | ((sym & 2) >> 1);
+    }
+
     /**
      * Return true iff I am on the edge of the board.
      */
@@ -290,6 +308,37 @@ final class Square {
         }
     }
 
+    /**
+     * The number of symmetries of the board (rotations and reflections).
+     */
+    static final int SYMMETRIES = 8;
+
+    /**
+     * SYMMETRIC[s][i] is the image of the square with index i under
+     * symmetry s.
+     */
+    private static final Square[][] SYMMETRIC =
+            new Square[SYMMETRIES][NUM_SQUARES];
+
+    static {
+        for (int s = 0; s < SYMMETRIES; s += 1) {
+            for (Square sq : SQUARES) {
+                int c = sq.col(), r = sq.row();
+                if ((s & 4) != 0) {
+                    c = sq.row();
+                    r = sq.col();
+                }
+                if ((s & 1) != 0) {
+                    c = BOARD_SIZE - 1 - c;
+                }
+                if ((s & 2) != 0) {
+                    r = BOARD_SIZE - 1 - r;
+                }
+                SYMMETRIC[s][sq.index()] = sq(c, r);
+            }
+        }
+    }
+
     /**
      * My index position.
      */
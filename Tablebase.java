@@ -0,0 +1,340 @@
+package tablut;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static tablut.Piece.*;
+import static tablut.Square.NUM_SQUARES;
+import static tablut.Square.sq;
+
+/**
+ * An endgame tablebase: exact results for every position with the king
+ * and a small number of other pieces.  Positions are grouped into
+ * material classes by their numbers of white (non-king) and black pieces,
+ * and each class is an array with one byte per position, indexed by side
+ * to move, king square, and the sets of white and black squares.  A
+ * value of 0 means the position is drawn or unresolved; a positive value
+ * V means the side to move wins in V plies; a negative value -V means the
+ * side to move loses in V - 1 plies.  Tablebases are built by
+ * TablebaseGenerator and read through a memory-mapped file.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Tablebase {
+
+    /**
+     * Identifies tablebase files.
+     */
+    static final int MAGIC = 0x54424c54;
+    /**
+     * Version of the file layout.
+     */
+    static final int VERSION = 1;
+    /**
+     * Size in bytes of the file header (magic, version, number of
+     * pieces, number of classes).
+     */
+    static final int HEADER_SIZE = 16;
+    /**
+     * Size in bytes of the description of one material class: white
+     * count, black count, offset, passes completed (or longest distance),
+     * completion flag.
+     */
+    static final int CLASS_ENTRY_SIZE = 24;
+    /**
+     * Longest distance to the end of the game that can be recorded.
+     */
+    static final int MAX_DISTANCE = 126;
+
+    /**
+     * The tablebase in FILE, which must be complete.  Throws
+     * IOException if FILE is missing, malformed, or unfinished.
+     */
+    Tablebase(File file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * The tablebase in FILE, opened for writing iff WRITABLE.  Unless
+     * WRITABLE, FILE must be complete.
+     */
+    Tablebase(File file, boolean writable) throws IOException {
+        try (RandomAccessFile raf =
+                 new RandomAccessFile(file, writable ? "rw" : "r")) {
+            FileChannel channel = raf.getChannel();
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE
+                : FileChannel.MapMode.READ_ONLY;
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("not a tablebase: " + file);
+            }
+            MappedByteBuffer header = channel.map(mode, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("not a tablebase: " + file);
+            }
+            _pieces = header.getInt(8);
+            int[][] material = materialClasses(_pieces);
+            if (header.getInt(12) != material.length) {
+                throw new IOException("corrupt tablebase: " + file);
+            }
+            _index = channel.map(mode, HEADER_SIZE,
+                                 material.length * CLASS_ENTRY_SIZE);
+            _classes = new MappedByteBuffer[_pieces][_pieces];
+            for (int c = 0; c < material.length; c += 1) {
+                int w = material[c][0], b = material[c][1];
+                long offset = _index.getLong(c * CLASS_ENTRY_SIZE + 8);
+                if (!writable && !isComplete(c)) {
+                    throw new IOException("unfinished tablebase: " + file);
+                }
+                _classes[w][b] = channel.map(mode, offset, classSize(w, b));
+            }
+        }
+    }
+
+    /**
+     * Create an empty tablebase for the king plus up to PIECES - 1 other
+     * pieces in FILE.
+     */
+    static void create(File file, int pieces) throws IOException {
+        int[][] material = materialClasses(pieces);
+        long offset = HEADER_SIZE + material.length * CLASS_ENTRY_SIZE;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+            raf.writeInt(pieces);
+            raf.writeInt(material.length);
+            for (int[] m : material) {
+                raf.writeInt(m[0]);
+                raf.writeInt(m[1]);
+                raf.writeLong(offset);
+                raf.writeInt(0);
+                raf.writeInt(0);
+                offset += classSize(m[0], m[1]);
+            }
+            raf.setLength(offset);
+        }
+    }
+
+    /**
+     * Return the material classes for tablebases of up to PIECES pieces,
+     * as pairs {white pieces, black pieces}, in the order in which they
+     * must be solved: fewer pieces first.
+     */
+    static int[][] materialClasses(int pieces) {
+        int[][] result = new int[pieces * (pieces + 1) / 2][];
+        int c = 0;
+        for (int total = 0; total < pieces; total += 1) {
+            for (int w = 0; w <= total; w += 1) {
+                result[c] = new int[] {w, total - w};
+                c += 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the number of positions with W white and B black pieces
+     * besides the king.
+     */
+    static long classSize(int w, int b) {
+        return 2L * NUM_SQUARES * CHOOSE[NUM_SQUARES - 1][w]
+            * CHOOSE[NUM_SQUARES - 1 - w][b];
+    }
+
+    /**
+     * Return the maximum number of pieces, including the king, covered.
+     */
+    int pieces() {
+        return _pieces;
+    }
+
+    /**
+     * Return the value (as described above) of BOARD, or 0 if it is not
+     * covered.
+     */
+    int probe(Board board) {
+        int[] material = new int[2];
+        long index = index(board, _pieces, material);
+        if (index < 0) {
+            return 0;
+        }
+        return _classes[material[0]][material[1]].get((int) index);
+    }
+
+    /**
+     * Return the value of position number INDEX in the class with W white
+     * and B black pieces.
+     */
+    int get(int w, int b, long index) {
+        return _classes[w][b].get((int) index);
+    }
+
+    /**
+     * Set the value of position number INDEX in the class with W white and
+     * B black pieces to VALUE.
+     */
+    void set(int w, int b, long index, int value) {
+        _classes[w][b].put((int) index, (byte) value);
+    }
+
+    /**
+     * Return the number of passes recorded as completed for material
+     * class C or, once C is solved, the longest distance in it.
+     */
+    int passes(int c) {
+        return _index.getInt(c * CLASS_ENTRY_SIZE + 16);
+    }
+
+    /**
+     * Return true iff material class C is solved.
+     */
+    boolean isComplete(int c) {
+        return _index.getInt(c * CLASS_ENTRY_SIZE + 20) != 0;
+    }
+
+    /**
+     * Record PASSES as the value of passes(C), and that C is solved iff
+     * DONE, after flushing everything written so far.
+     */
+    void checkpoint(int c, int passes, boolean done) {
+        int[] m = materialClasses(_pieces)[c];
+        _classes[m[0]][m[1]].force();
+        _index.putInt(c * CLASS_ENTRY_SIZE + 16, passes);
+        _index.putInt(c * CLASS_ENTRY_SIZE + 20, done ? 1 : 0);
+        _index.force();
+    }
+
+    /**
+     * Return the index of BOARD within its material class, or -1 if it is
+     * not covered by a tablebase of PIECES pieces.  Sets MATERIAL[0] and
+     * MATERIAL[1] to the numbers of white and black pieces.
+     */
+    static long index(Board board, int pieces, int[] material) {
+        int n = pieces - 1;
+        int king = -1, w = 0, b = 0;
+        int[] whites = new int[n], blacks = new int[n];
+        for (int i = 0; i < NUM_SQUARES; i += 1) {
+            Piece p = board.get(sq(i));
+            if (p == KING) {
+                king = i;
+            } else if (p != EMPTY) {
+                if (w + b == n) {
+                    return -1;
+                } else if (p == WHITE) {
+                    whites[w++] = i;
+                } else {
+                    blacks[b++] = i;
+                }
+            }
+        }
+        if (king < 0) {
+            return -1;
+        }
+        material[0] = w;
+        material[1] = b;
+        long whiteRank = 0, blackRank = 0;
+        int wi = 0;
+        for (int k = 0; k < w; k += 1) {
+            int r = whites[k] - (whites[k] > king ? 1 : 0);
+            whiteRank += CHOOSE[r][k + 1];
+        }
+        for (int k = 0; k < b; k += 1) {
+            while (wi < w && whites[wi] < blacks[k]) {
+                wi += 1;
+            }
+            int r = blacks[k] - (blacks[k] > king ? 1 : 0) - wi;
+            blackRank += CHOOSE[r][k + 1];
+        }
+        long side = board.turn() == WHITE ? 1 : 0;
+        return ((side * NUM_SQUARES + king) * CHOOSE[NUM_SQUARES - 1][w]
+                + whiteRank) * CHOOSE[NUM_SQUARES - 1 - w][b] + blackRank;
+    }
+
+    /**
+     * Return position number INDEX in the class with W white and B black
+     * pieces, in the format of Board.encodedBoard.
+     */
+    static String position(int w, int b, long index) {
+        long blackCount = CHOOSE[NUM_SQUARES - 1 - w][b],
+            whiteCount = CHOOSE[NUM_SQUARES - 1][w];
+        long blackRank = index % blackCount;
+        index /= blackCount;
+        long whiteRank = index % whiteCount;
+        index /= whiteCount;
+        int king = (int) (index % NUM_SQUARES);
+        boolean whiteToMove = index / NUM_SQUARES == 1;
+
+        char[] result = new char[NUM_SQUARES + 1];
+        result[0] = (whiteToMove ? WHITE : BLACK).toString().charAt(0);
+        for (int i = 1; i <= NUM_SQUARES; i += 1) {
+            result[i] = EMPTY.toString().charAt(0);
+        }
+        result[king + 1] = KING.toString().charAt(0);
+        boolean[] white = new boolean[NUM_SQUARES - 1];
+        for (int k = w; k > 0; k -= 1) {
+            int r = unrank(whiteRank, k);
+            whiteRank -= CHOOSE[r][k];
+            white[r] = true;
+            result[r + (r >= king ? 1 : 0) + 1] = WHITE.toString().charAt(0);
+        }
+        for (int k = b; k > 0; k -= 1) {
+            int r = unrank(blackRank, k);
+            blackRank -= CHOOSE[r][k];
+            int sq = 0;
+            for (int left = r; white[sq] || left > 0; sq += 1) {
+                if (!white[sq]) {
+                    left -= 1;
+                }
+            }
+            result[sq + (sq >= king ? 1 : 0) + 1] =
+                BLACK.toString().charAt(0);
+        }
+        return new String(result);
+    }
+
+    /**
+     * Return the largest R such that CHOOSE[R][K] <= RANK.
+     */
+    private static int unrank(long rank, int k) {
+        int r = k - 1;
+        while (CHOOSE[r + 1][k] <= rank) {
+            r += 1;
+        }
+        return r;
+    }
+
+    /**
+     * CHOOSE[n][k] is the binomial coefficient n choose k, for the
+     * numbers of pieces we need.
+     */
+    static final long[][] CHOOSE = new long[NUM_SQUARES + 1][9];
+
+    static {
+        for (int n = 0; n <= NUM_SQUARES; n += 1) {
+            CHOOSE[n][0] = 1;
+            for (int k = 1; k < CHOOSE[n].length; k += 1) {
+                CHOOSE[n][k] = n == 0 ? 0 : CHOOSE[n - 1][k - 1]
+                    + CHOOSE[n - 1][k];
+            }
+        }
+    }
+
+    /**
+     * Maximum number of pieces, including the king.
+     */
+    private final int _pieces;
+
+    /**
+     * The mapped table of material classes.
+     */
+    private final MappedByteBuffer _index;
+
+    /**
+     * _classes[w][b] holds the values for positions with w white and b
+     * black pieces besides the king.
+     */
+    private final MappedByteBuffer[][] _classes;
+}
@@ -0,0 +1,183 @@
+package tablut;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static tablut.Tablebase.MAX_DISTANCE;
+
+/**
+ * Builds a Tablebase by retrograde analysis.  Material classes are solved
+ * in order of increasing numbers of pieces, so that captures always lead
+ * to classes already solved.  Within a class, pass P marks every position
+ * that is won or lost in exactly P plies, using the real Board rules for
+ * moves, captures, and escapes, until a pass finds nothing new and no
+ * longer result is possible.  As on a Board, a side with no legal moves
+ * has not lost by that alone, so such positions are left unresolved.
+ * Passes run in parallel over blocks of positions, and the file records
+ * each completed pass, so that an interrupted run resumes where it
+ * stopped.
+ *
+ * @author Shreyansh Loharuka
+ */
+class TablebaseGenerator {
+
+    /**
+     * Number of positions handled by one parallel task.
+     */
+    private static final long BLOCK = 1 << 14;
+
+    /**
+     * Build (or finish building) a tablebase for ARGS[0] pieces, including
+     * the king, in file ARGS[1].
+     */
+    public static void main(String... args) {
+        if (args.length != 2) {
+            Utils.fatal("Usage: java tablut.TablebaseGenerator PIECES FILE%n");
+        }
+        try {
+            int pieces = Integer.parseInt(args[0]);
+            File file = new File(args[1]);
+            if (pieces < 1 || pieces > 5) {
+                Utils.fatal("PIECES must be between 1 and 5%n");
+            }
+            if (!file.exists()) {
+                Tablebase.create(file, pieces);
+            }
+            new TablebaseGenerator(new Tablebase(file, true)).generate();
+        } catch (NumberFormatException excp) {
+            Utils.fatal("bad number of pieces: %s%n", args[0]);
+        } catch (IOException excp) {
+            Utils.fatal("%s%n", excp.getMessage());
+        }
+    }
+
+    /**
+     * A generator that fills in TABLEBASE.
+     */
+    TablebaseGenerator(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /**
+     * Solve every material class of my tablebase not already solved.
+     */
+    void generate() {
+        int[][] material = Tablebase.materialClasses(_tablebase.pieces());
+        int longest = 0;
+        for (int c = 0; c < material.length; c += 1) {
+            int w = material[c][0], b = material[c][1];
+            if (_tablebase.isComplete(c)) {
+                longest = Math.max(longest, _tablebase.passes(c));
+                continue;
+            }
+            long size = Tablebase.classSize(w, b);
+            int pass = _tablebase.passes(c), last = longest(w, b, size);
+            boolean changed = true;
+            while (pass <= MAX_DISTANCE
+                   && (changed || pass <= longest + 1)) {
+                int p = pass;
+                AtomicLong found = new AtomicLong();
+                LongStream.range(0, (size + BLOCK - 1) / BLOCK).parallel()
+                    .forEach(k -> found.addAndGet(
+                        solve(w, b, k * BLOCK, Math.min(size, (k + 1) * BLOCK),
+                              p)));
+                pass += 1;
+                changed = found.get() > 0;
+                if (changed) {
+                    last = p;
+                }
+                _tablebase.checkpoint(c, pass, false);
+                System.out.printf("class %dW %dB: pass %d, %d positions%n",
+                                  w, b, p, found.get());
+            }
+            _tablebase.checkpoint(c, last, true);
+            longest = Math.max(longest, last);
+        }
+    }
+
+    /**
+     * Return the longest distance (in plies) of the positions already
+     * solved among the SIZE positions of the class with W white and B
+     * black pieces, or 0 if there are none.
+     */
+    private int longest(int w, int b, long size) {
+        return LongStream.range(0, size).parallel()
+            .mapToInt(index -> {
+                int value = _tablebase.get(w, b, index);
+                return value < 0 ? -value - 1 : value;
+            }).max().orElse(0);
+    }
+
+    /**
+     * Perform pass PASS over positions FIRST to LAST - 1 of the class with W
+     * white and B black pieces.  Return the number of positions solved.
+     */
+    private long solve(int w, int b, long first, long last, int pass) {
+        Board board = new Board();
+        int[] material = new int[2];
+        long count = 0;
+        for (long index = first; index < last; index += 1) {
+            if (_tablebase.get(w, b, index) != 0) {
+                continue;
+            }
+            board.setPosition(Tablebase.position(w, b, index));
+            if (board.kingPosition().isEdge()) {
+                continue;
+            }
+            int value = solve(board, material, pass);
+            if (value != 0) {
+                _tablebase.set(w, b, index, value);
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the value of BOARD (as in Tablebase) if it is won or lost in
+     * exactly PASS plies, given the results of earlier passes, and
+     * otherwise 0.  A position with no legal moves is never won or lost.
+     * MATERIAL is scratch space for Tablebase.index.
+     */
+    private int solve(Board board, int[] material, int pass) {
+        int pieces = _tablebase.pieces();
+        List<Move> moves = board.legalMoves(board.turn());
+        if (moves.isEmpty()) {
+            return 0;
+        }
+        boolean allLost = true;
+        int longestLoss = 0;
+        for (Move move : moves) {
+            Piece mover = board.turn();
+            board.makeMove(move);
+            int value;
+            if (board.winner() != null) {
+                value = board.winner() == mover ? -1 : 1;
+            } else {
+                long index = Tablebase.index(board, pieces, material);
+                value = _tablebase.get(material[0], material[1], index);
+            }
+            board.undo();
+            int distance = value < 0 ? -value - 1 : value;
+            if (value == 0 || distance >= pass) {
+                allLost = false;
+            } else if (value < 0) {
+                return distance + 1;
+            } else {
+                longestLoss = Math.max(longestLoss, distance + 1);
+            }
+        }
+        if (allLost && longestLoss == pass) {
+            return -(longestLoss + 1);
+        }
+        return 0;
+    }
+
+    /**
+     * The tablebase being built.
+     */
+    private final Tablebase _tablebase;
+}
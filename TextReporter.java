@@ -23,4 +23,11 @@ class TextReporter implements Reporter {
     public void reportMove(Move move) {
         System.out.printf("* %s%n", move);
     }
+
+    @Override
+    public void reportAnalysis(Analysis analysis) {
+        for (Analysis.Line line : analysis.lines()) {
+            System.out.printf("* %s%n", line);
+        }
+    }
 }
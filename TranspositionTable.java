@@ -0,0 +1,144 @@
+package tablut;
+
+import java.nio.ByteBuffer;
+
+import static tablut.Square.NUM_SQUARES;
+import static tablut.Square.sq;
+
+/**
+ * A fixed-size table of search results indexed by position hash
+ * (see Board.hash).  Each slot holds the full hash, a score, the kind of
+ * bound the score represents, the depth it was searched to and the best
+ * move found.  Colliding entries are replaced unless the old one was
+ * searched deeper.
+ *
+ * @author Shreyansh Loharuka
+ */
+class TranspositionTable {
+
+    /**
+     * Bound kinds.  EXACT scores are minimax values; LOWER and UPPER scores
+     * are bounds from searches that failed high or low.  NONE marks an
+     * empty slot.
+     */
+    static final int NONE = 0, EXACT = 1, LOWER = 2, UPPER = 3;
+
+    /**
+     * Size in bytes of one slot: key (8), score (4), move (2), depth (1),
+     * kind (1).
+     */
+    static final int ENTRY_SIZE = 16;
+
+    /**
+     * A table with 2**LOGSIZE slots.
+     */
+    TranspositionTable(int logSize) {
+        this(ByteBuffer.allocate(ENTRY_SIZE << logSize));
+    }
+
+    /**
+     * A table whose slots are stored in STORAGE, whose capacity must be
+     * ENTRY_SIZE times a power of two.
+     */
+    TranspositionTable(ByteBuffer storage) {
+        _slots = storage;
+        _mask = storage.capacity() / ENTRY_SIZE - 1;
+        assert (_mask & (_mask + 1)) == 0;
+    }
+
+    /**
+     * Return the slot holding the entry for KEY, or -1 if there is none.
+     */
+    int find(long key) {
+        int slot = (int) key & _mask;
+        int at = slot * ENTRY_SIZE;
+        if (_slots.get(at + 15) != NONE && _slots.getLong(at) == key) {
+            return slot;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the score stored in SLOT.
+     */
+    int score(int slot) {
+        return _slots.getInt(slot * ENTRY_SIZE + 8);
+    }
+
+    /**
+     * Return the best move stored in SLOT, or null if there is none.
+     */
+    Move move(int slot) {
+        int code = _slots.getShort(slot * ENTRY_SIZE + 12);
+        if (code < 0) {
+            return null;
+        }
+        return Move.mv(sq(code / NUM_SQUARES), sq(code % NUM_SQUARES));
+    }
+
+    /**
+     * Return the depth to which the position in SLOT was searched.
+     */
+    int depth(int slot) {
+        return _slots.get(slot * ENTRY_SIZE + 14);
+    }
+
+    /**
+     * Return the kind of bound (EXACT, LOWER, or UPPER) in SLOT.
+     */
+    int kind(int slot) {
+        return _slots.get(slot * ENTRY_SIZE + 15);
+    }
+
+    /**
+     * Record that the position with hash KEY has a score of SCORE, of bound
+     * type KIND, when searched to DEPTH, and that MOVE (possibly null) was
+     * the best move found.
+     */
+    void store(long key, int depth, int kind, int score, Move move) {
+        int at = ((int) key & _mask) * ENTRY_SIZE;
+        if (_slots.get(at + 15) != NONE && _slots.getLong(at) != key
+                && _slots.get(at + 14) > depth) {
+            return;
+        }
+        _slots.putLong(at, key);
+        _slots.putInt(at + 8, score);
+        _slots.putShort(at + 12, (short) (move == null ? -1
+                : move.from().index() * NUM_SQUARES + move.to().index()));
+        _slots.put(at + 14, (byte) depth);
+        _slots.put(at + 15, (byte) kind);
+    }
+
+    /**
+     * Store each entry of OTHER here, as store would.
+     */
+    void storeAll(TranspositionTable other) {
+        for (int slot = 0; slot <= other._mask; slot += 1) {
+            int kind = other.kind(slot);
+            if (kind != NONE) {
+                store(other._slots.getLong(slot * ENTRY_SIZE),
+                      other.depth(slot), kind, other.score(slot),
+                      other.move(slot));
+            }
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    void clear() {
+        for (int at = 0; at < _slots.capacity(); at += ENTRY_SIZE) {
+            _slots.put(at + 15, (byte) NONE);
+        }
+    }
+
+    /**
+     * The slots of this table, ENTRY_SIZE bytes apiece.
+     */
+    private final ByteBuffer _slots;
+
+    /**
+     * Number of slots minus 1.  The number of slots is a power of 2.
+     */
+    private final int _mask;
+}
@@ -0,0 +1,256 @@
+package tablut;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static tablut.Piece.*;
+
+/**
+ * Tunes the evaluation Weights by logistic regression on games of the AI
+ * against itself (Texel's method).  The search treats every static score
+ * as favoring White when positive, so for each side's weight vector W we
+ * choose W to minimize the mean squared difference between
+ * sigmoid(K * W . F) and the result of the game (1 for a White win, 0 for
+ * a Black win, 1/2 for an abandoned game), over the features F of every
+ * position reached.  K is fitted first, with the default weights, and the
+ * weights are then improved by gradient descent on features scaled to
+ * [-1, 1].  Gradients are summed in parallel over the positions.  The
+ * tuned weights are written with K fixed at 1/UNITS, so that scores stay
+ * far below the values the search reserves for wins.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Tuner {
+
+    /**
+     * Number of gradient-descent steps.
+     */
+    private static final int ITERATIONS = 2000;
+    /**
+     * Step size of gradient descent, in units of scaled weights.
+     */
+    private static final double LEARNING_RATE = 0.01;
+    /**
+     * Points of static score per unit of the fitted logistic model, which
+     * fixes the scale of the tuned weights.
+     */
+    private static final double UNITS = 1000;
+
+    /**
+     * Tune weights from self-play.  ARGS are GAMES DEPTH FILE: play GAMES
+     * games, searching DEPTH plies, and write the tuned weights to FILE.
+     */
+    public static void main(String... args) {
+        try {
+            Tuner tuner = new Tuner(Weights.DEFAULT);
+            for (SelfPlay.Game game : SelfPlay.trainingGames("Tuner", args)) {
+                tuner.add(game);
+            }
+            System.out.printf("%d positions%n", tuner.size());
+            tuner.tune().write(new File(args[2]));
+        } catch (NumberFormatException excp) {
+            Utils.fatal("bad number: %s%n", excp.getMessage());
+        } catch (IOException excp) {
+            Utils.fatal("%s%n", excp.getMessage());
+        }
+    }
+
+    /**
+     * A tuner starting from weights INITIAL.
+     */
+    Tuner(Weights initial) {
+        _initial = initial;
+    }
+
+    /**
+     * Add the positions of GAME to my training data.  Positions decided
+     * by the king, which the evaluation never scores with weights, are
+     * skipped.
+     */
+    void add(SelfPlay.Game game) {
+        double result = game.winner() == WHITE ? 1.0
+            : game.winner() == BLACK ? 0.0 : 0.5;
+        Board board = new Board();
+        for (int k = 0; k < game.length(); k += 1) {
+            board.setPosition(game.position(k));
+            if (AI.isDecided(board)) {
+                continue;
+            }
+            int[] white = new int[Weights.NUM_FEATURES],
+                black = new int[Weights.NUM_FEATURES];
+            AI.features(board, WHITE, white);
+            AI.features(board, BLACK, black);
+            _features.get(0).add(white);
+            _features.get(1).add(black);
+            _results.add(result);
+        }
+    }
+
+    /**
+     * Return the number of positions added.
+     */
+    int size() {
+        return _results.size();
+    }
+
+    /**
+     * Return the weights fitted to the positions added.
+     */
+    Weights tune() {
+        int[][] weights = new int[2][];
+        Piece[] sides = { WHITE, BLACK };
+        for (int s = 0; s < 2; s += 1) {
+            weights[s] = tune(sides[s], _features.get(s));
+        }
+        return new Weights(weights[0], weights[1]);
+    }
+
+    /**
+     * Return SIDE's weights fitted to the positions with features
+     * FEATURES.
+     */
+    private int[] tune(Piece side, List<int[]> features) {
+        int n = features.size();
+        double[][] x = new double[n][];
+        double[] y = new double[n];
+        double[] scale = new double[Weights.NUM_FEATURES];
+        for (int i = 0; i < n; i += 1) {
+            y[i] = _results.get(i);
+            for (int f = 0; f < Weights.NUM_FEATURES; f += 1) {
+                scale[f] = Math.max(scale[f], Math.abs(features.get(i)[f]));
+            }
+        }
+        for (int f = 0; f < Weights.NUM_FEATURES; f += 1) {
+            scale[f] = Math.max(scale[f], 1);
+        }
+        for (int i = 0; i < n; i += 1) {
+            x[i] = new double[Weights.NUM_FEATURES];
+            for (int f = 0; f < Weights.NUM_FEATURES; f += 1) {
+                x[i][f] = features.get(i)[f] / scale[f];
+            }
+        }
+
+        double k = fitK(side, x, y, scale);
+        double[] theta =
+            scaled(side, scale, k, new double[Weights.NUM_FEATURES]);
+        System.out.printf("%s: K = %g, error %.5f", side, k,
+                          error(x, y, theta));
+
+        Adam adam = new Adam(theta.length, LEARNING_RATE);
+        for (int t = 1; t <= ITERATIONS; t += 1) {
+            adam.step(theta, gradient(x, y, theta));
+        }
+        System.out.printf(" -> %.5f%n", error(x, y, theta));
+
+        int[] result = new int[Weights.NUM_FEATURES];
+        for (int f = 0; f < Weights.NUM_FEATURES; f += 1) {
+            result[f] = (int) Math.round(theta[f] * UNITS / scale[f]);
+        }
+        return result;
+    }
+
+    /**
+     * Return the K minimizing the error of SIDE's initial weights on
+     * scaled features X with results Y, where SCALE gives the scale of
+     * each feature.
+     */
+    private double fitK(Piece side, double[][] x, double[] y,
+                        double[] scale) {
+        double[] theta = new double[Weights.NUM_FEATURES];
+        double lo = -12, hi = 2;
+        for (int i = 0; i < 100; i += 1) {
+            double a = lo + (hi - lo) / 3, b = hi - (hi - lo) / 3;
+            if (error(x, y, scaled(side, scale, Math.pow(10, a), theta))
+                < error(x, y, scaled(side, scale, Math.pow(10, b), theta))) {
+                hi = b;
+            } else {
+                lo = a;
+            }
+        }
+        return Math.pow(10, (lo + hi) / 2);
+    }
+
+    /**
+     * Set THETA to SIDE's initial weights times K, for features scaled by
+     * SCALE, and return it.
+     */
+    private double[] scaled(Piece side, double[] scale, double k,
+                            double[] theta) {
+        for (int f = 0; f < theta.length; f += 1) {
+            theta[f] = k * _initial.get(side, f) * scale[f];
+        }
+        return theta;
+    }
+
+    /**
+     * Return the mean squared error of weights THETA on features X with
+     * results Y.
+     */
+    private static double error(double[][] x, double[] y, double[] theta) {
+        return IntStream.range(0, x.length).parallel()
+            .mapToDouble(i -> {
+                double e = sigmoid(dot(theta, x[i])) - y[i];
+                return e * e;
+            }).sum() / Math.max(1, x.length);
+    }
+
+    /**
+     * Return the gradient of error(X, Y, THETA) with respect to THETA.
+     */
+    private static double[] gradient(double[][] x, double[] y,
+                                     double[] theta) {
+        double[] g = IntStream.range(0, x.length).parallel()
+            .collect(() -> new double[theta.length],
+                     (acc, i) -> {
+                         double s = sigmoid(dot(theta, x[i]));
+                         double d = 2 * (s - y[i]) * s * (1 - s);
+                         for (int f = 0; f < acc.length; f += 1) {
+                             acc[f] += d * x[i][f];
+                         }
+                     },
+                     (a, b) -> {
+                         for (int f = 0; f < a.length; f += 1) {
+                             a[f] += b[f];
+                         }
+                     });
+        for (int f = 0; f < g.length; f += 1) {
+            g[f] /= Math.max(1, x.length);
+        }
+        return g;
+    }
+
+    /**
+     * Return the dot product of A and B.
+     */
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int f = 0; f < a.length; f += 1) {
+            sum += a[f] * b[f];
+        }
+        return sum;
+    }
+
+    /**
+     * Return the logistic function of X.
+     */
+    private static double sigmoid(double x) {
+        return 1 / (1 + Math.exp(-x));
+    }
+
+    /**
+     * The weights we start from.
+     */
+    private final Weights _initial;
+    /**
+     * Features of each position, as seen by White (0) and Black (1).
+     */
+    private final List<List<int[]>> _features =
+        List.of(new ArrayList<>(), new ArrayList<>());
+    /**
+     * Results of the games in which each position occurred.
+     */
+    private final List<Double> _results = new ArrayList<>();
+}
@@ -1,9 +1,27 @@
 package tablut;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 import ucb.junit.textui;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static tablut.AI.INFTY;
+import static tablut.Piece.*;
 
 /**
  * The suite of all JUnit tests for the enigma package.
@@ -28,6 +46,534 @@ public class UnitTest {
         assertTrue("There are no unit tests!", true);
     }
 
+    /**
+     * The proof-number search finds a win that takes more than one move:
+     * the king, with every line to the edge closed, steps to a square
+     * with two open lines, and Black cannot close both.
+     */
+    @Test
+    public void solverForcedWin() {
+        Board board = position(WHITE, "Kc6", "Ba6", "Bc9", "Bi6", "Bc1");
+        assertEquals(0, KingMobility.openLines(board));
+        ProofSolver solver = new ProofSolver(10000);
+        assertEquals(ProofSolver.PROVEN,
+                     solver.solve(board, WHITE, () -> false));
+        Move win = solver.winningMove();
+        assertEquals(Square.sq("c6"), win.from());
+        board.makeMove(win);
+        assertEquals(KingMobility.UNSTOPPABLE, KingMobility.enclosure(board));
+        assertEquals(ProofSolver.DISPROVEN,
+                     solver.solve(board, BLACK, () -> false));
+    }
+
+    /**
+     * The move limit ends lines in the proof-number search: White, to
+     * move with a clear line for the king, escapes unless the limit ends
+     * the game first.
+     */
+    @Test
+    public void solverMoveLimit() {
+        Board board = position(BLACK, "Kc5", "Ba1", "Bg7", "Bi9");
+        board.makeMove(Move.mv("i9-8"));
+        ProofSolver solver = new ProofSolver(1000);
+        assertEquals(ProofSolver.PROVEN,
+                     solver.solve(board, WHITE, () -> false));
+        board.setMoveLimit(2);
+        assertEquals(ProofSolver.PROVEN,
+                     solver.solve(board, WHITE, () -> false));
+        board.setMoveLimit(1);
+        assertEquals(ProofSolver.DISPROVEN,
+                     solver.solve(board, WHITE, () -> false));
+        assertEquals(ProofSolver.PROVEN,
+                     solver.solve(board, BLACK, () -> false));
+    }
+
+    /**
+     * A side with no legal moves has not lost, so the proof-number
+     * search settles neither side's win from such a position.
+     */
+    @Test
+    public void solverNoMoves() {
+        Board board = position(BLACK, "Ke5", "Wa2", "Wb1", "Ba1");
+        assertFalse(board.hasMove(BLACK));
+        ProofSolver solver = new ProofSolver(1000);
+        assertEquals(ProofSolver.UNKNOWN,
+                     solver.solve(board, WHITE, () -> false));
+        assertEquals(ProofSolver.UNKNOWN,
+                     solver.solve(board, BLACK, () -> false));
+    }
+
+    /**
+     * KingMobility.enclosure recognizes a king with two clear lines that
+     * Black cannot stop and a lone king walled in by attackers, unless
+     * the move limit may end the game first.
+     */
+    @Test
+    public void enclosure() {
+        Board board = position(BLACK, "Kc5", "Bg7", "Bi9", "Bi1");
+        assertEquals(KingMobility.UNSTOPPABLE, KingMobility.enclosure(board));
+        board.setMoveLimit(2);
+        assertEquals(KingMobility.UNSTOPPABLE, KingMobility.enclosure(board));
+        board.setMoveLimit(1);
+        assertEquals(KingMobility.OPEN, KingMobility.enclosure(board));
+
+        board = position(WHITE, "Kc3", "Bb3", "Bd3", "Bc2", "Bc4", "Bg7");
+        assertEquals(KingMobility.SEALED, KingMobility.enclosure(board));
+        board.setMoveLimit(50);
+        assertEquals(KingMobility.OPEN, KingMobility.enclosure(board));
+
+        board = position(WHITE, "Kc3", "Wg3", "Bb3", "Bd3", "Bc2", "Bc4");
+        assertEquals(KingMobility.OPEN, KingMobility.enclosure(board));
+    }
+
+    /**
+     * KingMobility.escapeDistance counts the king moves to the edge, and
+     * the ESCAPE feature follows it.
+     */
+    @Test
+    public void escapeDistance() {
+        Board board = position(WHITE, "Kc6", "Ba6", "Bc9", "Bi6", "Bc1");
+        assertEquals(2, KingMobility.escapeDistance(board, 3));
+        assertEquals(KingMobility.NO_ESCAPE,
+                     KingMobility.escapeDistance(board, 1));
+        int[] features = new int[Weights.NUM_FEATURES];
+        AI.features(board, WHITE, features);
+        assertEquals(Weights.ESCAPE_LIMIT - 1, features[Weights.ESCAPE]);
+
+        board = position(WHITE, "Kc5", "Bi9");
+        assertEquals(1, KingMobility.escapeDistance(board, 3));
+
+        board = position(WHITE, "Kc3", "Bb3", "Bd3", "Bc2", "Bc4");
+        assertEquals(KingMobility.NO_ESCAPE,
+                     KingMobility.escapeDistance(board, 3));
+        AI.features(board, WHITE, features);
+        assertEquals(0, features[Weights.ESCAPE]);
+    }
+
+    /**
+     * AI.defenses, which limits the extended search of a king threat to
+     * the replies that matter, keeps every move that stops an escape,
+     * including blocks that are not captures, keeps only a capture of
+     * the king when there is one, and declines to limit the search when
+     * nothing is threatened.
+     */
+    @Test
+    public void defenses() {
+        Board board = position(BLACK, "Kc5", "Wc6", "Wc4", "Wd5",
+                               "Ba1", "Bb9", "Bg7", "Bi9");
+        Move block = Move.mv("b9-5");
+        assertFalse(AI.mayCapture(board, block));
+        Move[] moves = new Move[Board.MAX_MOVES];
+        List<Move> defenses =
+            Arrays.asList(moves).subList(0, AI.defenses(board, moves));
+        assertTrue(defenses.contains(block));
+        assertTrue(defenses.contains(Move.mv("a1-5")));
+        assertFalse(defenses.contains(Move.mv("i9-8")));
+        for (Move move : defenses) {
+            board.makeMove(move);
+            assertEquals(0, KingMobility.openLines(board));
+            board.undo();
+        }
+
+        board = position(BLACK, "Kc5", "Wb5", "Wd5", "Bc6", "Bc1", "Bi9");
+        assertEquals(1, AI.defenses(board, moves));
+        assertEquals(Move.mv("c1-4"), moves[0]);
+
+        board = position(BLACK, "Kc5", "Wb5", "Wd5", "Wc4", "Bc6", "Bi9");
+        assertEquals(-1, AI.defenses(board, moves));
+    }
+
+    /**
+     * Perft counts the known numbers of paths and captures from the
+     * initial position to depth 3, with and without its hashed and
+     * parallel variants.
+     */
+    @Test
+    public void perft() {
+        long[] nodes = { 80, 4400, 353200 }, captures = { 0, 24, 4640 };
+        Board board = new Board();
+        for (boolean fast : new boolean[] { false, true }) {
+            for (int depth = 1; depth <= 3; depth += 1) {
+                Perft.Counts counts = Perft.count(board, depth, fast, fast);
+                assertEquals(nodes[depth - 1], counts.nodes());
+                assertEquals(captures[depth - 1], counts.captures());
+            }
+        }
+        assertEquals(new Board().encodedBoard(), board.encodedBoard());
+    }
+
+    /**
+     * An analyzed line reports every decisive score, not only wins found
+     * by search, as a win, and other scores as numbers.
+     */
+    @Test
+    public void analysisScores() {
+        List<Move> pv = List.of(Move.mv("c5-1"));
+        assertEquals("c5-1 (white wins)",
+                     new Analysis.Line(pv, AI.UNSTOPPABLE_VALUE, 2)
+                     .toString());
+        assertEquals("c5-1 (black wins)",
+                     new Analysis.Line(pv, -AI.SEALED_VALUE, 2).toString());
+        assertEquals("c5-1 (-1200)",
+                     new Analysis.Line(pv, -1200, 2).toString());
+        assertTrue(AI.isDecisive(AI.WILL_WIN_VALUE));
+        assertFalse(AI.isDecisive(AI.SEALED_VALUE - 1));
+    }
+
+    /**
+     * Tablebase.position and Tablebase.index are inverses over every
+     * material class of a four-piece tablebase.
+     */
+    @Test
+    public void tablebaseIndex() {
+        Random random = new Random(28);
+        Board board = new Board();
+        int[] material = new int[2];
+        for (int[] m : Tablebase.materialClasses(4)) {
+            long size = Tablebase.classSize(m[0], m[1]);
+            for (int k = 0; k < 200; k += 1) {
+                long index = k == 0 ? 0 : k == 1 ? size - 1
+                    : (long) (random.nextDouble() * size);
+                String position = Tablebase.position(m[0], m[1], index);
+                board.setPosition(position);
+                assertEquals(position, board.encodedBoard());
+                assertEquals(index, Tablebase.index(board, 4, material));
+                assertEquals(m[0], material[0]);
+                assertEquals(m[1], material[1]);
+            }
+        }
+    }
+
+    /**
+     * A SearchBoard making and undoing the moves of random games agrees
+     * with a Board making the same moves in its contents, hash, reach,
+     * and mobility, and generates exactly the moves isLegal allows.
+     */
+    @Test
+    public void searchBoard() {
+        Random random = new Random(39);
+        Move[] moves = new Move[Board.MAX_MOVES];
+        for (int game = 0; game < 20; game += 1) {
+            Board board = new Board();
+            SearchBoard search = new SearchBoard(board);
+            List<Long> hashes = new ArrayList<>();
+            for (int ply = 0; ply < 80 && board.winner() == null;
+                 ply += 1) {
+                assertSameBoard(board, search);
+                Piece side = board.turn();
+                assertEquals(0, search.legalMoves(side.opponent(), moves));
+                int n = search.legalMoves(side, moves);
+                List<Move> legal = new ArrayList<>();
+                for (Square from : search.pieceLocations(side)) {
+                    for (List<Move> line : Move.ROOK_MOVES[from.index()]) {
+                        for (Move move : line) {
+                            if (search.isLegal(move)) {
+                                legal.add(move);
+                            }
+                        }
+                    }
+                }
+                assertEquals(legal.size(), n);
+                assertTrue(legal.containsAll(
+                    Arrays.asList(moves).subList(0, n)));
+                Move move = moves[random.nextInt(n)];
+                hashes.add(search.hash());
+                board.makeMove(move);
+                search.makeMove(move);
+            }
+            assertSameBoard(board, search);
+            for (int k = hashes.size() - 1; k >= 0; k -= 1) {
+                search.undo();
+                assertEquals((long) hashes.get(k), search.hash());
+            }
+            assertSameBoard(new Board(), search);
+        }
+    }
+
+    /**
+     * The fastest batch evaluator available and the scalar one score each
+     * of the sample positions, and each position one move from them,
+     * exactly as AI.staticScore does, for both sides, with the default
+     * weights and with random ones.
+     */
+    @Test
+    public void batchEvaluator() {
+        List<Board> boards = new ArrayList<>();
+        for (Board board : Positions.all()) {
+            boards.add(board);
+            for (Move move : board.legalMoves(board.turn())) {
+                Board next = new Board(board);
+                next.makeMove(move);
+                boards.add(next);
+            }
+        }
+        PositionBatch batch = new PositionBatch(boards.size());
+        for (Board board : boards) {
+            batch.add(board);
+        }
+        Random random = new Random(32);
+        int[][] weights = new int[2][Weights.NUM_FEATURES];
+        for (int[] w : weights) {
+            for (int f = 0; f < w.length; f += 1) {
+                w[f] = random.nextInt(201) - 100;
+            }
+        }
+        for (Weights w : new Weights[] {
+                Weights.DEFAULT, new Weights(weights[0], weights[1]) }) {
+            BatchEvaluator fast = BatchEvaluator.create(w),
+                scalar = new BatchEvaluator(w);
+            for (Piece side : new Piece[] { WHITE, BLACK }) {
+                AI ai = new AI(side, null);
+                ai.setWeights(w);
+                int[] fastScores = fast.evaluate(side, batch),
+                    scalarScores = scalar.evaluate(side, batch);
+                for (int k = 0; k < boards.size(); k += 1) {
+                    int expected = ai.staticScore(boards.get(k));
+                    assertEquals(expected, fastScores[k]);
+                    assertEquals(expected, scalarScores[k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * An accumulator kept up to date through the moves and undos of random
+     * games, on a Board and on a SearchBoard, holds the values that
+     * recomputing it from the board would give, for networks with and
+     * without king-relative features.
+     */
+    @Test
+    public void accumulator() {
+        Random random = new Random(31);
+        for (boolean kingRelative : new boolean[] { false, true }) {
+            float[] params = new float[Network.numParameters(kingRelative)];
+            for (int i = 0; i < params.length; i += 1) {
+                params[i] = (float) (random.nextGaussian() * 0.1);
+            }
+            Network network = new Network(kingRelative, params);
+            Accumulator fresh = new Accumulator(network);
+            for (int game = 0; game < 10; game += 1) {
+                Board board = game % 2 == 0 ? new Board()
+                    : new SearchBoard(new Board());
+                Accumulator accumulator = new Accumulator(network);
+                board.setAccumulator(accumulator);
+                int plies = 0;
+                while (plies < 60 && board.winner() == null) {
+                    List<Move> moves = board.legalMoves(board.turn());
+                    board.makeMove(moves.get(random.nextInt(moves.size())));
+                    plies += 1;
+                    fresh.refresh(board);
+                    assertArrayEquals(fresh.values(board),
+                                      accumulator.values(board));
+                }
+                for (; plies > 0; plies -= 1) {
+                    board.undo();
+                    fresh.refresh(board);
+                    assertArrayEquals(fresh.values(board),
+                                      accumulator.values(board));
+                }
+            }
+        }
+    }
+
+    /**
+     * Entries stored in a SearchCache are read back when its file is
+     * reopened with the same fingerprint, and discarded when it is
+     * reopened with another.
+     */
+    @Test
+    public void searchCache() throws IOException {
+        File file = File.createTempFile("tablut", ".cache");
+        file.deleteOnExit();
+        Move move = Move.mv("e3-h");
+        SearchCache cache = new SearchCache(file, 38);
+        cache.table(WHITE).store(1234, 5, TranspositionTable.EXACT, -70,
+                                 move);
+        cache.evals(BLACK).store(5678, 90);
+        cache.flush();
+
+        cache = new SearchCache(file, 38);
+        TranspositionTable table = cache.table(WHITE);
+        int slot = table.find(1234);
+        assertTrue(slot >= 0);
+        assertEquals(5, table.depth(slot));
+        assertEquals(TranspositionTable.EXACT, table.kind(slot));
+        assertEquals(-70, table.score(slot));
+        assertEquals(move, table.move(slot));
+        assertEquals(-1, cache.table(BLACK).find(1234));
+        slot = cache.evals(BLACK).find(5678);
+        assertTrue(slot >= 0);
+        assertEquals(90, cache.evals(BLACK).score(slot));
+        assertEquals(-1, cache.evals(WHITE).find(5678));
+
+        cache = new SearchCache(file, 39);
+        assertEquals(-1, cache.table(WHITE).find(1234));
+        assertEquals(-1, cache.evals(BLACK).find(5678));
+        assertTrue(file.delete());
+    }
+
+    /**
+     * A search split between two launched workers finds a move as good as
+     * the best that AI.rootScore finds searching each move alone.
+     */
+    @Test
+    public void distributedSearch() throws IOException {
+        AI template = new AI();
+        DistributedSearch distributed =
+            DistributedSearch.launch(2, template.fingerprint(), List.of());
+        try {
+            assertEquals(2, distributed.workers());
+            for (Board board : Positions.all().subList(0, 3)) {
+                AI local = template.scratchCopy(board.turn(), SPLIT_DEPTH);
+                Move best = distributed.search(
+                    board, board.legalMoves(board.turn()), SPLIT_DEPTH,
+                    local, () -> false);
+                assertEquals(bestRootScore(template, board),
+                             rootScore(template, board, best));
+            }
+            assertEquals(2, distributed.workers());
+        } finally {
+            distributed.close();
+        }
+    }
+
+    /**
+     * A worker that drops its connection in the middle of a job is lost,
+     * and its move is searched by the worker that remains, so that the
+     * result is still the best move.
+     */
+    @Test
+    public void distributedSearchLostWorker() throws Exception {
+        AI template = new AI();
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        Thread failing = new Thread(() -> {
+            try (Socket socket = connect(port)) {
+                PrintWriter out =
+                    new PrintWriter(socket.getOutputStream(), true,
+                                    StandardCharsets.UTF_8);
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+                out.println("hello " + template.fingerprint() + " 0");
+                String line;
+                while ((line = in.readLine()) != null
+                       && !line.startsWith("search")) {
+                    /* Wait for the first job, then fail. */
+                }
+            } catch (IOException excp) {
+                /* Ignore IOException: the worker is meant to fail. */
+            }
+        });
+        Thread working = new Thread(() -> {
+            try (Socket socket = connect(port)) {
+                new SearchWorker(template, socket).run();
+            } catch (IOException excp) {
+                /* Ignore IOException. */
+            }
+        });
+        failing.start();
+        working.start();
+        DistributedSearch distributed =
+            DistributedSearch.listen(port, 2, template.fingerprint());
+        try {
+            assertEquals(2, distributed.workers());
+            Board board = Positions.all().get(0);
+            AI local = template.scratchCopy(board.turn(), SPLIT_DEPTH);
+            Move best = distributed.search(
+                board, board.legalMoves(board.turn()), SPLIT_DEPTH,
+                local, () -> false);
+            assertEquals(1, distributed.workers());
+            assertEquals(bestRootScore(template, board),
+                         rootScore(template, board, best));
+        } finally {
+            distributed.close();
+        }
+        failing.join();
+        working.join();
+    }
+
+    /**
+     * Depth of the distributed searches tested.
+     */
+    private static final int SPLIT_DEPTH = 3;
+
+    /**
+     * Return a socket connected to PORT on this machine, retrying until
+     * the coordinator listens there.
+     */
+    private static Socket connect(int port) throws IOException {
+        for (int k = 0; ; k += 1) {
+            try {
+                return new Socket("localhost", port);
+            } catch (IOException excp) {
+                if (k == 200) {
+                    throw excp;
+                }
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException excp) {
+                throw new IOException(excp);
+            }
+        }
+    }
+
+    /**
+     * Return the value of MOVE in BOARD from a full-width search of
+     * SPLIT_DEPTH plies by a new AI like TEMPLATE.
+     */
+    private static int rootScore(AI template, Board board, Move move) {
+        AI ai = template.scratchCopy(board.turn(), SPLIT_DEPTH);
+        return ai.rootScore(board, move, SPLIT_DEPTH, -INFTY, INFTY);
+    }
+
+    /**
+     * Return the best of the values rootScore gives the legal moves in
+     * BOARD for the side to move, as TEMPLATE would search them.
+     */
+    private static int bestRootScore(AI template, Board board) {
+        boolean maximizing = board.turn() == WHITE;
+        int best = maximizing ? -INFTY : INFTY;
+        for (Move move : board.legalMoves(board.turn())) {
+            int value = rootScore(template, board, move);
+            best = maximizing ? Math.max(best, value) : Math.min(best, value);
+        }
+        return best;
+    }
+
+    /**
+     * Assert that EXPECTED and ACTUAL have the same contents, side to
+     * move, hash, reach, and mobility.
+     */
+    private static void assertSameBoard(Board expected, Board actual) {
+        assertEquals(expected.encodedBoard(), actual.encodedBoard());
+        assertEquals(expected.hash(), actual.hash());
+        for (Piece side : new Piece[] { WHITE, BLACK }) {
+            assertEquals(expected.mobility(side), actual.mobility(side));
+            for (Square s : Square.SQUARE_LIST) {
+                assertEquals(expected.reach(side, s), actual.reach(side, s));
+            }
+        }
+    }
+
+    /**
+     * Return a board with TURN to move and the pieces described by
+     * PIECES, each a piece letter followed by a square, as in "Kc5".
+     */
+    private static Board position(Piece turn, String... pieces) {
+        char[] encoded = new char[Square.NUM_SQUARES + 1];
+        Arrays.fill(encoded, EMPTY.toString().charAt(0));
+        encoded[0] = turn.toString().charAt(0);
+        for (String piece : pieces) {
+            encoded[Square.sq(piece.substring(1)).index() + 1] =
+                piece.charAt(0);
+        }
+        Board board = new Board();
+        board.setPosition(new String(encoded));
+        return board;
+    }
 }
 
 
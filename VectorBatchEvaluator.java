@@ -0,0 +1,284 @@
+package tablut;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static tablut.BatchEvaluator.*;
+import static tablut.Piece.*;
+import static tablut.PositionBatch.LOW_SQUARES;
+import static tablut.Square.BOARD_SIZE;
+
+/**
+ * A BatchEvaluator that evaluates as many positions at once as fit in
+ * the lanes of a vector of longs, using the jdk.incubator.vector module.
+ * Each lane performs exactly the integer operations that BatchEvaluator
+ * performs on one position, so the results are identical; population
+ * counts are done by bit twiddling, since this version of the vector API
+ * has no lane-wise bit count.  Positions left over after the last full
+ * vector are evaluated by BatchEvaluator.
+ *
+ * @author Shreyansh Loharuka
+ */
+class VectorBatchEvaluator extends BatchEvaluator {
+
+    /**
+     * The vector shape used.
+     */
+    private static final VectorSpecies<Long> SPECIES =
+        LongVector.SPECIES_PREFERRED;
+
+    /**
+     * An evaluator using WEIGHTS.
+     */
+    VectorBatchEvaluator(Weights weights) {
+        super(weights);
+    }
+
+    @Override
+    void features(Piece side, PositionBatch batch, int from, int to,
+                  int[][] features, int[] status) {
+        int lanes = SPECIES.length();
+        int end = from + SPECIES.loopBound(to - from);
+        LongVector[] fill = new LongVector[2];
+        long[] out = new long[lanes];
+        boolean white = side == WHITE;
+        for (int k = from; k < end; k += lanes) {
+            LongVector wl = load(batch.whiteLow(), k),
+                wh = load(batch.whiteHigh(), k),
+                bl = load(batch.blackLow(), k),
+                bh = load(batch.blackHigh(), k),
+                kl = load(batch.kingLow(), k),
+                kh = load(batch.kingHigh(), k),
+                turn = load(batch.whiteToMove(), k);
+            LongVector el = wl.or(bl).or(kl).not().and(LOW_MASK),
+                eh = wh.or(bh).or(kh).not().and(HIGH_MASK);
+            LongVector zero = LongVector.zero(SPECIES);
+            LongVector mine = white ? turn : turn.not();
+            LongVector pl = white ? wl : bl, ph = white ? wh : bh;
+            LongVector ol = white ? bl : wl.or(kl),
+                oh = white ? bh : wh.or(kh);
+            LongVector xl = white ? bl : wl, xh = white ? bh : wh;
+            LongVector ml = pl.and(mine), mh = ph.and(mine);
+            LongVector kml = white ? kl.and(mine) : zero,
+                kmh = white ? kh.and(mine) : zero;
+            LongVector nkl = neighborsLow(kl, kh),
+                nkh = neighborsHigh(kl, kh);
+
+            LongVector approach = zero, capture = zero;
+            LongVector winl = zero, winh = zero;
+            for (int dir = 0; dir < 4; dir += 1) {
+                fill(dir, ml, mh, el, eh, fill);
+                LongVector dl = fill[0].and(~THRONE_LOW),
+                    dh = fill[1].and(~THRONE_HIGH);
+                fill(dir, kml, kmh, el, eh, fill);
+                dl = dl.or(fill[0]);
+                dh = dh.or(fill[1]);
+                approach = approach.add(bitCount(dl.and(nkl)))
+                    .add(bitCount(dh.and(nkh)));
+                for (int e = 0; e < 4; e += 1) {
+                    capture = capture
+                        .add(bitCount(dl.and(stepLow(e, 1, ol, oh))))
+                        .add(bitCount(dh.and(stepHigh(e, 1, ol, oh))));
+                }
+                fill(dir, kl.and(turn), kh.and(turn), el, eh, fill);
+                winl = winl.or(fill[0]);
+                winh = winh.or(fill[1]);
+            }
+
+            store(bitCount(pl.and(neighborsLow(xl, xh)))
+                  .add(bitCount(ph.and(neighborsHigh(xl, xh)))),
+                  out, features[Weights.SURROUNDED], k);
+            store(bitCount(bl.and(THRONES_LOW))
+                  .add(bitCount(bh.and(THRONES_HIGH))),
+                  out, features[Weights.THRONES], k);
+            store(approach, out, features[Weights.KING_APPROACH], k);
+            store(bitCount(pl.and(EDGE_LOW)).add(bitCount(ph.and(EDGE_HIGH))),
+                  out, features[Weights.EDGE], k);
+            store(capture, out, features[Weights.CAPTURE], k);
+            store(bitCount(bl).add(bitCount(bh)),
+                  out, features[Weights.BLACK_PIECES], k);
+            store(bitCount(wl).add(bitCount(wh)).add(bitCount(kl))
+                  .add(bitCount(kh)),
+                  out, features[Weights.WHITE_PIECES], k);
+            store(escape(kl, kh, el, eh, fill),
+                  out, features[Weights.ESCAPE], k);
+
+            LongVector onEdge = kl.and(EDGE_LOW).or(kh.and(EDGE_HIGH)),
+                win = winl.and(EDGE_LOW).or(winh.and(EDGE_HIGH)),
+                king = kl.or(kh);
+            onEdge.intoArray(out, 0);
+            for (int i = 0; i < lanes; i += 1) {
+                status[k + i] = out[i] != 0 ? KING_ON_EDGE : 0;
+            }
+            win.intoArray(out, 0);
+            for (int i = 0; i < lanes; i += 1) {
+                status[k + i] |= out[i] != 0 ? KING_WIN : 0;
+            }
+            king.intoArray(out, 0);
+            for (int i = 0; i < lanes; i += 1) {
+                status[k + i] |= out[i] == 0 ? KING_CAPTURED : 0;
+            }
+        }
+        super.features(side, batch, end, to, features, status);
+    }
+
+    /**
+     * Return, in each lane, the ESCAPE feature (see Weights.escape) of a
+     * king on the square in KL, KH, where EL, EH are the empty squares,
+     * using FILL as scratch space: the number of D from 0 through
+     * ESCAPE_LIMIT such that D king moves can reach the edge.
+     */
+    private static LongVector escape(LongVector kl, LongVector kh,
+                                     LongVector el, LongVector eh,
+                                     LongVector[] fill) {
+        LongVector rl = kl, rh = kh;
+        LongVector result = LongVector.zero(SPECIES);
+        for (int d = 0; d <= Weights.ESCAPE_LIMIT; d += 1) {
+            if (d > 0) {
+                LongVector nl = rl, nh = rh;
+                for (int dir = 0; dir < 4; dir += 1) {
+                    fill(dir, rl, rh, el, eh, fill);
+                    nl = nl.or(fill[0]);
+                    nh = nh.or(fill[1]);
+                }
+                rl = nl;
+                rh = nh;
+            }
+            result = result.add(1, rl.and(EDGE_LOW).or(rh.and(EDGE_HIGH))
+                                .compare(VectorOperators.NE, 0));
+        }
+        return result;
+    }
+
+    /**
+     * Return the vector of ARRAY[K], ARRAY[K + 1], ....
+     */
+    private static LongVector load(long[] array, int k) {
+        return LongVector.fromArray(SPECIES, array, k);
+    }
+
+    /**
+     * Store the lanes of V in RESULT[K], RESULT[K + 1], ..., using SCRATCH.
+     */
+    private static void store(LongVector v, long[] scratch, int[] result,
+                              int k) {
+        v.intoArray(scratch, 0);
+        for (int i = 0; i < scratch.length; i += 1) {
+            result[k + i] = (int) scratch[i];
+        }
+    }
+
+    /**
+     * Return the number of one bits in each lane of X.
+     */
+    private static LongVector bitCount(LongVector x) {
+        x = x.sub(x.lanewise(VectorOperators.LSHR, 1)
+                  .and(0x5555555555555555L));
+        x = x.and(0x3333333333333333L)
+            .add(x.lanewise(VectorOperators.LSHR, 2)
+                 .and(0x3333333333333333L));
+        x = x.add(x.lanewise(VectorOperators.LSHR, 4))
+            .and(0x0f0f0f0f0f0f0f0fL);
+        return x.mul(0x0101010101010101L).lanewise(VectorOperators.LSHR, 56);
+    }
+
+    /**
+     * As for BatchEvaluator.fill, on each lane of GL, GH, EL, and EH.
+     */
+    private static void fill(int dir, LongVector gl, LongVector gh,
+                             LongVector el, LongVector eh,
+                             LongVector[] result) {
+        LongVector pl = el.and(STEP_LOW[dir]), ph = eh.and(STEP_HIGH[dir]);
+        LongVector ql = pl, qh = ph;
+        for (int n = 1; n <= 4; n *= 2) {
+            LongVector sl = shiftLow(dir, n, gl, gh),
+                sh = shiftHigh(dir, n, gl, gh);
+            gl = gl.or(pl.and(sl));
+            gh = gh.or(ph.and(sh));
+            sl = shiftLow(dir, n, pl, ph);
+            sh = shiftHigh(dir, n, pl, ph);
+            pl = pl.and(sl);
+            ph = ph.and(sh);
+        }
+        LongVector sl = shiftLow(dir, 1, gl, gh),
+            sh = shiftHigh(dir, 1, gl, gh);
+        gl = gl.or(ql.and(sl));
+        gh = gh.or(qh.and(sh));
+        result[0] = gl.and(el);
+        result[1] = gh.and(eh);
+    }
+
+    /**
+     * As for BatchEvaluator.neighborsLow, on each lane.
+     */
+    private static LongVector neighborsLow(LongVector xl, LongVector xh) {
+        return stepLow(NORTH, 1, xl, xh).or(stepLow(EAST, 1, xl, xh))
+            .or(stepLow(SOUTH, 1, xl, xh)).or(stepLow(WEST, 1, xl, xh));
+    }
+
+    /**
+     * As for BatchEvaluator.neighborsHigh, on each lane.
+     */
+    private static LongVector neighborsHigh(LongVector xl, LongVector xh) {
+        return stepHigh(NORTH, 1, xl, xh).or(stepHigh(EAST, 1, xl, xh))
+            .or(stepHigh(SOUTH, 1, xl, xh)).or(stepHigh(WEST, 1, xl, xh));
+    }
+
+    /**
+     * As for BatchEvaluator.stepLow, on each lane.
+     */
+    private static LongVector stepLow(int dir, int n, LongVector xl,
+                                      LongVector xh) {
+        return shiftLow(dir, n, xl, xh).and(STEP_LOW[dir]);
+    }
+
+    /**
+     * As for BatchEvaluator.stepHigh, on each lane.
+     */
+    private static LongVector stepHigh(int dir, int n, LongVector xl,
+                                       LongVector xh) {
+        return shiftHigh(dir, n, xl, xh).and(STEP_HIGH[dir]);
+    }
+
+    /**
+     * As for BatchEvaluator.shiftLow, on each lane.
+     */
+    private static LongVector shiftLow(int dir, int n, LongVector xl,
+                                       LongVector xh) {
+        switch (dir) {
+        case NORTH:
+            return xl.lanewise(VectorOperators.LSHL, BOARD_SIZE * n)
+                .and(LOW_MASK);
+        case SOUTH:
+            return xl.lanewise(VectorOperators.LSHR, BOARD_SIZE * n)
+                .or(xh.lanewise(VectorOperators.LSHL,
+                                LOW_SQUARES - BOARD_SIZE * n))
+                .and(LOW_MASK);
+        case EAST:
+            return xl.lanewise(VectorOperators.LSHL, n).and(LOW_MASK);
+        default:
+            return xl.lanewise(VectorOperators.LSHR, n);
+        }
+    }
+
+    /**
+     * As for BatchEvaluator.shiftHigh, on each lane.
+     */
+    private static LongVector shiftHigh(int dir, int n, LongVector xl,
+                                        LongVector xh) {
+        switch (dir) {
+        case NORTH:
+            return xh.lanewise(VectorOperators.LSHL, BOARD_SIZE * n)
+                .or(xl.lanewise(VectorOperators.LSHR,
+                                LOW_SQUARES - BOARD_SIZE * n))
+                .and(HIGH_MASK);
+        case SOUTH:
+            return xh.lanewise(VectorOperators.LSHR, BOARD_SIZE * n);
+        case EAST:
+            return xh.lanewise(VectorOperators.LSHL, n).and(HIGH_MASK);
+        default:
+            return xh.lanewise(VectorOperators.LSHR, n);
+        }
+    }
+}
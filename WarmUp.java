@@ -0,0 +1,113 @@
+package tablut;
+
+/**
+ * A warm-up for the search, so that the first real move is not made by
+ * largely interpreted code.  On a background thread, it searches each of
+ * the built-in Positions to a small depth with a scratch AI that
+ * evaluates as the AI being warmed up does, until it runs out of
+ * positions or time.  The AIs created from that one wait, before their
+ * first search, for the warm-up to end, so that it does not compete with
+ * them for processors.
+ *
+ * @author Shreyansh Loharuka
+ */
+class WarmUp implements Runnable {
+
+    /**
+     * Depth of the warm-up searches.
+     */
+    static final int DEPTH = 3;
+
+    /**
+     * A warm-up for AIs created from TEMPLATE, lasting at most about
+     * MILLIS milliseconds.
+     */
+    WarmUp(AI template, long millis) {
+        _ai = template.scratchCopy(Piece.WHITE, DEPTH);
+        _millis = millis;
+    }
+
+    /**
+     * Start warming up on a separate thread.
+     */
+    void start() {
+        _deadline = System.currentTimeMillis() + _millis;
+        _thread = new Thread(this, "warm-up");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+        for (Board position : Positions.all()) {
+            if (_stopped || System.currentTimeMillis() >= _deadline) {
+                break;
+            }
+            _ai.searchMove(new SearchBoard(position));
+            if (!_stopped) {
+                _positions += 1;
+            }
+        }
+        _elapsed = System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Wait for the warm-up to end, stopping it if it runs past its time
+     * limit.  Does nothing if it has already ended.
+     */
+    void finish() {
+        try {
+            _thread.join(Math.max(1, _deadline - System.currentTimeMillis()));
+            _stopped = true;
+            _ai.setStopSearch(true);
+            _thread.join();
+        } catch (InterruptedException excp) {
+            throw new Error("unexpected interrupt");
+        }
+    }
+
+    /**
+     * Return the number of positions searched completely.  Valid after
+     * finish.
+     */
+    int positions() {
+        return _positions;
+    }
+
+    /**
+     * Return the milliseconds the warm-up took.  Valid after finish.
+     */
+    long elapsed() {
+        return _elapsed;
+    }
+
+    /**
+     * The scratch AI that searches.
+     */
+    private final AI _ai;
+    /**
+     * Time limit in milliseconds.
+     */
+    private final long _millis;
+    /**
+     * Time (as from System.currentTimeMillis) at which to stop.
+     */
+    private long _deadline;
+    /**
+     * The thread warming up.
+     */
+    private Thread _thread;
+    /**
+     * True once the warm-up has been told to stop.
+     */
+    private volatile boolean _stopped;
+    /**
+     * Number of positions searched so far.
+     */
+    private int _positions;
+    /**
+     * Milliseconds the warm-up took.
+     */
+    private long _elapsed;
+}
@@ -0,0 +1,197 @@
+package tablut;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import static tablut.Piece.*;
+
+/**
+ * The weights of the features in the AI's evaluation function, one vector
+ * for each side.  A position's score for a side is the dot product of that
+ * side's weights with the features of the position as that side sees
+ * them (see AI.features).  Weights are stored in a text file with one
+ * line per weight, such as "white.capture 1000"; blank lines and lines
+ * starting with '#' are ignored, and missing weights keep their default
+ * values.  Weights files are made by Tuner.
+ *
+ * @author Shreyansh Loharuka
+ */
+class Weights {
+
+    /**
+     * Number of my pieces next to an opposing piece, counting the king
+     * ten times.
+     */
+    static final int SURROUNDED = 0;
+    /**
+     * Number of black pieces next to the throne.
+     */
+    static final int THRONES = 1;
+    /**
+     * Number of my legal moves that end next to the king.
+     */
+    static final int KING_APPROACH = 2;
+    /**
+     * Number of my pieces on the edge.
+     */
+    static final int EDGE = 3;
+    /**
+     * Number of opposing pieces next to the ends of my legal moves, summed
+     * over my pieces.
+     */
+    static final int CAPTURE = 4;
+    /**
+     * Number of black pieces.
+     */
+    static final int BLACK_PIECES = 5;
+    /**
+     * Number of white pieces, including the king.
+     */
+    static final int WHITE_PIECES = 6;
+    /**
+     * How near the king is to escaping: ESCAPE_LIMIT + 1 less the fewest
+     * king moves that take it to the edge with no other piece moving, or
+     * 0 if that takes more than ESCAPE_LIMIT (see escape).
+     */
+    static final int ESCAPE = 7;
+    /**
+     * Number of features.
+     */
+    static final int NUM_FEATURES = 8;
+
+    /**
+     * Most king moves to the edge that count towards ESCAPE.
+     */
+    static final int ESCAPE_LIMIT = 3;
+
+    /**
+     * Names of the features in weights files.
+     */
+    static final String[] NAMES = {
+        "surrounded", "thrones", "king-approach", "edge", "capture",
+        "black-pieces", "white-pieces", "escape"
+    };
+
+    /**
+     * The weights the evaluation function has always used.
+     */
+    static final Weights DEFAULT = new Weights(
+        new int[] {-200, -200, 10000, 0, 1000, 9, 16, 0},
+        new int[] {0, -200, 1000000, -200, 1000, 9, 16, 0});
+
+    /**
+     * Weights WHITEWEIGHTS for White and BLACKWEIGHTS for Black.
+     */
+    Weights(int[] whiteWeights, int[] blackWeights) {
+        _white = Arrays.copyOf(whiteWeights, NUM_FEATURES);
+        _black = Arrays.copyOf(blackWeights, NUM_FEATURES);
+    }
+
+    /**
+     * The weights in FILE.  Throws IOException if FILE cannot be read or
+     * is malformed.
+     */
+    Weights(File file) throws IOException {
+        this(DEFAULT._white, DEFAULT._black);
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] words = line.split("\\s+");
+                int dot = words[0].indexOf('.');
+                int f = dot < 0 ? -1
+                    : Arrays.asList(NAMES).indexOf(
+                        words[0].substring(dot + 1));
+                String side = dot < 0 ? "" : words[0].substring(0, dot);
+                if (words.length != 2 || f < 0
+                    || !(side.equals("white") || side.equals("black"))) {
+                    throw new IOException("bad weight in " + file + ": "
+                                          + line);
+                }
+                try {
+                    (side.equals("white") ? _white : _black)[f] =
+                        Integer.parseInt(words[1]);
+                } catch (NumberFormatException excp) {
+                    throw new IOException("bad weight in " + file + ": "
+                                          + line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write these weights to FILE.
+     */
+    void write(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file)) {
+            for (int f = 0; f < NUM_FEATURES; f += 1) {
+                out.printf("white.%s %d%n", NAMES[f], _white[f]);
+            }
+            for (int f = 0; f < NUM_FEATURES; f += 1) {
+                out.printf("black.%s %d%n", NAMES[f], _black[f]);
+            }
+            if (out.checkError()) {
+                throw new IOException("could not write " + file);
+            }
+        }
+    }
+
+    /**
+     * Return the ESCAPE feature of a position whose king is DISTANCE king
+     * moves from the edge, as KingMobility.escapeDistance(..., ESCAPE_LIMIT)
+     * gives it.
+     */
+    static int escape(int distance) {
+        return distance > ESCAPE_LIMIT ? 0 : ESCAPE_LIMIT + 1 - distance;
+    }
+
+    /**
+     * Return the weight of feature F for SIDE.
+     */
+    int get(Piece side, int f) {
+        return weights(side)[f];
+    }
+
+    /**
+     * Return SIDE's score for a position with features FEATURES.
+     */
+    int score(Piece side, int[] features) {
+        int[] weights = weights(side);
+        int score = 0;
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            score += weights[f] * features[f];
+        }
+        return score;
+    }
+
+    /**
+     * Return a hash of these weights, which identifies them in caches of
+     * scores.
+     */
+    long fingerprint() {
+        return 31L * Arrays.hashCode(_white) + Arrays.hashCode(_black);
+    }
+
+    /**
+     * Return the weight vector for SIDE.
+     */
+    private int[] weights(Piece side) {
+        return side.side() == WHITE ? _white : _black;
+    }
+
+    /**
+     * Weights for White.
+     */
+    private final int[] _white;
+    /**
+     * Weights for Black.
+     */
+    private final int[] _black;
+}
@@ -0,0 +1,118 @@
+package tablut;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static tablut.Piece.*;
+
+/**
+ * Benchmarks of the AI's evaluation and search on the built-in
+ * Positions.  Each operation starts with empty caches (see
+ * AI.clearCaches), so that evaluations are computed rather than looked
+ * up and every search does the same work.  A fixed-depth search is one
+ * operation per position, each measured once per iteration, with as
+ * many iterations as positions, so the mean is over all of them.
+ *
+ * @author Shreyansh Loharuka
+ */
+@Fork(1)
+@State(Scope.Thread)
+public class AIBench {
+
+    /**
+     * Number of built-in positions (see Positions.size).
+     */
+    static final int POSITIONS = 41;
+
+    /**
+     * Depth of the fixed-depth searches.
+     */
+    @Param({ "2", "3" })
+    public int depth;
+
+    /**
+     * Create the AIs and load the positions.
+     */
+    @Setup
+    public void setUp() {
+        AI template = new AI();
+        _white = template.scratchCopy(WHITE, depth);
+        _black = template.scratchCopy(BLACK, depth);
+        _positions = Positions.all();
+        if (_positions.size() != POSITIONS) {
+            throw new IllegalStateException("POSITIONS is out of date");
+        }
+    }
+
+    /**
+     * Empty the AIs' caches and choose the position to search next.
+     */
+    @Setup(Level.Invocation)
+    public void clear() {
+        _white.clearCaches();
+        _black.clearCaches();
+        _next = (_next + 1) % POSITIONS;
+    }
+
+    /**
+     * Evaluate each position for the side to move.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int staticScore() {
+        int sum = 0;
+        for (Board board : _positions) {
+            sum += ai(board).staticScore(board);
+        }
+        return sum;
+    }
+
+    /**
+     * Search the next position to DEPTH plies.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = POSITIONS)
+    @Measurement(iterations = POSITIONS)
+    public Object findMove() {
+        Board board = _positions.get(_next);
+        return ai(board).searchMove(new SearchBoard(board));
+    }
+
+    /**
+     * Return the AI for the side to move on BOARD.
+     */
+    private AI ai(Board board) {
+        return board.turn() == WHITE ? _white : _black;
+    }
+
+    /**
+     * AIs for White and Black.
+     */
+    private AI _white, _black;
+    /**
+     * The built-in positions.
+     */
+    private List<Board> _positions;
+    /**
+     * Index in _positions of the position to search next.
+     */
+    private int _next;
+}
@@ -0,0 +1,46 @@
+package tablut;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Runs the benchmarks, taking the usual JMH options.  Unless profilers
+ * are named on the command line, allocation is profiled (as by -prof gc),
+ * so that each result comes with its bytes allocated per operation.
+ *
+ * @author Shreyansh Loharuka
+ */
+public class Benchmarks {
+
+    /**
+     * Run the benchmarks selected by the JMH options ARGS.
+     */
+    public static void main(String... args) {
+        try {
+            CommandLineOptions options = new CommandLineOptions(args);
+            if (options.shouldHelp() || options.shouldList()
+                || options.shouldListWithParams()
+                || options.shouldListProfilers()
+                || options.shouldListResultFormats()) {
+                org.openjdk.jmh.Main.main(args);
+                return;
+            }
+            OptionsBuilder builder = new OptionsBuilder();
+            builder.parent(options);
+            if (options.getProfilers().isEmpty()) {
+                builder.addProfiler(GCProfiler.class);
+            }
+            new Runner(builder.build()).run();
+        } catch (CommandLineOptionException excp) {
+            Utils.fatal("%s%n", excp.getMessage());
+        } catch (RunnerException | IOException excp) {
+            Utils.fatal("%s%n", excp.getMessage());
+        }
+    }
+}
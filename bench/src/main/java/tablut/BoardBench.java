@@ -0,0 +1,169 @@
+package tablut;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of Board's move generation and bookkeeping, in a game
+ * PLIES plies long.  The game is a fixed pseudo-random one, so that its
+ * history, which the game board keeps for undo and the repetition rule,
+ * grows with PLIES.  The move benchmarks cycle through the legal moves
+ * of its last position.
+ *
+ * @author Shreyansh Loharuka
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBench {
+
+    /**
+     * Length of the game.
+     */
+    @Param({ "0", "40", "160" })
+    public int plies;
+
+    /**
+     * Set up the game and its moves.
+     */
+    @Setup
+    public void setUp() {
+        _board = game(plies);
+        _searchBoard = new SearchBoard(_board);
+        _moves = _board.legalMoves(_board.turn());
+        _candidates = new ArrayList<>(_moves);
+        _candidates.addAll(_board.legalMoves(_board.turn().opponent()));
+    }
+
+    /**
+     * Make and undo a move on the game board.
+     */
+    @Benchmark
+    public int makeMoveUndo() {
+        _board.makeMove(nextMove());
+        _board.undo();
+        return _board.moveCount();
+    }
+
+    /**
+     * Make and undo a move on a SearchBoard, as the search does.
+     */
+    @Benchmark
+    public int searchMakeMoveUndo() {
+        _searchBoard.makeMove(nextMove());
+        _searchBoard.undo();
+        return _searchBoard.moveCount();
+    }
+
+    /**
+     * Generate the moves of the side to move.
+     */
+    @Benchmark
+    public int legalMoves() {
+        return _board.legalMoves(_board.turn()).size();
+    }
+
+    /**
+     * Test a move, legal for either side, for legality.
+     */
+    @Benchmark
+    public boolean isLegal() {
+        _nextCandidate = (_nextCandidate + 1) % _candidates.size();
+        return _board.isLegal(_candidates.get(_nextCandidate));
+    }
+
+    /**
+     * Collect the squares of the side to move.
+     */
+    @Benchmark
+    public int pieceLocations() {
+        return _board.pieceLocations(_board.turn()).size();
+    }
+
+    /**
+     * Find the king.
+     */
+    @Benchmark
+    public Object kingPosition() {
+        return _board.kingPosition();
+    }
+
+    /**
+     * Check the position against the game's history for repetition.
+     */
+    @Benchmark
+    public boolean isRepeated() {
+        return _board.isRepeated();
+    }
+
+    /**
+     * Return the next of _moves in turn.
+     */
+    private Move nextMove() {
+        _nextMove = (_nextMove + 1) % _moves.size();
+        return _moves.get(_nextMove);
+    }
+
+    /**
+     * Return a game board after PLIES pseudo-random moves from the
+     * initial position, none of which ends the game.
+     */
+    static Board game(int plies) {
+        Random random = new Random(SEED);
+        Board board = new Board();
+        for (int k = 0; k < plies; k += 1) {
+            List<Move> moves = board.legalMoves(board.turn());
+            while (true) {
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+                if (board.winner() == null) {
+                    break;
+                }
+                board.undo();
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Seed of the games played by game.
+     */
+    private static final long SEED = 61;
+
+    /**
+     * The game board.
+     */
+    private Board _board;
+    /**
+     * A SearchBoard in the same position.
+     */
+    private Board _searchBoard;
+    /**
+     * Legal moves in the position.
+     */
+    private List<Move> _moves;
+    /**
+     * Moves legal for one side or the other.
+     */
+    private List<Move> _candidates;
+    /**
+     * Indices of the last of _moves and of _candidates used.
+     */
+    private int _nextMove, _nextCandidate;
+}
@@ -0,0 +1,77 @@
+package tablut;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of parsing moves with Move.mv, cycling through the legal
+ * moves of the built-in Positions in both notations, along with some
+ * malformed ones.
+ *
+ * @author Shreyansh Loharuka
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveBench {
+
+    /**
+     * Collect the strings to parse.
+     */
+    @Setup
+    public void setUp() {
+        List<String> texts = new ArrayList<>();
+        for (Board board : Positions.all()) {
+            for (Move move : board.legalMoves(board.turn())) {
+                String text = move.toString();
+                texts.add(text);
+                texts.add(text.substring(0, 2) + "-"
+                          + move.to().toString());
+            }
+        }
+        for (String bad : MALFORMED) {
+            texts.add(bad);
+        }
+        _texts = texts.toArray(new String[0]);
+    }
+
+    /**
+     * Parse a move.
+     */
+    @Benchmark
+    public Object mv() {
+        _next = (_next + 1) % _texts.length;
+        return Move.mv(_texts[_next]);
+    }
+
+    /**
+     * Strings that do not denote moves.
+     */
+    private static final String[] MALFORMED = {
+        "", "e", "e2", "e2-", "z9-3", "e2-e2x", "quit", "e2--5",
+    };
+
+    /**
+     * The strings to parse.
+     */
+    private String[] _texts;
+    /**
+     * Index of the last of _texts parsed.
+     */
+    private int _next;
+}